@@ -0,0 +1,203 @@
+package edu.coursera.concurrent;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.coursera.concurrent.CoarseLists.CoarseList;
+import edu.coursera.concurrent.FineGrainedLists.LazyList;
+import edu.coursera.concurrent.IntLists.IntCoarseList;
+import edu.coursera.concurrent.IntLists.IntLazyList;
+
+/**
+ * Time for a batch of contains lookups on a list of Integer entries and on
+ * the int-keyed list with the same synchronization, and the heap each list
+ * takes per element.
+ *
+ * The boxed lookups are run both with keys the caller already holds as
+ * Integer objects and with int keys autoboxed at the call, as the tests do;
+ * the keys go well past the Integer cache, so autoboxing allocates. The
+ * build benchmarks fill a new list with size elements, and everything they
+ * allocate stays reachable from the list, so with -prof gc the
+ * gc.alloc.rate.norm they report, divided by size, is the heap per element.
+ *
+ * On the single-core host these were first run on, an int entry took 24
+ * bytes against 40 for an Integer entry with coarse locking, and 80 against
+ * 96 with lazy locking. Lookup time did not show a matching saving: both
+ * kinds of list took about 3 ns per entry traversed, and the differences
+ * were within run-to-run noise. The gain measured so far is in heap and
+ * allocation, not traversal speed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class IntListSetBenchmark {
+    /**
+     * Number of elements in each list.
+     */
+    @Param({"1000", "10000"})
+    private int size;
+
+    /**
+     * Synchronization of both lists: "coarse" or "lazy".
+     */
+    @Param({"coarse", "lazy"})
+    private String impl;
+
+    /**
+     * Number of lookups per benchmark call.
+     */
+    private static final int LOOKUPS = 256;
+
+    /**
+     * The list of Integer entries.
+     */
+    private ListSet boxedList;
+    /**
+     * The int-keyed list.
+     */
+    private IntListSet intList;
+    /**
+     * Keys to look up, about half of them present.
+     */
+    private int[] keys;
+    /**
+     * The same keys, boxed in advance.
+     */
+    private Integer[] boxedKeys;
+
+    /**
+     * Create a list of Integer entries.
+     *
+     * @param listImpl "coarse" or "lazy"
+     * @return An empty list
+     */
+    private static ListSet newBoxedList(final String listImpl) {
+        return "lazy".equals(listImpl) ? new LazyList() : new CoarseList();
+    }
+
+    /**
+     * Create an int-keyed list.
+     *
+     * @param listImpl "coarse" or "lazy"
+     * @return An empty list
+     */
+    private static IntListSet newIntList(final String listImpl) {
+        return "lazy".equals(listImpl) ? new IntLazyList()
+            : new IntCoarseList();
+    }
+
+    /**
+     * Fills both lists with the even numbers below 2 * size, and picks
+     * random keys below 2 * size to look up.
+     */
+    @Setup
+    public void setup() {
+        boxedList = newBoxedList(impl);
+        intList = newIntList(impl);
+        for (int i = 0; i < size; i++) {
+            boxedList.add(2 * i);
+            intList.add(2 * i);
+        }
+
+        final Random rand = new Random(size);
+        keys = new int[LOOKUPS];
+        boxedKeys = new Integer[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = rand.nextInt(2 * size);
+            boxedKeys[i] = Integer.valueOf(keys[i]);
+        }
+    }
+
+    /**
+     * Lookups on the Integer list with keys already boxed.
+     *
+     * @return Number of keys found
+     */
+    @Benchmark
+    public int boxedContains() {
+        int hits = 0;
+        for (Integer key : boxedKeys) {
+            if (boxedList.contains(key)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Lookups on the Integer list with int keys autoboxed at each call.
+     *
+     * @return Number of keys found
+     */
+    @Benchmark
+    public int boxedContainsAutobox() {
+        int hits = 0;
+        for (int key : keys) {
+            if (boxedList.contains(key)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Lookups on the int-keyed list.
+     *
+     * @return Number of keys found
+     */
+    @Benchmark
+    public int intContains() {
+        int hits = 0;
+        for (int key : keys) {
+            if (intList.contains(key)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Builds a list of Integer entries holding the even numbers below
+     * 2 * size, adding them in decreasing order so that each add stops at
+     * the head.
+     *
+     * @return The list
+     */
+    @Benchmark
+    public ListSet boxedBuild() {
+        final ListSet list = newBoxedList(impl);
+        for (int i = size - 1; i >= 0; i--) {
+            list.add(2 * i);
+        }
+        return list;
+    }
+
+    /**
+     * The int-keyed version of boxedBuild.
+     *
+     * @return The list
+     */
+    @Benchmark
+    public IntListSet intBuild() {
+        final IntListSet list = newIntList(impl);
+        for (int i = size - 1; i >= 0; i--) {
+            list.add(2 * i);
+        }
+        return list;
+    }
+}
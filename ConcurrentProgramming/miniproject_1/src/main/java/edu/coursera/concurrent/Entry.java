@@ -1,9 +1,10 @@
 package edu.coursera.concurrent;
 
 /**
- * A single element in any of the list implementations.
+ * A single element in any of the list implementations. Lists that need more
+ * per-element state, such as a lock, extend it.
  */
-public final class Entry {
+public class Entry {
     /**
      * The value stored in this list entry.
      */
@@ -22,4 +23,14 @@ public final class Entry {
     Entry(final Integer setObject) {
         this.object = setObject;
     }
+
+    /**
+     * Get the next element in this singly linked list. Entries that keep
+     * their link in a field of their own return it here instead of next.
+     *
+     * @return The next element, or null after the tail
+     */
+    public Entry getNext() {
+        return next;
+    }
 }
@@ -0,0 +1,356 @@
+package edu.coursera.concurrent;
+
+/**
+ * Wrapper class for three list implementations that lock individual entries
+ * rather than the whole list, so that operations on different parts of the
+ * list can proceed at the same time.
+ */
+public final class FineGrainedLists {
+    /**
+     * Default constructor.
+     */
+    private FineGrainedLists() {
+    }
+
+    /**
+     * An implementation of the ListSet interface that uses hand-over-hand
+     * locking (lock coupling): a traversal holds the locks of two adjacent
+     * entries at a time, locking the next entry before unlocking the one
+     * behind it. Operations cannot overtake each other, but several can
+     * move down the list at once, one behind the other.
+     */
+    public static final class HandOverHandList extends ListSet {
+        /**
+         * Default constructor.
+         */
+        public HandOverHandList() {
+            super(LockableEntry.sentinels());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean add(final Integer object) {
+            LockableEntry pred = (LockableEntry) this.head;
+            pred.lock.lock();
+            LockableEntry curr = pred.link;
+            curr.lock.lock();
+            try {
+                while (curr.object.compareTo(object) < 0) {
+                    pred.lock.unlock();
+                    pred = curr;
+                    curr = curr.link;
+                    curr.lock.lock();
+                }
+
+                if (object.equals(curr.object)) {
+                    return false;
+                } else {
+                    final LockableEntry entry = new LockableEntry(object);
+                    entry.link = curr;
+                    pred.link = entry;
+                    return true;
+                }
+            } finally {
+                curr.lock.unlock();
+                pred.lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean remove(final Integer object) {
+            LockableEntry pred = (LockableEntry) this.head;
+            pred.lock.lock();
+            LockableEntry curr = pred.link;
+            curr.lock.lock();
+            try {
+                while (curr.object.compareTo(object) < 0) {
+                    pred.lock.unlock();
+                    pred = curr;
+                    curr = curr.link;
+                    curr.lock.lock();
+                }
+
+                if (object.equals(curr.object)) {
+                    pred.link = curr.link;
+                    return true;
+                } else {
+                    return false;
+                }
+            } finally {
+                curr.lock.unlock();
+                pred.lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean contains(final Integer object) {
+            LockableEntry pred = (LockableEntry) this.head;
+            pred.lock.lock();
+            LockableEntry curr = pred.link;
+            curr.lock.lock();
+            try {
+                while (curr.object.compareTo(object) < 0) {
+                    pred.lock.unlock();
+                    pred = curr;
+                    curr = curr.link;
+                    curr.lock.lock();
+                }
+                return object.equals(curr.object);
+            } finally {
+                curr.lock.unlock();
+                pred.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * An implementation of the ListSet interface that uses optimistic
+     * locking: a traversal takes no locks, then locks the two entries it
+     * stopped between and validates that they are still in the list and
+     * still adjacent, starting over if not.
+     *
+     * Validation walks the list again from the head, so each operation
+     * traverses twice, but traversals never wait for each other.
+     */
+    public static final class OptimisticList extends ListSet {
+        /**
+         * Default constructor.
+         */
+        public OptimisticList() {
+            super(LockableEntry.sentinels());
+        }
+
+        /**
+         * Checks, with pred and curr locked, that pred is still reachable
+         * from the head and still points to curr.
+         *
+         * @param pred The entry before curr
+         * @param curr The entry after pred
+         * @return true if pred and curr are still adjacent list entries
+         */
+        private boolean validate(final LockableEntry pred,
+                final LockableEntry curr) {
+            LockableEntry entry = (LockableEntry) this.head;
+            while (entry.object.compareTo(pred.object) <= 0) {
+                if (entry == pred) {
+                    return pred.link == curr;
+                }
+                entry = entry.link;
+            }
+            return false;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean add(final Integer object) {
+            while (true) {
+                LockableEntry pred = (LockableEntry) this.head;
+                LockableEntry curr = pred.link;
+                while (curr.object.compareTo(object) < 0) {
+                    pred = curr;
+                    curr = curr.link;
+                }
+
+                pred.lock.lock();
+                curr.lock.lock();
+                try {
+                    if (!validate(pred, curr)) {
+                        continue;
+                    }
+                    if (object.equals(curr.object)) {
+                        return false;
+                    } else {
+                        final LockableEntry entry = new LockableEntry(object);
+                        entry.link = curr;
+                        pred.link = entry;
+                        return true;
+                    }
+                } finally {
+                    curr.lock.unlock();
+                    pred.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean remove(final Integer object) {
+            while (true) {
+                LockableEntry pred = (LockableEntry) this.head;
+                LockableEntry curr = pred.link;
+                while (curr.object.compareTo(object) < 0) {
+                    pred = curr;
+                    curr = curr.link;
+                }
+
+                pred.lock.lock();
+                curr.lock.lock();
+                try {
+                    if (!validate(pred, curr)) {
+                        continue;
+                    }
+                    if (object.equals(curr.object)) {
+                        pred.link = curr.link;
+                        return true;
+                    } else {
+                        return false;
+                    }
+                } finally {
+                    curr.lock.unlock();
+                    pred.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean contains(final Integer object) {
+            while (true) {
+                LockableEntry pred = (LockableEntry) this.head;
+                LockableEntry curr = pred.link;
+                while (curr.object.compareTo(object) < 0) {
+                    pred = curr;
+                    curr = curr.link;
+                }
+
+                pred.lock.lock();
+                curr.lock.lock();
+                try {
+                    if (validate(pred, curr)) {
+                        return object.equals(curr.object);
+                    }
+                } finally {
+                    curr.lock.unlock();
+                    pred.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * An implementation of the ListSet interface that uses lazy
+     * synchronization: like OptimisticList it locks and validates two
+     * entries after an unlocked traversal, but remove marks an entry before
+     * unlinking it, so validation only has to check the two entries' marks
+     * rather than walk the list again.
+     *
+     * Because an entry in the list is unmarked exactly while its value is in
+     * the set, contains takes no locks and never retries: it is wait-free.
+     */
+    public static final class LazyList extends ListSet {
+        /**
+         * Default constructor.
+         */
+        public LazyList() {
+            super(LockableEntry.sentinels());
+        }
+
+        /**
+         * Checks, with pred and curr locked, that neither has been removed
+         * and that pred still points to curr.
+         *
+         * @param pred The entry before curr
+         * @param curr The entry after pred
+         * @return true if pred and curr are still adjacent list entries
+         */
+        private static boolean validate(final LockableEntry pred,
+                final LockableEntry curr) {
+            return !pred.marked && !curr.marked && pred.link == curr;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean add(final Integer object) {
+            while (true) {
+                LockableEntry pred = (LockableEntry) this.head;
+                LockableEntry curr = pred.link;
+                while (curr.object.compareTo(object) < 0) {
+                    pred = curr;
+                    curr = curr.link;
+                }
+
+                pred.lock.lock();
+                curr.lock.lock();
+                try {
+                    if (!validate(pred, curr)) {
+                        continue;
+                    }
+                    if (object.equals(curr.object)) {
+                        return false;
+                    } else {
+                        final LockableEntry entry = new LockableEntry(object);
+                        entry.link = curr;
+                        pred.link = entry;
+                        return true;
+                    }
+                } finally {
+                    curr.lock.unlock();
+                    pred.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean remove(final Integer object) {
+            while (true) {
+                LockableEntry pred = (LockableEntry) this.head;
+                LockableEntry curr = pred.link;
+                while (curr.object.compareTo(object) < 0) {
+                    pred = curr;
+                    curr = curr.link;
+                }
+
+                pred.lock.lock();
+                curr.lock.lock();
+                try {
+                    if (!validate(pred, curr)) {
+                        continue;
+                    }
+                    if (object.equals(curr.object)) {
+                        // Logical removal first, so contains stops
+                        // reporting the value before it is unlinked.
+                        curr.marked = true;
+                        pred.link = curr.link;
+                        return true;
+                    } else {
+                        return false;
+                    }
+                } finally {
+                    curr.lock.unlock();
+                    pred.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean contains(final Integer object) {
+            LockableEntry curr = ((LockableEntry) this.head).link;
+            while (curr.object.compareTo(object) < 0) {
+                curr = curr.link;
+            }
+            return object.equals(curr.object) && !curr.marked;
+        }
+    }
+}
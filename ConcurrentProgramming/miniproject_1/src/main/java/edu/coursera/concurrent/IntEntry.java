@@ -0,0 +1,39 @@
+package edu.coursera.concurrent;
+
+/**
+ * A single element in any of the IntListSet implementations. Unlike Entry it
+ * holds its value as a primitive int, so a traversal compares values without
+ * loading a separate Integer object, and an element takes one object on the
+ * heap rather than two. Lists that need more per-element state, such as a
+ * lock, extend it.
+ */
+public class IntEntry {
+    /**
+     * The value stored in this list entry.
+     */
+    public final int key;
+
+    /**
+     * The next element in this singly linked list.
+     */
+    public IntEntry next;
+
+    /**
+     * The general constructor used when creating a new list entry.
+     *
+     * @param setKey Value to store in this item
+     */
+    IntEntry(final int setKey) {
+        this.key = setKey;
+    }
+
+    /**
+     * Get the next element in this singly linked list. Entries that keep
+     * their link in a field of their own return it here instead of next.
+     *
+     * @return The next element, or null after the tail
+     */
+    public IntEntry getNext() {
+        return next;
+    }
+}
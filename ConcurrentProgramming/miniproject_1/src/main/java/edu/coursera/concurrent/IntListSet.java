@@ -0,0 +1,61 @@
+package edu.coursera.concurrent;
+
+/**
+ * The counterpart of ListSet for lists of primitive int values. The methods
+ * take and compare plain ints, so neither callers nor traversals box or
+ * unbox, and each element is a single IntEntry. These methods are required
+ * to maintain a sorted list of items internally with no duplicates.
+ */
+public abstract class IntListSet {
+    /**
+     * Starting entry of this concurrent list.
+     */
+    protected final IntEntry head;
+
+    /**
+     * Constructor.
+     *
+     * @param setHead Entry holding Integer.MIN_VALUE to use as the head,
+     *        already linked to a tail holding Integer.MAX_VALUE
+     */
+    protected IntListSet(final IntEntry setHead) {
+        this.head = setHead;
+    }
+
+    /**
+     * Getter for the head of the list.
+     *
+     * @return The head of this list.
+     */
+    public IntEntry getHead() {
+        return head;
+    }
+
+    /**
+     * Add an integer value to this sorted list, ensuring uniqueness. This
+     * method must use IntListSet.head as the head of the list.
+     *
+     * @param key The integer to add.
+     * @return false if this value already exists in the list, true otherwise
+     */
+    abstract boolean add(int key);
+
+    /**
+     * Remove an integer value from this list if it exists. This method must
+     * use IntListSet.head as the head of the list.
+     *
+     * @param key The integer to remove.
+     * @return true if this value is found in the list and successfully
+     *         removed, false otherwise
+     */
+    abstract boolean remove(int key);
+
+    /**
+     * Check if this list contains the provided value. This method must use
+     * IntListSet.head as the head of the list.
+     *
+     * @param key The integer to check for.
+     * @return true if this list contains the target value, false otherwise.
+     */
+    abstract boolean contains(int key);
+}
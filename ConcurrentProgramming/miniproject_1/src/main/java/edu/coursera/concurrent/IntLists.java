@@ -0,0 +1,205 @@
+package edu.coursera.concurrent;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wrapper class for int-keyed versions of CoarseLists.CoarseList and
+ * FineGrainedLists.LazyList. The synchronization is the same; only the
+ * values are primitive.
+ */
+public final class IntLists {
+    /**
+     * Default constructor.
+     */
+    private IntLists() {
+    }
+
+    /**
+     * An implementation of the IntListSet interface that uses a single Java
+     * lock to protect against concurrent accesses, like CoarseList.
+     */
+    public static final class IntCoarseList extends IntListSet {
+        /**
+         * Lock protecting the whole list.
+         */
+        private final ReentrantLock lock;
+
+        /**
+         * Default constructor.
+         */
+        public IntCoarseList() {
+            super(new IntEntry(Integer.MIN_VALUE));
+            this.head.next = new IntEntry(Integer.MAX_VALUE);
+            this.lock = new ReentrantLock();
+        }
+
+        /**
+         * Finds the entry after which key belongs. The caller must hold
+         * lock.
+         *
+         * @param key The value to search for
+         * @return The last entry whose value is less than key
+         */
+        private IntEntry findPredecessor(final int key) {
+            IntEntry pred = this.head;
+            while (pred.next.key < key) {
+                pred = pred.next;
+            }
+            return pred;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean add(final int key) {
+            lock.lock();
+            try {
+                final IntEntry pred = findPredecessor(key);
+                final IntEntry curr = pred.next;
+                if (curr.key == key) {
+                    return false;
+                } else {
+                    final IntEntry entry = new IntEntry(key);
+                    entry.next = curr;
+                    pred.next = entry;
+                    return true;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean remove(final int key) {
+            lock.lock();
+            try {
+                final IntEntry pred = findPredecessor(key);
+                final IntEntry curr = pred.next;
+                if (curr.key == key) {
+                    pred.next = curr.next;
+                    return true;
+                } else {
+                    return false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean contains(final int key) {
+            lock.lock();
+            try {
+                return findPredecessor(key).next.key == key;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * An implementation of the IntListSet interface that uses lazy
+     * synchronization, like LazyList: add and remove lock and validate two
+     * entries after an unlocked traversal, remove marks an entry before
+     * unlinking it, and contains takes no locks.
+     */
+    public static final class IntLazyList extends IntListSet {
+        /**
+         * Default constructor.
+         */
+        public IntLazyList() {
+            super(IntLockableEntry.sentinels());
+        }
+
+        /**
+         * Finds the two adjacent entries between which key belongs and
+         * locks them, starting over until they are still adjacent and
+         * neither has been removed once both are locked. The caller must
+         * unlock both the returned entry and its link.
+         *
+         * @param key The value to search for
+         * @return The last entry whose value is less than key, locked, with
+         *         its link also locked
+         */
+        private IntLockableEntry lockWindow(final int key) {
+            while (true) {
+                IntLockableEntry pred = (IntLockableEntry) this.head;
+                IntLockableEntry curr = pred.link;
+                while (curr.key < key) {
+                    pred = curr;
+                    curr = curr.link;
+                }
+
+                pred.lock.lock();
+                curr.lock.lock();
+                if (!pred.marked && !curr.marked && pred.link == curr) {
+                    return pred;
+                }
+                curr.lock.unlock();
+                pred.lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean add(final int key) {
+            final IntLockableEntry pred = lockWindow(key);
+            final IntLockableEntry curr = pred.link;
+            try {
+                if (curr.key == key) {
+                    return false;
+                } else {
+                    final IntLockableEntry entry = new IntLockableEntry(key);
+                    entry.link = curr;
+                    pred.link = entry;
+                    return true;
+                }
+            } finally {
+                curr.lock.unlock();
+                pred.lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean remove(final int key) {
+            final IntLockableEntry pred = lockWindow(key);
+            final IntLockableEntry curr = pred.link;
+            try {
+                if (curr.key == key) {
+                    curr.marked = true;
+                    pred.link = curr.link;
+                    return true;
+                } else {
+                    return false;
+                }
+            } finally {
+                curr.lock.unlock();
+                pred.lock.unlock();
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        boolean contains(final int key) {
+            IntLockableEntry curr = ((IntLockableEntry) this.head).link;
+            while (curr.key < key) {
+                curr = curr.link;
+            }
+            return curr.key == key && !curr.marked;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package edu.coursera.concurrent;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An int-keyed list entry with its own lock, for IntLists.IntLazyList.
+ */
+final class IntLockableEntry extends IntEntry {
+    /**
+     * Lock protecting this entry's link field.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Whether this entry has been logically removed.
+     */
+    volatile boolean marked;
+
+    /**
+     * The next element in the list, used in place of IntEntry.next.
+     * Volatile because IntLists.IntLazyList traverses without holding locks.
+     */
+    volatile IntLockableEntry link;
+
+    /**
+     * Constructor.
+     *
+     * @param setKey Value to store in this item
+     */
+    IntLockableEntry(final int setKey) {
+        super(setKey);
+    }
+
+    /**
+     * Creates the sentinels of an empty list.
+     *
+     * @return An entry holding Integer.MIN_VALUE, linked to one holding
+     *         Integer.MAX_VALUE
+     */
+    static IntLockableEntry sentinels() {
+        final IntLockableEntry first = new IntLockableEntry(Integer.MIN_VALUE);
+        first.link = new IntLockableEntry(Integer.MAX_VALUE);
+        return first;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntEntry getNext() {
+        return link;
+    }
+}
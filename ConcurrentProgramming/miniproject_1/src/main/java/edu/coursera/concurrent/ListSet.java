@@ -17,10 +17,21 @@ public abstract class ListSet {
      * Default constructor.
      */
     public ListSet() {
-        this.head = new Entry(Integer.MIN_VALUE);
+        this(new Entry(Integer.MIN_VALUE));
         this.head.next = new Entry(Integer.MAX_VALUE);
     }
 
+    /**
+     * Constructor for lists whose entries are a subclass of Entry, and
+     * which link the head to the tail themselves.
+     *
+     * @param setHead Entry holding Integer.MIN_VALUE to use as the head,
+     *        already linked to a tail holding Integer.MAX_VALUE
+     */
+    protected ListSet(final Entry setHead) {
+        this.head = setHead;
+    }
+
     /**
      * Getter for the head of the list.
      *
@@ -0,0 +1,30 @@
+package edu.coursera.concurrent;
+
+/**
+ * A list entry for LockFreeList. Entries without a value are the markers
+ * that LockFreeList uses to flag a deleted entry.
+ */
+final class LockFreeEntry extends Entry {
+    /**
+     * The next element in the list, used in place of Entry.next. Volatile
+     * so that it can be read and compare-and-set without a lock.
+     */
+    volatile LockFreeEntry link;
+
+    /**
+     * Constructor.
+     *
+     * @param setObject Value to store in this item, or null for a marker
+     */
+    LockFreeEntry(final Integer setObject) {
+        super(setObject);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getNext() {
+        return link;
+    }
+}
@@ -0,0 +1,164 @@
+package edu.coursera.concurrent;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free implementation of the ListSet interface, after the sorted
+ * linked lists of Harris and Michael.
+ *
+ * Removing an entry takes two steps. The entry is first deleted logically,
+ * by compare-and-setting its link to a marker entry that points on to its
+ * old successor; from then on its link can never change, so no entry can be
+ * inserted after it. It is then unlinked physically, by compare-and-setting
+ * its predecessor's link past it and its marker.
+ * A marker plays the role of the mark bit of an AtomicMarkableReference,
+ * but keeps every link a plain entry reference, so the list can still be
+ * walked from getHead() like the other ListSet implementations.
+ *
+ * Traversals in add and remove help: whenever they meet a logically deleted
+ * entry they try to unlink it, and start over from the head if a concurrent
+ * change gets in their way. A successful remove returns only once its entry
+ * is unlinked, so a quiescent list holds no deleted entries. contains never
+ * writes or retries: it walks through markers and reports an entry as
+ * present only if it is not deleted.
+ */
+public final class LockFreeList extends ListSet {
+    /**
+     * Atomic access to LockFreeEntry.link.
+     */
+    private static final AtomicReferenceFieldUpdater<LockFreeEntry,
+            LockFreeEntry> NEXT = AtomicReferenceFieldUpdater.newUpdater(
+                LockFreeEntry.class, LockFreeEntry.class, "link");
+
+    /**
+     * Constructor.
+     */
+    public LockFreeList() {
+        super(new LockFreeEntry(Integer.MIN_VALUE));
+        ((LockFreeEntry) this.head).link =
+            new LockFreeEntry(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Tests whether an entry is a marker. Markers are the only entries
+     * without a value.
+     *
+     * @param entry Entry to test, or null past the end of the list
+     * @return true if entry is a marker
+     */
+    private static boolean isMarker(final LockFreeEntry entry) {
+        return entry != null && entry.object == null;
+    }
+
+    /**
+     * Finds the entries between which value belongs, unlinking any deleted
+     * entries on the way.
+     *
+     * @param value The value to search for
+     * @param window Set to {pred, curr}: adjacent entries, neither deleted
+     *        when read, with pred's value less than value and curr's value
+     *        at least value
+     */
+    private void find(final int value, final LockFreeEntry[] window) {
+        retry:
+        while (true) {
+            LockFreeEntry pred = (LockFreeEntry) this.head;
+            LockFreeEntry curr = pred.link;
+
+            while (true) {
+                if (isMarker(curr)) {
+                    // pred was deleted after we moved onto it.
+                    continue retry;
+                }
+                final LockFreeEntry succ = curr.link;
+                if (isMarker(succ)) {
+                    // curr is deleted: help unlink it and its marker.
+                    if (!NEXT.compareAndSet(pred, curr, succ.link)) {
+                        continue retry;
+                    }
+                    curr = succ.link;
+                    continue;
+                }
+                if (curr.object.intValue() >= value) {
+                    window[0] = pred;
+                    window[1] = curr;
+                    return;
+                }
+                pred = curr;
+                curr = succ;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean add(final Integer object) {
+        final int value = object;
+        final LockFreeEntry[] window = new LockFreeEntry[2];
+
+        while (true) {
+            find(value, window);
+            final LockFreeEntry pred = window[0];
+            final LockFreeEntry curr = window[1];
+
+            if (curr.object.intValue() == value) {
+                return false;
+            }
+            final LockFreeEntry entry = new LockFreeEntry(object);
+            entry.link = curr;
+            if (NEXT.compareAndSet(pred, curr, entry)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean remove(final Integer object) {
+        final int value = object;
+        final LockFreeEntry[] window = new LockFreeEntry[2];
+
+        while (true) {
+            find(value, window);
+            final LockFreeEntry pred = window[0];
+            final LockFreeEntry curr = window[1];
+
+            if (curr.object.intValue() != value) {
+                return false;
+            }
+            final LockFreeEntry succ = curr.link;
+            if (isMarker(succ)) {
+                // Another remove got there first; find will clean up.
+                continue;
+            }
+            final LockFreeEntry marker = new LockFreeEntry(null);
+            marker.link = succ;
+            if (!NEXT.compareAndSet(curr, succ, marker)) {
+                continue;
+            }
+
+            if (!NEXT.compareAndSet(pred, curr, succ)) {
+                find(value, window);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean contains(final Integer object) {
+        final int value = object;
+        LockFreeEntry curr = ((LockFreeEntry) this.head).link;
+
+        while (isMarker(curr) || curr.object.intValue() < value) {
+            curr = curr.link;
+        }
+        return curr.object.intValue() == value && !isMarker(curr.link);
+    }
+}
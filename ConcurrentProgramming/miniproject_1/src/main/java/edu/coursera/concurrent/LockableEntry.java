@@ -0,0 +1,54 @@
+package edu.coursera.concurrent;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A list entry with its own lock, for the fine-grained list implementations
+ * in FineGrainedLists.
+ */
+final class LockableEntry extends Entry {
+    /**
+     * Lock protecting this entry's link field.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Whether this entry has been logically removed from a LazyList.
+     */
+    volatile boolean marked;
+
+    /**
+     * The next element in the list, used in place of Entry.next. Volatile
+     * because OptimisticList and LazyList traverse without holding locks.
+     */
+    volatile LockableEntry link;
+
+    /**
+     * Constructor.
+     *
+     * @param setObject Value to store in this item
+     */
+    LockableEntry(final Integer setObject) {
+        super(setObject);
+    }
+
+    /**
+     * Creates the sentinels of an empty list.
+     *
+     * @return An entry holding Integer.MIN_VALUE, linked to one holding
+     *         Integer.MAX_VALUE
+     */
+    static LockableEntry sentinels() {
+        final LockableEntry first = new LockableEntry(Integer.MIN_VALUE);
+        first.link = new LockableEntry(Integer.MAX_VALUE);
+        return first;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getNext() {
+        return link;
+    }
+}
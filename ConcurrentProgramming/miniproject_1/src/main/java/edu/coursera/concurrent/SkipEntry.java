@@ -0,0 +1,77 @@
+package edu.coursera.concurrent;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A tower of a SkipListSet: one list entry that is linked into every level
+ * of the skip list from 0 up to its top level. getNext() follows level 0,
+ * so the bottom level of a skip list can be walked like any other ListSet.
+ */
+final class SkipEntry extends Entry {
+    /**
+     * Lock protecting this entry's next fields at every level.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Whether this entry has been logically removed.
+     */
+    volatile boolean marked;
+
+    /**
+     * Whether this entry has been linked into every one of its levels.
+     */
+    volatile boolean fullyLinked;
+
+    /**
+     * Highest level this entry is linked into.
+     */
+    final int topLevel;
+
+    /**
+     * Next entry at each level from 0 to topLevel, used in place of
+     * Entry.next.
+     */
+    private final AtomicReferenceArray<SkipEntry> links;
+
+    /**
+     * Constructor.
+     *
+     * @param setObject Value to store in this item
+     * @param setTopLevel Highest level to link this entry into
+     */
+    SkipEntry(final Integer setObject, final int setTopLevel) {
+        super(setObject);
+        this.topLevel = setTopLevel;
+        this.links = new AtomicReferenceArray<>(setTopLevel + 1);
+    }
+
+    /**
+     * Get the next entry at a level.
+     *
+     * @param level Level, from 0 to topLevel
+     * @return Next entry at that level
+     */
+    SkipEntry getNext(final int level) {
+        return links.get(level);
+    }
+
+    /**
+     * Set the next entry at a level.
+     *
+     * @param level Level, from 0 to topLevel
+     * @param entry Next entry at that level
+     */
+    void setNext(final int level, final SkipEntry entry) {
+        links.set(level, entry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getNext() {
+        return links.get(0);
+    }
+}
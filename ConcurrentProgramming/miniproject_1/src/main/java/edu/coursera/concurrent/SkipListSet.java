@@ -0,0 +1,224 @@
+package edu.coursera.concurrent;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A concurrent skip list implementing the ListSet interface, so add, remove
+ * and contains take O(log n) steps instead of the O(n) of a linked list.
+ *
+ * Synchronization follows the lazy skip list of Herlihy, Lev, Luchangco and
+ * Shavit, the skip-list form of FineGrainedLists.LazyList. Traversals take
+ * no locks. add and remove lock the predecessors of an entry at each of its
+ * levels, validate that they are unmarked and still point to the expected
+ * successors, and start over if not. An entry is in the set once it is
+ * linked at every level (fullyLinked) and until it is marked, so contains
+ * is wait-free.
+ *
+ * Locks are always taken in decreasing order of value (an entry before its
+ * predecessors, and the predecessor at each level before the one at the
+ * level above), so operations cannot deadlock. The head and tail keep the
+ * Integer.MIN_VALUE and Integer.MAX_VALUE sentinel values of ListSet and
+ * span every level, and getNext() walks level 0 from getHead().
+ */
+public final class SkipListSet extends ListSet {
+    /**
+     * Number of levels, enough for about 2^MAX_LEVEL values.
+     */
+    static final int MAX_LEVEL = 24;
+
+    /**
+     * Constructor.
+     */
+    public SkipListSet() {
+        super(new SkipEntry(Integer.MIN_VALUE, MAX_LEVEL - 1));
+        final SkipEntry first = (SkipEntry) this.head;
+        final SkipEntry last = new SkipEntry(Integer.MAX_VALUE,
+                MAX_LEVEL - 1);
+        for (int level = 0; level < MAX_LEVEL; level++) {
+            first.setNext(level, last);
+        }
+        first.fullyLinked = true;
+        last.fullyLinked = true;
+    }
+
+    /**
+     * Picks the top level of a new entry: level k with probability 2^-(k+1).
+     *
+     * @return A level from 0 to MAX_LEVEL - 1
+     */
+    private static int randomLevel() {
+        return Integer.numberOfTrailingZeros(ThreadLocalRandom.current()
+                .nextInt() | (1 << (MAX_LEVEL - 1)));
+    }
+
+    /**
+     * Finds the predecessor and successor of value at every level.
+     *
+     * @param value The value to search for
+     * @param preds Set to the last entry with a smaller value at each level
+     * @param succs Set to the entry after preds at each level
+     * @return The highest level at which an entry holding value was found,
+     *         or -1 if none was
+     */
+    private int find(final int value, final SkipEntry[] preds,
+            final SkipEntry[] succs) {
+        int found = -1;
+        SkipEntry pred = (SkipEntry) this.head;
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            SkipEntry curr = pred.getNext(level);
+            while (curr.object.intValue() < value) {
+                pred = curr;
+                curr = pred.getNext(level);
+            }
+            if (found == -1 && curr.object.intValue() == value) {
+                found = level;
+            }
+            preds[level] = pred;
+            succs[level] = curr;
+        }
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean add(final Integer object) {
+        final int value = object;
+        final int topLevel = randomLevel();
+        final SkipEntry[] preds = new SkipEntry[MAX_LEVEL];
+        final SkipEntry[] succs = new SkipEntry[MAX_LEVEL];
+
+        while (true) {
+            final int found = find(value, preds, succs);
+            if (found != -1) {
+                final SkipEntry existing = succs[found];
+                if (!existing.marked) {
+                    // Being added or already present: wait until it is in.
+                    while (!existing.fullyLinked) {
+                        Thread.yield();
+                    }
+                    return false;
+                }
+                // Being removed: retry once it is unlinked.
+                continue;
+            }
+
+            int highestLocked = -1;
+            try {
+                boolean valid = true;
+                for (int level = 0; valid && level <= topLevel; level++) {
+                    final SkipEntry pred = preds[level];
+                    final SkipEntry succ = succs[level];
+                    pred.lock.lock();
+                    highestLocked = level;
+                    valid = !pred.marked && !succ.marked
+                        && pred.getNext(level) == succ;
+                }
+                if (!valid) {
+                    continue;
+                }
+
+                final SkipEntry entry = new SkipEntry(object, topLevel);
+                for (int level = 0; level <= topLevel; level++) {
+                    entry.setNext(level, succs[level]);
+                }
+                for (int level = 0; level <= topLevel; level++) {
+                    preds[level].setNext(level, entry);
+                }
+                entry.fullyLinked = true;
+                return true;
+            } finally {
+                for (int level = 0; level <= highestLocked; level++) {
+                    preds[level].lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean remove(final Integer object) {
+        final int value = object;
+        final SkipEntry[] preds = new SkipEntry[MAX_LEVEL];
+        final SkipEntry[] succs = new SkipEntry[MAX_LEVEL];
+        SkipEntry victim = null;
+        boolean isMarked = false;
+
+        try {
+            while (true) {
+                final int found = find(value, preds, succs);
+                if (!isMarked) {
+                    if (found == -1) {
+                        return false;
+                    }
+                    victim = succs[found];
+                    // Only an entry found at its own top level is fully
+                    // linked and not already being removed.
+                    if (!victim.fullyLinked || victim.topLevel != found
+                            || victim.marked) {
+                        return false;
+                    }
+                    victim.lock.lock();
+                    if (victim.marked) {
+                        victim.lock.unlock();
+                        return false;
+                    }
+                    victim.marked = true;
+                    isMarked = true;
+                }
+
+                final int topLevel = victim.topLevel;
+                int highestLocked = -1;
+                try {
+                    boolean valid = true;
+                    for (int level = 0; valid && level <= topLevel; level++) {
+                        final SkipEntry pred = preds[level];
+                        pred.lock.lock();
+                        highestLocked = level;
+                        valid = !pred.marked
+                            && pred.getNext(level) == victim;
+                    }
+                    if (!valid) {
+                        continue;
+                    }
+
+                    for (int level = topLevel; level >= 0; level--) {
+                        preds[level].setNext(level, victim.getNext(level));
+                    }
+                    return true;
+                } finally {
+                    for (int level = 0; level <= highestLocked; level++) {
+                        preds[level].lock.unlock();
+                    }
+                }
+            }
+        } finally {
+            if (isMarked) {
+                victim.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean contains(final Integer object) {
+        final int value = object;
+        SkipEntry pred = (SkipEntry) this.head;
+        for (int level = MAX_LEVEL - 1; level >= 0; level--) {
+            SkipEntry curr = pred.getNext(level);
+            while (curr.object.intValue() < value) {
+                pred = curr;
+                curr = pred.getNext(level);
+            }
+            if (curr.object.intValue() == value) {
+                return curr.fullyLinked && !curr.marked;
+            }
+        }
+        return false;
+    }
+}
@@ -3,7 +3,9 @@ package edu.coursera.concurrent;
 import junit.framework.TestCase;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.BrokenBarrierException;
@@ -11,6 +13,11 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import edu.coursera.concurrent.CoarseLists.CoarseList;
 import edu.coursera.concurrent.CoarseLists.RWCoarseList;
+import edu.coursera.concurrent.FineGrainedLists.HandOverHandList;
+import edu.coursera.concurrent.FineGrainedLists.LazyList;
+import edu.coursera.concurrent.FineGrainedLists.OptimisticList;
+import edu.coursera.concurrent.IntLists.IntCoarseList;
+import edu.coursera.concurrent.IntLists.IntLazyList;
 
 public class ListSetTest extends TestCase {
     private final int randNumsLength = 10_000;
@@ -229,6 +236,390 @@ public class ListSetTest extends TestCase {
         assertTrue(removemsg, removeImprovement >= expectedRemove);
     }
 
+    public void testLockFreeRandomLarge() throws InterruptedException {
+        final SequenceGenerator addSeq = new RandomSequenceGenerator(0,
+                getNCores() * randNumsLength, randNumRange);
+        final SequenceGenerator containsSeq = new RandomSequenceGenerator(1,
+                getNCores() * randNumsLength, randNumRange);
+        final SequenceGenerator removeSeq = new ReversedSequenceGenerator(
+                new RandomSequenceGenerator(2, getNCores() * randNumsLength, randNumRange));
+
+        testImprovementHelper(() -> new LockFreeList(), "LockFreeList",
+                () -> new SyncList(), "SyncList", addSeq, containsSeq,
+                removeSeq, 0.8, lockFreeExpectedContains(), 0.8, "Large");
+    }
+
+    public void testLockFreeRepeatingLarge() throws InterruptedException {
+        final SequenceGenerator addSeq = new RepeatingSequenceGenerator(
+                getNCores() * 6 * randNumsLength, randNumsLength);
+        final SequenceGenerator containsSeq = new RepeatingSequenceGenerator(
+                getNCores() * 6 * randNumsLength, randNumsLength);
+        final SequenceGenerator removeSeq = new ReversedSequenceGenerator(
+                new RepeatingSequenceGenerator(getNCores() * 6 * randNumsLength, randNumsLength));
+
+        testImprovementHelper(() -> new LockFreeList(), "LockFreeList",
+                () -> new SyncList(), "SyncList", addSeq, containsSeq,
+                removeSeq, 0.8, lockFreeExpectedContains(), 0.8, "Large");
+    }
+
+    /**
+     * The contains improvement LockFreeList must show over SyncList. With one core the threads take turns either
+     * way, and both random and repeating runs measured 0.99x-1.04x, so only a regression is caught there.
+     */
+    private static double lockFreeExpectedContains() {
+        return getNCores() > 1 ? 1.8 : 0.8;
+    }
+
+    /**
+     * Test that contains on a LockFreeList scales with the number of threads: on a prefilled list, total lookup
+     * throughput with one thread per core (up to 32) must be at least half of linear in the thread count. With one
+     * core there is nothing to scale to, so the throughputs are only printed.
+     */
+    public void testLockFreeContainsScaling() throws InterruptedException {
+        final int maxThreads = Math.min(32, getNCores());
+        final int size = 2_000;
+        final int lookupsPerThread = 50_000;
+        final LockFreeList list = new LockFreeList();
+        for (int i = 0; i < size; i++) {
+            assertTrue(list.add(2 * i));
+        }
+
+        final double singleRate = timeContains(list, 1, size, lookupsPerThread);
+        System.out.println("LockFreeList contains with 1 thread: " + singleRate + " lookups/ms");
+        double rate = singleRate;
+        int threads = 1;
+        while (threads < maxThreads) {
+            threads = Math.min(2 * threads, maxThreads);
+            rate = timeContains(list, threads, size, lookupsPerThread);
+            System.out.println("LockFreeList contains with " + threads + " threads: " + (rate / singleRate) +
+                    "x the throughput of one thread");
+        }
+
+        if (maxThreads > 1) {
+            final double expected = 0.5 * maxThreads;
+            final String msg = String.format("Expected contains throughput with %d threads to be at least %fx that "
+                    + "of one thread, but found %fx", maxThreads, expected, rate / singleRate);
+            assertTrue(msg, rate / singleRate >= expected);
+        }
+    }
+
+    /**
+     * Returns the best of several measurements of the total contains throughput, in lookups per millisecond, of
+     * the given number of threads doing random lookups, half of them hits, on a list of the even numbers below
+     * 2 * size.
+     */
+    private static double timeContains(final ListSet list, final int threads, final int size,
+            final int lookupsPerThread) throws InterruptedException {
+        final Integer[][] keys = new Integer[threads][lookupsPerThread];
+        for (int t = 0; t < threads; t++) {
+            final Random rand = new Random(t);
+            for (int i = 0; i < lookupsPerThread; i++) {
+                keys[t][i] = rand.nextInt(2 * size);
+            }
+        }
+        final Runnable[] runners = new Runnable[threads];
+        for (int t = 0; t < threads; t++) {
+            final Integer[] myKeys = keys[t];
+            runners[t] = () -> {
+                for (Integer key : myKeys) {
+                    list.contains(key);
+                }
+            };
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < 3; r++) {
+            final long startTime = System.nanoTime();
+            launchAndJoinAll(runners);
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        return (double) threads * lookupsPerThread / (best / 1e6);
+    }
+
+    public void testLockFreeMixedOperations() throws InterruptedException {
+        mixedOperationsHelper(setOps(new LockFreeList()));
+    }
+
+    /**
+     * Runs a fine-grained list against both coarse-grained baselines, checking that they agree on every result and
+     * printing the throughput ratios, and returns the ratios against CoarseList. The ratios are not asserted here:
+     * with one core the threads take turns whatever the locking, and even on several cores hand-over-hand locking
+     * and optimistic validation are expected to cost more than they save on a list this long.
+     */
+    private Improvements fineGrainedRandomLargeHelper(final ListFactory factory,
+            final String lbl) throws InterruptedException {
+        final SequenceGenerator addSeq = new RandomSequenceGenerator(0,
+                getNCores() * randNumsLength, randNumRange);
+        final SequenceGenerator containsSeq = new RandomSequenceGenerator(1,
+                getNCores() * randNumsLength, randNumRange);
+        final SequenceGenerator removeSeq = new ReversedSequenceGenerator(
+                new RandomSequenceGenerator(2, getNCores() * randNumsLength, randNumRange));
+
+        compareHelper(factory, lbl, () -> new RWCoarseList(), "RWCoarseList",
+                addSeq, containsSeq, removeSeq, "Large");
+        return compareHelper(factory, lbl, () -> new CoarseList(),
+                "CoarseList", addSeq, containsSeq, removeSeq, "Large");
+    }
+
+    public void testHandOverHandRandomLarge() throws InterruptedException {
+        fineGrainedRandomLargeHelper(() -> new HandOverHandList(),
+                "HandOverHandList");
+    }
+
+    public void testOptimisticRandomLarge() throws InterruptedException {
+        fineGrainedRandomLargeHelper(() -> new OptimisticList(),
+                "OptimisticList");
+    }
+
+    /**
+     * LazyList contains takes no locks, so with several cores it must at least keep up with CoarseList, whose
+     * lookups all take the same lock.
+     */
+    public void testLazyRandomLarge() throws InterruptedException {
+        final Improvements improvements = fineGrainedRandomLargeHelper(
+                () -> new LazyList(), "LazyList");
+        if (getNCores() > 1) {
+            assertImprovement("contains", "LazyList", 1.0,
+                    improvements.contains);
+        }
+    }
+
+    public void testHandOverHandMixedOperations() throws InterruptedException {
+        mixedOperationsHelper(setOps(new HandOverHandList()));
+    }
+
+    public void testOptimisticMixedOperations() throws InterruptedException {
+        mixedOperationsHelper(setOps(new OptimisticList()));
+    }
+
+    public void testLazyMixedOperations() throws InterruptedException {
+        mixedOperationsHelper(setOps(new LazyList()));
+    }
+
+    public void testSkipListRandomLarge() throws InterruptedException {
+        final SequenceGenerator addSeq = new RandomSequenceGenerator(0,
+                getNCores() * randNumsLength, randNumRange);
+        final SequenceGenerator containsSeq = new RandomSequenceGenerator(1,
+                getNCores() * randNumsLength, randNumRange);
+        final SequenceGenerator removeSeq = new ReversedSequenceGenerator(
+                new RandomSequenceGenerator(2, getNCores() * randNumsLength, randNumRange));
+
+        testImprovementHelper(() -> new SkipListSet(), "SkipListSet",
+                () -> new SyncList(), "SyncList", addSeq, containsSeq,
+                removeSeq, 10.0, 10.0, 10.0, "Large");
+    }
+
+    public void testSkipListMixedOperations() throws InterruptedException {
+        mixedOperationsHelper(setOps(new SkipListSet()));
+    }
+
+    /**
+     * Test that the cost of contains on a skip list grows logarithmically with its size: ten times as many keys
+     * should cost far less than ten times as much per lookup.
+     */
+    public void testSkipListScaling() {
+        final int smallSize = 100_000;
+        final int largeSize = 10 * smallSize;
+        final int lookups = 1_000_000;
+
+        final double smallTime = timeSkipListContains(smallSize, lookups);
+        final double largeTime = timeSkipListContains(largeSize, lookups);
+        final double growth = largeTime / smallTime;
+        System.out.println("SkipListSet contains at " + largeSize + " keys took " + growth + "x as long as at " +
+                smallSize + " keys");
+
+        final double expected = 4.0;
+        final String msg = String.format("Expected contains time to grow by at most %fx for a 10x larger skip " +
+                "list, but it grew by %fx", expected, growth);
+        assertTrue(msg, growth <= expected);
+    }
+
+    /**
+     * Builds a skip list of the even numbers below 2 * size and returns the best of several timings of a sequence
+     * of random lookups, half of them hits.
+     */
+    private double timeSkipListContains(final int size, final int lookups) {
+        final SkipListSet list = new SkipListSet();
+        for (int i = 0; i < size; i++) {
+            assertTrue(list.add(2 * i));
+        }
+        final Random rand = new Random(size);
+        final Integer[] keys = new Integer[lookups];
+        for (int i = 0; i < lookups; i++) {
+            keys[i] = rand.nextInt(2 * size);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < 5; r++) {
+            int hits = 0;
+            final long startTime = System.nanoTime();
+            for (Integer key : keys) {
+                if (list.contains(key)) {
+                    hits++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - startTime);
+            assertTrue(hits > lookups / 3 && hits < 2 * lookups / 3);
+        }
+        return best;
+    }
+
+    /**
+     * Test that the int-keyed lists give the same result as CoarseList for every operation of a random sequence.
+     */
+    public void testIntListsMatchBoxed() {
+        final IntListSet[] intLists = {new IntCoarseList(), new IntLazyList()};
+        final ListSet ref = new CoarseList();
+        final Random rand = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final int key = rand.nextInt(2_000) - 1_000;
+            final int op = rand.nextInt(3);
+            final boolean expected = op == 0 ? ref.add(key) : op == 1 ? ref.remove(key) : ref.contains(key);
+            for (IntListSet list : intLists) {
+                final boolean actual = op == 0 ? list.add(key) : op == 1 ? list.remove(key) : list.contains(key);
+                assertEquals(list.getClass().getSimpleName() + " operation " + i + " on key " + key, expected, actual);
+            }
+        }
+
+        for (IntListSet list : intLists) {
+            Entry expected = ref.getHead();
+            for (IntEntry curr = list.getHead(); curr != null; curr = curr.getNext()) {
+                assertEquals(expected.object.intValue(), curr.key);
+                expected = expected.getNext();
+            }
+            assertNull(expected);
+        }
+    }
+
+    public void testIntCoarseListMixedOperations() throws InterruptedException {
+        mixedOperationsHelper(setOps(new IntCoarseList()));
+    }
+
+    public void testIntLazyListMixedOperations() throws InterruptedException {
+        mixedOperationsHelper(setOps(new IntLazyList()));
+    }
+
+    /**
+     * Runs adds, removes and contains concurrently on a small range of keys, so that operations on the same and
+     * on adjacent keys race, and checks that for every key the successful adds and removes across all threads
+     * balance with its final presence in the list.
+     */
+    private void mixedOperationsHelper(final SetOps list) throws InterruptedException {
+        final int numThreads = Math.max(4, getNCores());
+        final int keyRange = 64;
+        final int opsPerThread = 200_000;
+        final int[][] netAdds = new int[numThreads][keyRange];
+        final AtomicLong finished = new AtomicLong(0);
+
+        final Runnable[] runners = new Runnable[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            final int tid = t;
+            runners[t] = () -> {
+                final Random rand = new Random(tid);
+                for (int i = 0; i < opsPerThread; i++) {
+                    final int key = rand.nextInt(keyRange);
+                    final int op = rand.nextInt(3);
+                    if (op == 0) {
+                        if (list.add(key)) {
+                            netAdds[tid][key]++;
+                        }
+                    } else if (op == 1) {
+                        if (list.remove(key)) {
+                            netAdds[tid][key]--;
+                        }
+                    } else {
+                        list.contains(key);
+                    }
+                }
+                finished.incrementAndGet();
+            };
+        }
+        launchAndJoinAll(runners);
+        assertEquals("Some threads failed", numThreads, finished.get());
+
+        int prev = Integer.MIN_VALUE;
+        int length = 0;
+        for (int key : list.walk()) {
+            assertTrue("List was not sorted", key > prev);
+            prev = key;
+            length++;
+        }
+
+        int expectedLength = 0;
+        for (int key = 0; key < keyRange; key++) {
+            int net = 0;
+            for (int t = 0; t < numThreads; t++) {
+                net += netAdds[t][key];
+            }
+            assertTrue("Key " + key + " was added " + net + " more times than removed", net == 0 || net == 1);
+            assertEquals("Presence of key " + key, net == 1, list.contains(key));
+            expectedLength += net;
+        }
+        assertEquals(expectedLength, length);
+    }
+
+    /**
+     * Compares an implementation against a reference implementation: the two must agree on every result, and
+     * the implementation must reach the given throughput improvements.
+     */
+    private void testImprovementHelper(final ListFactory factory,
+            final String lbl, final ListFactory refFactory,
+            final String refLbl, final SequenceGenerator addSeq,
+            final SequenceGenerator containsSeq,
+            final SequenceGenerator removeSeq, final double expectedAdd,
+            final double expectedContains, final double expectedRemove,
+            final String datasetName) throws InterruptedException {
+        final Improvements improvements = compareHelper(factory, lbl,
+                refFactory, refLbl, addSeq, containsSeq, removeSeq,
+                datasetName);
+        assertImprovement("add", lbl, expectedAdd, improvements.add);
+        assertImprovement("contains", lbl, expectedContains,
+                improvements.contains);
+        assertImprovement("remove", lbl, expectedRemove, improvements.remove);
+    }
+
+    /**
+     * Runs an implementation and a reference implementation on the same sequences, prints their throughputs,
+     * checks that they agree on every result, and returns the implementation's improvement over the reference.
+     */
+    private static Improvements compareHelper(final ListFactory factory,
+            final String lbl, final ListFactory refFactory,
+            final String refLbl, final SequenceGenerator addSeq,
+            final SequenceGenerator containsSeq,
+            final SequenceGenerator removeSeq, final String datasetName)
+            throws InterruptedException {
+        final TestResultsPair results = runKernel(factory, lbl, refFactory,
+                refLbl, addSeq, containsSeq, removeSeq);
+        final TestResults testResults = results.A;
+        final TestResults refResults = results.B;
+        printStats(refResults, testResults, addSeq, datasetName);
+
+        assertEquals(refResults.listLengthAfterAdds,
+                testResults.listLengthAfterAdds);
+        assertEquals(refResults.totalContainsSuccesses,
+                testResults.totalContainsSuccesses);
+        assertEquals(refResults.totalContainsFailures,
+                testResults.totalContainsFailures);
+        assertEquals(refResults.listLengthAfterRemoves,
+                testResults.listLengthAfterRemoves);
+        assertEquals(refResults.totalRemovesSuccesses,
+                testResults.totalRemovesSuccesses);
+        assertEquals(refResults.totalRemovesFailures,
+                testResults.totalRemovesFailures);
+
+        return new Improvements(testResults.addRate / refResults.addRate,
+                testResults.containsRate / refResults.containsRate,
+                testResults.removeRate / refResults.removeRate);
+    }
+
+    private static void assertImprovement(final String op, final String lbl,
+            final double expected, final double found) {
+        final String msg = String.format("Expected %s throughput " +
+                "improvement to be at least %fx with %s, but found %fx", op,
+                expected, lbl, found);
+        assertTrue(msg, found >= expected);
+    }
+
     private static TestResultsPair runKernel(final ListFactory factoryA,
             final String lblA, final ListFactory factoryB, final String lblB,
             final SequenceGenerator addSeq, final SequenceGenerator containsSeq,
@@ -327,7 +718,7 @@ public class ListSetTest extends TestCase {
          */
         int listLengthAfterAdds = 1;
         Entry prev = list.getHead();
-        Entry curr = prev.next;
+        Entry curr = prev.getNext();
         while (curr != null) {
             assertTrue("List was not sorted, index " +
                     (listLengthAfterAdds - 1) + " is " +
@@ -336,7 +727,7 @@ public class ListSetTest extends TestCase {
                     curr.object.intValue() > prev.object.intValue());
 
             prev = curr;
-            curr = curr.next;
+            curr = curr.getNext();
             listLengthAfterAdds++;
         }
 
@@ -372,13 +763,13 @@ public class ListSetTest extends TestCase {
          */
         int listLengthAfterRemoves = 1;
         prev = list.getHead();
-        curr = prev.next;
+        curr = prev.getNext();
         while (curr != null) {
             assertTrue("List was not sorted",
                     curr.object.intValue() > prev.object.intValue());
 
             prev = curr;
-            curr = curr.next;
+            curr = curr.getNext();
             listLengthAfterRemoves++;
         }
 
@@ -451,6 +842,19 @@ public class ListSetTest extends TestCase {
         }
     }
 
+    private static class Improvements {
+        public final double add;
+        public final double contains;
+        public final double remove;
+
+        public Improvements(final double setAdd, final double setContains,
+                final double setRemove) {
+            add = setAdd;
+            contains = setContains;
+            remove = setRemove;
+        }
+    }
+
     private static class TestResultsPair {
         public final TestResults A;
         public final TestResults B;
@@ -464,4 +868,67 @@ public class ListSetTest extends TestCase {
     private interface ListFactory {
         public ListSet construct();
     }
+
+    /**
+     * The operations mixedOperationsHelper runs, so that it can stress both ListSet and IntListSet
+     * implementations.
+     */
+    private interface SetOps {
+        public boolean add(int key);
+        public boolean remove(int key);
+        public boolean contains(int key);
+
+        /**
+         * Returns the values between the head and tail sentinels, in list order.
+         */
+        public List<Integer> walk();
+    }
+
+    private static SetOps setOps(final ListSet list) {
+        return new SetOps() {
+            public boolean add(final int key) {
+                return list.add(key);
+            }
+
+            public boolean remove(final int key) {
+                return list.remove(key);
+            }
+
+            public boolean contains(final int key) {
+                return list.contains(key);
+            }
+
+            public List<Integer> walk() {
+                final List<Integer> keys = new ArrayList<>();
+                for (Entry curr = list.getHead().getNext(); curr.getNext() != null; curr = curr.getNext()) {
+                    keys.add(curr.object);
+                }
+                return keys;
+            }
+        };
+    }
+
+    private static SetOps setOps(final IntListSet list) {
+        return new SetOps() {
+            public boolean add(final int key) {
+                return list.add(key);
+            }
+
+            public boolean remove(final int key) {
+                return list.remove(key);
+            }
+
+            public boolean contains(final int key) {
+                return list.contains(key);
+            }
+
+            public List<Integer> walk() {
+                final List<Integer> keys = new ArrayList<>();
+                for (IntEntry curr = list.getHead().getNext(); curr.getNext() != null; curr = curr.getNext()) {
+                    keys.add(curr.key);
+                }
+                return keys;
+            }
+        };
+    }
 }
@@ -0,0 +1,171 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the ReciprocalArraySum entry points across array sizes, task
+ * counts, and pool reuse, measured after JIT warmup and outside of any pool
+ * setup done by the harness.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReciprocalArraySumBenchmark {
+
+    /**
+     * Input array shared by all benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class Input {
+        /**
+         * Number of elements to reduce. Kept even for parArraySum.
+         */
+        @Param({"1000000", "10000000", "100000000"})
+        private int size;
+
+        /**
+         * Input array to reciprocal sum.
+         */
+        private double[] values;
+
+        /**
+         * Fills the input with non-zero values.
+         */
+        @Setup
+        public void setup() {
+            final Random rand = new Random(314);
+            values = new double[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = 1 + rand.nextInt(99);
+            }
+        }
+    }
+
+    /**
+     * Number of flat chunks, and a pool that is reused across invocations.
+     */
+    @State(Scope.Benchmark)
+    public static class Tasks {
+        /**
+         * Number of tasks parManyTaskArraySum splits the input into.
+         */
+        @Param({"2", "4", "8", "16", "64"})
+        private int numTasks;
+
+        /**
+         * Pool created once per trial and reused by every invocation.
+         */
+        private ForkJoinPool pool;
+
+        /**
+         * Starts the reused pool.
+         */
+        @Setup(Level.Trial)
+        public void setup() {
+            pool = new ForkJoinPool(numTasks);
+        }
+
+        /**
+         * Stops the reused pool.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sequential baseline.
+     *
+     * @param input Input array
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double seqArraySum(final Input input) {
+        return ReciprocalArraySum.seqArraySum(input.values);
+    }
+
+    /**
+     * Two tasks on the shared pool.
+     *
+     * @param input Input array
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double parArraySum(final Input input) {
+        return ReciprocalArraySum.parArraySum(input.values);
+    }
+
+    /**
+     * Flat chunking as currently implemented.
+     *
+     * @param input Input array
+     * @param tasks Number of tasks
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double parManyTaskArraySum(final Input input, final Tasks tasks) {
+        return ReciprocalArraySum.parManyTaskArraySum(input.values,
+                tasks.numTasks);
+    }
+
+    /**
+     * Flat chunking on a pool that is created and shut down on every call.
+     *
+     * @param input Input array
+     * @param tasks Number of tasks
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double parManyTaskFreshPool(final Input input, final Tasks tasks) {
+        final ForkJoinPool pool = new ForkJoinPool(tasks.numTasks);
+        try {
+            return ReciprocalArraySum.parManyTaskArraySum(input.values,
+                    tasks.numTasks, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Flat chunking on a pool reused across calls.
+     *
+     * @param input Input array
+     * @param tasks Number of tasks
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double parManyTaskReusedPool(final Input input, final Tasks tasks) {
+        return ReciprocalArraySum.parManyTaskArraySum(input.values,
+                tasks.numTasks, tasks.pool);
+    }
+
+    /**
+     * Recursive reduction on the shared pool.
+     *
+     * @param input Input array
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double parRecursiveArraySum(final Input input) {
+        return ReciprocalArraySum.parRecursiveArraySum(input.values);
+    }
+}
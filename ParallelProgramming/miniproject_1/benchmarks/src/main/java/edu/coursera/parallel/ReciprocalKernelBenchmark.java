@@ -0,0 +1,116 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single-accumulator reciprocal-sum loop against the unrolled
+ * kernel and the reproducible compensated sum, both sequentially and under
+ * fork/join.
+ *
+ * Run with: java -jar target/benchmarks.jar ReciprocalKernelBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReciprocalKernelBenchmark {
+    /**
+     * Number of elements to reduce, from L2-resident to memory-bound.
+     */
+    @Param({"100000", "10000000"})
+    private int size;
+
+    /**
+     * Input array to reciprocal sum.
+     */
+    private double[] input;
+
+    /**
+     * Fills the input with non-zero values.
+     */
+    @Setup
+    public void setup() {
+        final Random rand = new Random(314);
+        input = new double[size];
+        for (int i = 0; i < size; i++) {
+            input[i] = 1 + rand.nextInt(99);
+        }
+    }
+
+    /**
+     * Current single-accumulator loop.
+     *
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double scalarSequential() {
+        return ReciprocalArraySum.seqArraySum(input);
+    }
+
+    /**
+     * Unrolled loop with independent accumulators.
+     *
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double unrolledSequential() {
+        return ReciprocalArraySum.seqArraySumUnrolled(input);
+    }
+
+    /**
+     * Recursive fork/join reduction with the single-accumulator loop.
+     *
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double scalarParallel() {
+        return ReciprocalArraySum.parRecursiveArraySum(input,
+                ReciprocalArraySum.Kernel.SCALAR);
+    }
+
+    /**
+     * Recursive fork/join reduction with the unrolled loop.
+     *
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double unrolledParallel() {
+        return ReciprocalArraySum.parRecursiveArraySum(input,
+                ReciprocalArraySum.Kernel.UNROLLED);
+    }
+
+    /**
+     * Kahan-summed blocks combined pairwise, on the calling thread.
+     *
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double reproducibleSequential() {
+        return ReciprocalArraySum.seqReproducibleArraySum(input);
+    }
+
+    /**
+     * Kahan-summed blocks combined pairwise, under fork/join.
+     *
+     * @return The reciprocal sum
+     */
+    @Benchmark
+    public double reproducibleParallel() {
+        return ReciprocalArraySum.parReproducibleArraySum(input);
+    }
+}
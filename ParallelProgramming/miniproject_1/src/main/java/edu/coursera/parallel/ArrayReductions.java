@@ -0,0 +1,578 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Reusable reductions over primitive arrays, with a sequential and a fork/join
+ * backend. Elements are read and combined through primitive functional
+ * interfaces so that no value is ever boxed.
+ *
+ * The fork/join backend splits the index range into chunks with the helpers
+ * in ReciprocalArraySum, reduces each chunk sequentially on the shared pool,
+ * and combines the partial results pairwise in chunk order. The combiner must
+ * therefore be associative, and identity must be its identity element.
+ */
+public final class ArrayReductions {
+
+    /**
+     * The way in which a reduction is executed.
+     */
+    public enum Backend {
+        /**
+         * A single loop on the calling thread.
+         */
+        SEQUENTIAL,
+        /**
+         * Chunked divide-and-conquer on the shared fork/join pool.
+         */
+        FORK_JOIN
+    }
+
+    /**
+     * Default constructor.
+     */
+    private ArrayReductions() {
+    }
+
+    /**
+     * Computes the number of chunks the fork/join backend splits a range of
+     * the given size into.
+     *
+     * @param nElements The number of elements to reduce
+     * @return The number of chunks, at least one
+     */
+    private static int getNChunks(final int nElements) {
+        final int cutoff = ReciprocalArraySum.getSequentialCutoff(nElements,
+                ReciprocalArraySum.POOL.getParallelism());
+        return Math.max(1, (nElements + cutoff - 1) / cutoff);
+    }
+
+    /**
+     * Reduces the values produced for each index in [0, nElements) into a
+     * single double.
+     *
+     * @param nElements The number of indices to reduce over
+     * @param identity The identity element of combiner
+     * @param element Produces the value for a given index
+     * @param combiner Associative operator combining two values
+     * @param backend The backend to execute on
+     * @return The reduced value, or identity if nElements is zero
+     */
+    public static double reduceToDouble(final int nElements,
+            final double identity, final IntToDoubleFunction element,
+            final DoubleBinaryOperator combiner, final Backend backend) {
+        if (backend == Backend.SEQUENTIAL) {
+            return reduceRange(0, nElements, identity, element, combiner);
+        }
+        final DoubleReductionTask t = new DoubleReductionTask(0,
+                getNChunks(nElements), nElements, identity, element,
+                combiner);
+        ReciprocalArraySum.POOL.invoke(t);
+        return t.getValue();
+    }
+
+    /**
+     * Reduces the values produced for each index in [0, nElements) into a
+     * single long.
+     *
+     * @param nElements The number of indices to reduce over
+     * @param identity The identity element of combiner
+     * @param element Produces the value for a given index
+     * @param combiner Associative operator combining two values
+     * @param backend The backend to execute on
+     * @return The reduced value, or identity if nElements is zero
+     */
+    public static long reduceToLong(final int nElements, final long identity,
+            final IntToLongFunction element,
+            final LongBinaryOperator combiner, final Backend backend) {
+        if (backend == Backend.SEQUENTIAL) {
+            return reduceRange(0, nElements, identity, element, combiner);
+        }
+        final LongReductionTask t = new LongReductionTask(0,
+                getNChunks(nElements), nElements, identity, element,
+                combiner);
+        ReciprocalArraySum.POOL.invoke(t);
+        return t.getValue();
+    }
+
+    /**
+     * Sequentially reduces the values for the indices in [start, end).
+     *
+     * @param start Inclusive start index
+     * @param end Exclusive end index
+     * @param identity The identity element of combiner
+     * @param element Produces the value for a given index
+     * @param combiner Associative operator combining two values
+     * @return The reduced value
+     */
+    private static double reduceRange(final int start, final int end,
+            final double identity, final IntToDoubleFunction element,
+            final DoubleBinaryOperator combiner) {
+        double acc = identity;
+        for (int i = start; i < end; i++) {
+            acc = combiner.applyAsDouble(acc, element.applyAsDouble(i));
+        }
+        return acc;
+    }
+
+    /**
+     * Sequentially reduces the values for the indices in [start, end).
+     *
+     * @param start Inclusive start index
+     * @param end Exclusive end index
+     * @param identity The identity element of combiner
+     * @param element Produces the value for a given index
+     * @param combiner Associative operator combining two values
+     * @return The reduced value
+     */
+    private static long reduceRange(final int start, final int end,
+            final long identity, final IntToLongFunction element,
+            final LongBinaryOperator combiner) {
+        long acc = identity;
+        for (int i = start; i < end; i++) {
+            acc = combiner.applyAsLong(acc, element.applyAsLong(i));
+        }
+        return acc;
+    }
+
+    /**
+     * Sum of the elements of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The sum
+     */
+    public static double sum(final double[] input, final Backend backend) {
+        return reduceToDouble(input.length, 0.0, i -> input[i], Double::sum,
+                backend);
+    }
+
+    /**
+     * Sum of the elements of input, accumulated as a long.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The sum
+     */
+    public static long sum(final int[] input, final Backend backend) {
+        return reduceToLong(input.length, 0L, i -> input[i], Long::sum,
+                backend);
+    }
+
+    /**
+     * Sum of the elements of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The sum
+     */
+    public static long sum(final long[] input, final Backend backend) {
+        return reduceToLong(input.length, 0L, i -> input[i], Long::sum,
+                backend);
+    }
+
+    /**
+     * Sum of the reciprocals of the elements of input, as computed by
+     * ReciprocalArraySum.seqArraySum.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The sum of reciprocals
+     */
+    public static double sumOfReciprocals(final double[] input,
+            final Backend backend) {
+        return reduceToDouble(input.length, 0.0, i -> 1 / input[i], Double::sum,
+                backend);
+    }
+
+    /**
+     * Sum of the squares of the elements of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The sum of squares
+     */
+    public static double sumOfSquares(final double[] input,
+            final Backend backend) {
+        return reduceToDouble(input.length, 0.0, i -> input[i] * input[i],
+                Double::sum, backend);
+    }
+
+    /**
+     * Sum of the squares of the elements of input, accumulated as a long.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The sum of squares
+     */
+    public static long sumOfSquares(final int[] input, final Backend backend) {
+        return reduceToLong(input.length, 0L, i -> (long) input[i] * input[i],
+                Long::sum, backend);
+    }
+
+    /**
+     * Sum of the squares of the elements of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The sum of squares
+     */
+    public static long sumOfSquares(final long[] input,
+            final Backend backend) {
+        return reduceToLong(input.length, 0L, i -> input[i] * input[i],
+                Long::sum, backend);
+    }
+
+    /**
+     * Dot product of two arrays of equal length.
+     *
+     * @param a First input array
+     * @param b Second input array
+     * @param backend The backend to execute on
+     * @return The dot product of a and b
+     */
+    public static double dot(final double[] a, final double[] b,
+            final Backend backend) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Length mismatch: " + a.length
+                    + " vs " + b.length);
+        }
+        return reduceToDouble(a.length, 0.0, i -> a[i] * b[i], Double::sum,
+                backend);
+    }
+
+    /**
+     * Dot product of two arrays of equal length, accumulated as a long.
+     *
+     * @param a First input array
+     * @param b Second input array
+     * @param backend The backend to execute on
+     * @return The dot product of a and b
+     */
+    public static long dot(final int[] a, final int[] b,
+            final Backend backend) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Length mismatch: " + a.length
+                    + " vs " + b.length);
+        }
+        return reduceToLong(a.length, 0L, i -> (long) a[i] * b[i], Long::sum,
+                backend);
+    }
+
+    /**
+     * Dot product of two arrays of equal length.
+     *
+     * @param a First input array
+     * @param b Second input array
+     * @param backend The backend to execute on
+     * @return The dot product of a and b
+     */
+    public static long dot(final long[] a, final long[] b,
+            final Backend backend) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Length mismatch: " + a.length
+                    + " vs " + b.length);
+        }
+        return reduceToLong(a.length, 0L, i -> a[i] * b[i], Long::sum, backend);
+    }
+
+    /**
+     * Smallest element of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The minimum, or positive infinity if input is empty
+     */
+    public static double min(final double[] input, final Backend backend) {
+        return reduceToDouble(input.length, Double.POSITIVE_INFINITY,
+                i -> input[i], Math::min, backend);
+    }
+
+    /**
+     * Largest element of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The maximum, or negative infinity if input is empty
+     */
+    public static double max(final double[] input, final Backend backend) {
+        return reduceToDouble(input.length, Double.NEGATIVE_INFINITY,
+                i -> input[i], Math::max, backend);
+    }
+
+    /**
+     * Smallest element of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The minimum, or Integer.MAX_VALUE if input is empty
+     */
+    public static int min(final int[] input, final Backend backend) {
+        return (int) reduceToLong(input.length, (long) Integer.MAX_VALUE,
+                i -> input[i], Math::min, backend);
+    }
+
+    /**
+     * Largest element of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The maximum, or Integer.MIN_VALUE if input is empty
+     */
+    public static int max(final int[] input, final Backend backend) {
+        return (int) reduceToLong(input.length, (long) Integer.MIN_VALUE,
+                i -> input[i], Math::max, backend);
+    }
+
+    /**
+     * Smallest element of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The minimum, or Long.MAX_VALUE if input is empty
+     */
+    public static long min(final long[] input, final Backend backend) {
+        return reduceToLong(input.length, Long.MAX_VALUE, i -> input[i],
+                Math::min, backend);
+    }
+
+    /**
+     * Largest element of input.
+     *
+     * @param input Input array
+     * @param backend The backend to execute on
+     * @return The maximum, or Long.MIN_VALUE if input is empty
+     */
+    public static long max(final long[] input, final Backend backend) {
+        return reduceToLong(input.length, Long.MIN_VALUE, i -> input[i],
+                Math::max, backend);
+    }
+
+    /**
+     * Task reducing the chunks [startChunk, endChunk) of a range into a
+     * double, splitting in half until a single chunk remains.
+     */
+    private static final class DoubleReductionTask extends RecursiveAction {
+        /**
+         * First chunk reduced by this task.
+         */
+        private final int startChunk;
+        /**
+         * One past the last chunk reduced by this task.
+         */
+        private final int endChunk;
+        /**
+         * Total number of chunks the range is split into.
+         */
+        private final int nChunks;
+        /**
+         * Total number of elements in the range.
+         */
+        private final int nElements;
+        /**
+         * Identity element of combiner.
+         */
+        private final double identity;
+        /**
+         * Produces the value for a given index.
+         */
+        private final IntToDoubleFunction element;
+        /**
+         * Associative operator combining two values.
+         */
+        private final DoubleBinaryOperator combiner;
+        /**
+         * Value produced by this task.
+         */
+        private double value;
+
+        /**
+         * Constructor.
+         * @param setStartChunk First chunk to reduce
+         * @param setEndChunk One past the last chunk to reduce
+         * @param setNElements Total number of elements in the range
+         * @param setIdentity Identity element of combiner
+         * @param setElement Produces the value for a given index
+         * @param setCombiner Associative operator combining two values
+         */
+        DoubleReductionTask(final int setStartChunk, final int setEndChunk,
+                final int setNElements, final double setIdentity,
+                final IntToDoubleFunction setElement,
+                final DoubleBinaryOperator setCombiner) {
+            this(setStartChunk, setEndChunk, setEndChunk, setNElements,
+                    setIdentity, setElement, setCombiner);
+        }
+
+        /**
+         * Constructor for a subtask of a larger reduction.
+         * @param setStartChunk First chunk to reduce
+         * @param setEndChunk One past the last chunk to reduce
+         * @param setNChunks Total number of chunks
+         * @param setNElements Total number of elements in the range
+         * @param setIdentity Identity element of combiner
+         * @param setElement Produces the value for a given index
+         * @param setCombiner Associative operator combining two values
+         */
+        private DoubleReductionTask(final int setStartChunk,
+                final int setEndChunk, final int setNChunks,
+                final int setNElements, final double setIdentity,
+                final IntToDoubleFunction setElement,
+                final DoubleBinaryOperator setCombiner) {
+            this.startChunk = setStartChunk;
+            this.endChunk = setEndChunk;
+            this.nChunks = setNChunks;
+            this.nElements = setNElements;
+            this.identity = setIdentity;
+            this.element = setElement;
+            this.combiner = setCombiner;
+        }
+
+        /**
+         * Getter for the value produced by this task.
+         * @return Value produced by this task
+         */
+        double getValue() {
+            return value;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - startChunk == 1) {
+                value = reduceRange(
+                        ReciprocalArraySum.getChunkStartInclusive(startChunk,
+                            nChunks, nElements),
+                        ReciprocalArraySum.getChunkEndExclusive(startChunk,
+                            nChunks, nElements),
+                        identity, element, combiner);
+                return;
+            }
+
+            final int mid = (startChunk + endChunk) >>> 1;
+            DoubleReductionTask l = new DoubleReductionTask(startChunk, mid,
+                    nChunks, nElements, identity, element, combiner);
+            DoubleReductionTask r = new DoubleReductionTask(mid, endChunk,
+                    nChunks, nElements, identity, element, combiner);
+
+            l.fork();
+            r.compute();
+            l.join();
+            value = combiner.applyAsDouble(l.getValue(), r.getValue());
+        }
+    }
+
+    /**
+     * Task reducing the chunks [startChunk, endChunk) of a range into a long,
+     * splitting in half until a single chunk remains.
+     */
+    private static final class LongReductionTask extends RecursiveAction {
+        /**
+         * First chunk reduced by this task.
+         */
+        private final int startChunk;
+        /**
+         * One past the last chunk reduced by this task.
+         */
+        private final int endChunk;
+        /**
+         * Total number of chunks the range is split into.
+         */
+        private final int nChunks;
+        /**
+         * Total number of elements in the range.
+         */
+        private final int nElements;
+        /**
+         * Identity element of combiner.
+         */
+        private final long identity;
+        /**
+         * Produces the value for a given index.
+         */
+        private final IntToLongFunction element;
+        /**
+         * Associative operator combining two values.
+         */
+        private final LongBinaryOperator combiner;
+        /**
+         * Value produced by this task.
+         */
+        private long value;
+
+        /**
+         * Constructor.
+         * @param setStartChunk First chunk to reduce
+         * @param setEndChunk One past the last chunk to reduce
+         * @param setNElements Total number of elements in the range
+         * @param setIdentity Identity element of combiner
+         * @param setElement Produces the value for a given index
+         * @param setCombiner Associative operator combining two values
+         */
+        LongReductionTask(final int setStartChunk, final int setEndChunk,
+                final int setNElements, final long setIdentity,
+                final IntToLongFunction setElement,
+                final LongBinaryOperator setCombiner) {
+            this(setStartChunk, setEndChunk, setEndChunk, setNElements,
+                    setIdentity, setElement, setCombiner);
+        }
+
+        /**
+         * Constructor for a subtask of a larger reduction.
+         * @param setStartChunk First chunk to reduce
+         * @param setEndChunk One past the last chunk to reduce
+         * @param setNChunks Total number of chunks
+         * @param setNElements Total number of elements in the range
+         * @param setIdentity Identity element of combiner
+         * @param setElement Produces the value for a given index
+         * @param setCombiner Associative operator combining two values
+         */
+        private LongReductionTask(final int setStartChunk,
+                final int setEndChunk, final int setNChunks,
+                final int setNElements, final long setIdentity,
+                final IntToLongFunction setElement,
+                final LongBinaryOperator setCombiner) {
+            this.startChunk = setStartChunk;
+            this.endChunk = setEndChunk;
+            this.nChunks = setNChunks;
+            this.nElements = setNElements;
+            this.identity = setIdentity;
+            this.element = setElement;
+            this.combiner = setCombiner;
+        }
+
+        /**
+         * Getter for the value produced by this task.
+         * @return Value produced by this task
+         */
+        long getValue() {
+            return value;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - startChunk == 1) {
+                value = reduceRange(
+                        ReciprocalArraySum.getChunkStartInclusive(startChunk,
+                            nChunks, nElements),
+                        ReciprocalArraySum.getChunkEndExclusive(startChunk,
+                            nChunks, nElements),
+                        identity, element, combiner);
+                return;
+            }
+
+            final int mid = (startChunk + endChunk) >>> 1;
+            LongReductionTask l = new LongReductionTask(startChunk, mid,
+                    nChunks, nElements, identity, element, combiner);
+            LongReductionTask r = new LongReductionTask(mid, endChunk,
+                    nChunks, nElements, identity, element, combiner);
+
+            l.fork();
+            r.compute();
+            l.join();
+            value = combiner.applyAsLong(l.getValue(), r.getValue());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package edu.coursera.parallel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only binary file of doubles, memory-mapped as a sequence of
+ * fixed-size regions so that files larger than both the heap and the 2 GB
+ * limit of a single mapping can be reduced without copying them onto the
+ * heap.
+ *
+ * Each region is exposed as a DoubleBuffer. Reads through the absolute
+ * DoubleBuffer.get(int) do not touch the buffer position, so any number of
+ * tasks may read the same region concurrently.
+ */
+public final class MappedDoubleFile implements Closeable {
+    /**
+     * Default number of doubles per mapped region (1 GB).
+     */
+    static final int DEFAULT_REGION_SIZE = 1 << 27;
+
+    /**
+     * Channel the regions are mapped from.
+     */
+    private final FileChannel channel;
+    /**
+     * Mapped regions, in file order.
+     */
+    private final DoubleBuffer[] regions;
+    /**
+     * Number of doubles in every region but the last.
+     */
+    private final int regionSize;
+    /**
+     * Number of doubles in the file.
+     */
+    private final long size;
+
+    /**
+     * Maps a file of big-endian doubles, as written by DataOutputStream.
+     *
+     * @param path File to map
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public MappedDoubleFile(final Path path) throws IOException {
+        this(path, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Maps a file of doubles stored in the given byte order.
+     *
+     * @param path File to map
+     * @param order Byte order of the doubles in the file
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    public MappedDoubleFile(final Path path, final ByteOrder order)
+            throws IOException {
+        this(path, order, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Maps a file of doubles using regions of the given size.
+     *
+     * @param path File to map
+     * @param order Byte order of the doubles in the file
+     * @param setRegionSize Number of doubles per mapped region
+     * @throws IOException If the file cannot be opened or mapped
+     */
+    MappedDoubleFile(final Path path, final ByteOrder order,
+            final int setRegionSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.regionSize = setRegionSize;
+
+        try {
+            final long bytes = channel.size();
+            if (bytes % Double.BYTES != 0) {
+                throw new IOException(path + " is " + bytes + " bytes long,"
+                        + " which is not a whole number of doubles");
+            }
+            this.size = bytes / Double.BYTES;
+
+            final int nRegions = (int) ((size + regionSize - 1) / regionSize);
+            this.regions = new DoubleBuffer[nRegions];
+            for (int r = 0; r < nRegions; r++) {
+                final long start = (long) r * regionSize;
+                final long length = Math.min(regionSize, size - start);
+                regions[r] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        start * Double.BYTES, length * Double.BYTES)
+                    .order(order).asDoubleBuffer();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of doubles in the file.
+     *
+     * @return Number of doubles
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get the number of doubles in every region but the last.
+     *
+     * @return Region size
+     */
+    public int getRegionSize() {
+        return regionSize;
+    }
+
+    /**
+     * Get the number of mapped regions.
+     *
+     * @return Number of regions
+     */
+    public int getNRegions() {
+        return regions.length;
+    }
+
+    /**
+     * Get a mapped region. Element i of region r is element
+     * r * getRegionSize() + i of the file.
+     *
+     * @param region Index of the region
+     * @return The region's doubles
+     */
+    public DoubleBuffer getRegion(final int region) {
+        return regions[region];
+    }
+
+    /**
+     * Closes the underlying channel. The mapped regions stay valid until they
+     * are garbage collected.
+     *
+     * @throws IOException If the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,5 +1,6 @@
 package edu.coursera.parallel;
 
+import java.nio.DoubleBuffer;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RecursiveAction;
 
@@ -8,6 +9,32 @@ import java.util.concurrent.RecursiveAction;
  */
 public final class ReciprocalArraySum {
 
+    /**
+     * Minimum number of elements a task will traverse sequentially before it
+     * is worth splitting further.
+     */
+    private static final int MIN_SEQUENTIAL_CUTOFF = 16 * 1024;
+
+    /**
+     * Number of leaf tasks to aim for per core, so that work stealing has
+     * enough slack to even out unbalanced chunks.
+     */
+    private static final int TASKS_PER_CORE = 8;
+
+    /**
+     * Number of elements in each block of a reproducible sum. Blocks are the
+     * leaves of the combining tree, so this must not depend on the number of
+     * cores.
+     */
+    static final int REPRODUCIBLE_BLOCK_SIZE = 4096;
+
+    /**
+     * Shared pool that all parallel reductions run on, so that worker threads
+     * are started once and reused across calls.
+     */
+    static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors());
+
     /**
      * Default constructor.
      */
@@ -31,6 +58,17 @@ public final class ReciprocalArraySum {
         return sum;
     }
 
+    /**
+     * Sequentially compute the sum of the reciprocal values for a given array,
+     * using several independent accumulators to overlap divides.
+     *
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    protected static double seqArraySumUnrolled(final double[] input) {
+        return Kernel.UNROLLED.sum(input, 0, input.length);
+    }
+
     /**
      * Computes the size of each chunk, given the number of chunks to create
      * across a given number of elements.
@@ -39,7 +77,7 @@ public final class ReciprocalArraySum {
      * @param nElements The number of elements to chunk across
      * @return The default chunk size
      */
-    private static int getChunkSize(final int nChunks, final int nElements) {
+    static int getChunkSize(final int nChunks, final int nElements) {
         // Integer ceil
         return (nElements + nChunks - 1) / nChunks;
     }
@@ -54,7 +92,7 @@ public final class ReciprocalArraySum {
      * @return The inclusive index that this chunk starts at in the set of
      *         nElements
      */
-    private static int getChunkStartInclusive(final int chunk,
+    static int getChunkStartInclusive(final int chunk,
             final int nChunks, final int nElements) {
         final int chunkSize = getChunkSize(nChunks, nElements);
         return chunk * chunkSize;
@@ -69,7 +107,7 @@ public final class ReciprocalArraySum {
      * @param nElements The number of elements to chunk across
      * @return The exclusive end index for this chunk
      */
-    private static int getChunkEndExclusive(final int chunk, final int nChunks,
+    static int getChunkEndExclusive(final int chunk, final int nChunks,
             final int nElements) {
         final int chunkSize = getChunkSize(nChunks, nElements);
         final int end = (chunk + 1) * chunkSize;
@@ -81,8 +119,113 @@ public final class ReciprocalArraySum {
     }
 
     /**
-     * This class stub can be filled in to implement the body of each task
-     * created to perform reciprocal array sum in parallel.
+     * Computes the number of elements below which a recursive reduction stops
+     * splitting and runs sequentially, given the number of elements and the
+     * number of cores available.
+     *
+     * @param nElements The number of elements to reduce
+     * @param nCores The number of cores to spread the reduction over
+     * @return The sequential cutoff
+     */
+    static int getSequentialCutoff(final int nElements, final int nCores) {
+        final int cutoff = getChunkSize(nCores * TASKS_PER_CORE, nElements);
+        return Math.max(cutoff, MIN_SEQUENTIAL_CUTOFF);
+    }
+
+    /**
+     * Inner loops that compute the reciprocal sum over a range of an array.
+     */
+    enum Kernel {
+        /**
+         * A single running sum, as in seqArraySum. Each addition waits on the
+         * previous one, so divides cannot overlap.
+         */
+        SCALAR {
+            @Override
+            double sum(final double[] input, final int start, final int end) {
+                double sum = 0;
+                for (int i = start; i < end; i++) {
+                    sum += 1 / input[i];
+                }
+                return sum;
+            }
+        },
+        /**
+         * Four independent running sums over an unrolled loop, combined at
+         * the end. This breaks the dependency chain between additions so that
+         * several divides are in flight at once. The result may differ from
+         * SCALAR in the last bits because additions happen in another order.
+         */
+        UNROLLED {
+            @Override
+            double sum(final double[] input, final int start, final int end) {
+                double sum0 = 0;
+                double sum1 = 0;
+                double sum2 = 0;
+                double sum3 = 0;
+                int i = start;
+                for (; i + 3 < end; i += 4) {
+                    sum0 += 1 / input[i];
+                    sum1 += 1 / input[i + 1];
+                    sum2 += 1 / input[i + 2];
+                    sum3 += 1 / input[i + 3];
+                }
+                for (; i < end; i++) {
+                    sum0 += 1 / input[i];
+                }
+                return (sum0 + sum1) + (sum2 + sum3);
+            }
+        },
+        /**
+         * Kahan compensated summation over two interleaved lanes, which
+         * carries the rounding error of each addition forward instead of
+         * dropping it. Two lanes keep the longer dependency chain of the
+         * compensated update from stalling the divides.
+         */
+        KAHAN {
+            @Override
+            double sum(final double[] input, final int start, final int end) {
+                double sum0 = 0;
+                double c0 = 0;
+                double sum1 = 0;
+                double c1 = 0;
+                int i = start;
+                for (; i + 1 < end; i += 2) {
+                    final double y0 = 1 / input[i] - c0;
+                    final double t0 = sum0 + y0;
+                    c0 = (t0 - sum0) - y0;
+                    sum0 = t0;
+
+                    final double y1 = 1 / input[i + 1] - c1;
+                    final double t1 = sum1 + y1;
+                    c1 = (t1 - sum1) - y1;
+                    sum1 = t1;
+                }
+                if (i < end) {
+                    final double y0 = 1 / input[i] - c0;
+                    final double t0 = sum0 + y0;
+                    c0 = (t0 - sum0) - y0;
+                    sum0 = t0;
+                }
+                return (sum0 + sum1) - (c0 + c1);
+            }
+        };
+
+        /**
+         * Computes the sum of the reciprocals of input[start, end).
+         *
+         * @param input Input array
+         * @param start Inclusive start index
+         * @param end Exclusive end index
+         * @return The sum of the reciprocals over the range
+         */
+        abstract double sum(double[] input, int start, int end);
+    }
+
+    /**
+     * Task that computes the reciprocal sum over a range of the input array.
+     * Ranges larger than the sequential cutoff are split in half recursively
+     * using fork-compute-join.
      */
     private static class ReciprocalArraySumTask extends RecursiveAction {
         /**
@@ -97,13 +240,21 @@ public final class ReciprocalArraySum {
          * Input array to reciprocal sum.
          */
         private final double[] input;
+        /**
+         * Largest range this task traverses sequentially without splitting.
+         */
+        private final int sequentialCutoff;
+        /**
+         * Inner loop used to traverse a range sequentially.
+         */
+        private final Kernel kernel;
         /**
          * Intermediate value produced by this task.
          */
         private double value;
 
         /**
-         * Constructor.
+         * Constructor for a task that never splits its range.
          * @param setStartIndexInclusive Set the starting index to begin
          *        parallel traversal at.
          * @param setEndIndexExclusive Set ending index for parallel traversal.
@@ -111,9 +262,43 @@ public final class ReciprocalArraySum {
          */
         ReciprocalArraySumTask(final int setStartIndexInclusive,
                 final int setEndIndexExclusive, final double[] setInput) {
+            this(setStartIndexInclusive, setEndIndexExclusive, setInput,
+                    Integer.MAX_VALUE);
+        }
+
+        /**
+         * Constructor for a task that recursively splits its range until it
+         * is no larger than the sequential cutoff.
+         * @param setStartIndexInclusive Set the starting index to begin
+         *        parallel traversal at.
+         * @param setEndIndexExclusive Set ending index for parallel traversal.
+         * @param setInput Input values
+         * @param setSequentialCutoff Largest range to traverse sequentially
+         */
+        ReciprocalArraySumTask(final int setStartIndexInclusive,
+                final int setEndIndexExclusive, final double[] setInput,
+                final int setSequentialCutoff) {
+            this(setStartIndexInclusive, setEndIndexExclusive, setInput,
+                    setSequentialCutoff, Kernel.SCALAR);
+        }
+
+        /**
+         * Constructor for a recursively splitting task with a given kernel.
+         * @param setStartIndexInclusive Set the starting index to begin
+         *        parallel traversal at.
+         * @param setEndIndexExclusive Set ending index for parallel traversal.
+         * @param setInput Input values
+         * @param setSequentialCutoff Largest range to traverse sequentially
+         * @param setKernel Inner loop used for sequential traversal
+         */
+        ReciprocalArraySumTask(final int setStartIndexInclusive,
+                final int setEndIndexExclusive, final double[] setInput,
+                final int setSequentialCutoff, final Kernel setKernel) {
             this.startIndexInclusive = setStartIndexInclusive;
             this.endIndexExclusive = setEndIndexExclusive;
             this.input = setInput;
+            this.sequentialCutoff = setSequentialCutoff;
+            this.kernel = setKernel;
         }
 
         /**
@@ -126,17 +311,292 @@ public final class ReciprocalArraySum {
 
         @Override
         protected void compute() {
-            value = 0;
-            for (int i = startIndexInclusive; i < endIndexExclusive; i++)
-                value += 1/input[i];
+            if (endIndexExclusive - startIndexInclusive <= sequentialCutoff) {
+                value = kernel.sum(input, startIndexInclusive,
+                        endIndexExclusive);
+                return;
+            }
+
+            final int mid = (startIndexInclusive + endIndexExclusive) >>> 1;
+            ReciprocalArraySumTask l = new ReciprocalArraySumTask(
+                    startIndexInclusive, mid, input, sequentialCutoff, kernel);
+            ReciprocalArraySumTask r = new ReciprocalArraySumTask(
+                    mid, endIndexExclusive, input, sequentialCutoff, kernel);
+
+            l.fork();
+            r.compute();
+            l.join();
+            value = l.getValue() + r.getValue();
         }
     }
 
     /**
-     * TODO: Modify this method to compute the same reciprocal sum as
-     * seqArraySum, but use two tasks running in parallel under the Java Fork
-     * Join framework. You may assume that the length of the input array is
-     * evenly divisible by 2.
+     * Sequentially computes the reciprocal sum over the blocks
+     * [startBlock, endBlock) of input by Kahan-summing each block and adding
+     * the block sums pairwise. The shape of the combining tree depends only
+     * on the block range, never on how the work is scheduled.
+     *
+     * @param input Input array
+     * @param startBlock First block to sum
+     * @param endBlock One past the last block to sum, at least startBlock + 1
+     * @return The sum of the reciprocals over the blocks
+     */
+    static double pairwiseBlockSum(final double[] input, final int startBlock,
+            final int endBlock) {
+        if (endBlock - startBlock == 1) {
+            final int start = startBlock * REPRODUCIBLE_BLOCK_SIZE;
+            final int end = Math.min(start + REPRODUCIBLE_BLOCK_SIZE,
+                    input.length);
+            return Kernel.KAHAN.sum(input, start, end);
+        }
+        final int mid = (startBlock + endBlock) >>> 1;
+        return pairwiseBlockSum(input, startBlock, mid)
+            + pairwiseBlockSum(input, mid, endBlock);
+    }
+
+    /**
+     * Task that computes a reproducible reciprocal sum over a range of
+     * blocks. It splits at the same midpoints as pairwiseBlockSum, so the
+     * result is bit-identical to the sequential one whatever the leaf size.
+     */
+    private static class PairwiseReciprocalSumTask extends RecursiveAction {
+        /**
+         * First block summed by this task.
+         */
+        private final int startBlock;
+        /**
+         * One past the last block summed by this task.
+         */
+        private final int endBlock;
+        /**
+         * Input array to reciprocal sum.
+         */
+        private final double[] input;
+        /**
+         * Largest number of blocks this task sums without forking.
+         */
+        private final int leafBlocks;
+        /**
+         * Intermediate value produced by this task.
+         */
+        private double value;
+
+        /**
+         * Constructor.
+         * @param setStartBlock First block to sum
+         * @param setEndBlock One past the last block to sum
+         * @param setInput Input values
+         * @param setLeafBlocks Largest number of blocks to sum without
+         *        forking
+         */
+        PairwiseReciprocalSumTask(final int setStartBlock,
+                final int setEndBlock, final double[] setInput,
+                final int setLeafBlocks) {
+            this.startBlock = setStartBlock;
+            this.endBlock = setEndBlock;
+            this.input = setInput;
+            this.leafBlocks = setLeafBlocks;
+        }
+
+        /**
+         * Getter for the value produced by this task.
+         * @return Value produced by this task
+         */
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        protected void compute() {
+            if (endBlock - startBlock <= leafBlocks) {
+                value = pairwiseBlockSum(input, startBlock, endBlock);
+                return;
+            }
+
+            final int mid = (startBlock + endBlock) >>> 1;
+            PairwiseReciprocalSumTask l = new PairwiseReciprocalSumTask(
+                    startBlock, mid, input, leafBlocks);
+            PairwiseReciprocalSumTask r = new PairwiseReciprocalSumTask(
+                    mid, endBlock, input, leafBlocks);
+
+            l.fork();
+            r.compute();
+            l.join();
+            value = l.getValue() + r.getValue();
+        }
+    }
+
+    /**
+     * Task that computes the reciprocal sum over a range of elements of a
+     * memory-mapped file. Ranges that span more than one mapped region are
+     * split at the region boundary nearest their middle; ranges within one
+     * region are split in half like ReciprocalArraySumTask until they are no
+     * larger than the sequential cutoff.
+     */
+    private static class MappedReciprocalSumTask extends RecursiveAction {
+        /**
+         * Starting element index in the file for traversal done by this task.
+         */
+        private final long startIndexInclusive;
+        /**
+         * Ending element index in the file for traversal done by this task.
+         */
+        private final long endIndexExclusive;
+        /**
+         * Input file to reciprocal sum.
+         */
+        private final MappedDoubleFile input;
+        /**
+         * Largest range this task traverses sequentially without splitting.
+         */
+        private final long sequentialCutoff;
+        /**
+         * Intermediate value produced by this task.
+         */
+        private double value;
+
+        /**
+         * Constructor.
+         * @param setStartIndexInclusive Set the starting index to begin
+         *        parallel traversal at.
+         * @param setEndIndexExclusive Set ending index for parallel traversal.
+         * @param setInput Input file
+         * @param setSequentialCutoff Largest range to traverse sequentially
+         */
+        MappedReciprocalSumTask(final long setStartIndexInclusive,
+                final long setEndIndexExclusive,
+                final MappedDoubleFile setInput,
+                final long setSequentialCutoff) {
+            this.startIndexInclusive = setStartIndexInclusive;
+            this.endIndexExclusive = setEndIndexExclusive;
+            this.input = setInput;
+            this.sequentialCutoff = setSequentialCutoff;
+        }
+
+        /**
+         * Getter for the value produced by this task.
+         * @return Value produced by this task
+         */
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        protected void compute() {
+            final int regionSize = input.getRegionSize();
+            final long startRegion = startIndexInclusive / regionSize;
+            final long endRegion = (endIndexExclusive - 1) / regionSize;
+
+            if (startRegion == endRegion && endIndexExclusive
+                    - startIndexInclusive <= sequentialCutoff) {
+                final DoubleBuffer region = input.getRegion((int) startRegion);
+                final long offset = startRegion * regionSize;
+                final int start = (int) (startIndexInclusive - offset);
+                final int end = (int) (endIndexExclusive - offset);
+                value = 0;
+                for (int i = start; i < end; i++) {
+                    value += 1 / region.get(i);
+                }
+                return;
+            }
+
+            final long mid;
+            if (startRegion == endRegion) {
+                mid = (startIndexInclusive + endIndexExclusive) >>> 1;
+            } else {
+                mid = ((startRegion + endRegion + 1) >>> 1) * regionSize;
+            }
+            MappedReciprocalSumTask l = new MappedReciprocalSumTask(
+                    startIndexInclusive, mid, input, sequentialCutoff);
+            MappedReciprocalSumTask r = new MappedReciprocalSumTask(
+                    mid, endIndexExclusive, input, sequentialCutoff);
+
+            l.fork();
+            r.compute();
+            l.join();
+            value = l.getValue() + r.getValue();
+        }
+    }
+
+    /**
+     * Computes the reciprocal sum of a memory-mapped file of doubles on the
+     * shared fork/join pool. Elements are read straight from the mapped
+     * regions, so the file is never copied onto the heap.
+     *
+     * @param input Input file
+     * @return The sum of the reciprocals of the file's doubles
+     */
+    protected static double parMappedArraySum(final MappedDoubleFile input) {
+        if (input.size() == 0) {
+            return 0;
+        }
+        final long nTasks = (long) POOL.getParallelism() * TASKS_PER_CORE;
+        final long cutoff = Math.max(MIN_SEQUENTIAL_CUTOFF,
+                (input.size() + nTasks - 1) / nTasks);
+        MappedReciprocalSumTask t = new MappedReciprocalSumTask(0,
+                input.size(), input, cutoff);
+        POOL.invoke(t);
+        return t.getValue();
+    }
+
+    /**
+     * Sequentially computes a compensated reciprocal sum whose result is
+     * bit-identical to parReproducibleArraySum.
+     *
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    protected static double seqReproducibleArraySum(final double[] input) {
+        if (input.length == 0) {
+            return 0;
+        }
+        final int nBlocks = (input.length + REPRODUCIBLE_BLOCK_SIZE - 1)
+            / REPRODUCIBLE_BLOCK_SIZE;
+        return pairwiseBlockSum(input, 0, nBlocks);
+    }
+
+    /**
+     * Computes the reciprocal sum in parallel with Kahan summation inside
+     * fixed-size blocks and a pairwise tree across blocks. Because neither
+     * the blocks nor the tree depend on the number of cores, the result is
+     * bit-reproducible across core counts and equal to
+     * seqReproducibleArraySum.
+     *
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    protected static double parReproducibleArraySum(final double[] input) {
+        return parReproducibleArraySum(input, POOL.getParallelism());
+    }
+
+    /**
+     * Computes the reproducible reciprocal sum with leaf tasks sized as if
+     * nCores cores were available.
+     *
+     * @param input Input array
+     * @param nCores The number of cores to size leaf tasks for
+     * @return The sum of the reciprocals of the array input
+     */
+    static double parReproducibleArraySum(final double[] input,
+            final int nCores) {
+        if (input.length == 0) {
+            return 0;
+        }
+        final int nBlocks = (input.length + REPRODUCIBLE_BLOCK_SIZE - 1)
+            / REPRODUCIBLE_BLOCK_SIZE;
+        final int leafBlocks = getSequentialCutoff(input.length, nCores)
+            / REPRODUCIBLE_BLOCK_SIZE;
+        PairwiseReciprocalSumTask t = new PairwiseReciprocalSumTask(0,
+                nBlocks, input, leafBlocks);
+        POOL.invoke(t);
+        return t.getValue();
+    }
+
+    /**
+     * Computes the same reciprocal sum as seqArraySum using two tasks running
+     * in parallel on the shared fork/join pool. The sequential cutoff is half
+     * the input, so the recursive task splits into two leaves and stops. The
+     * length of the input array must be even.
      *
      * @param input Input array
      * @return The sum of the reciprocals of the array input
@@ -144,24 +604,18 @@ public final class ReciprocalArraySum {
     protected static double parArraySum(final double[] input) {
         assert input.length % 2 == 0;
 
-        ForkJoinPool pool = new ForkJoinPool(2);
         int mid = input.length/2;
-        ReciprocalArraySumTask l = new ReciprocalArraySumTask(0, mid, input);
-        ReciprocalArraySumTask r = new ReciprocalArraySumTask(mid, input.length, input);
-        
-        // l.fork();
-        // r.compute();
-        // l.join();
-        pool.invoke(l, r);
+        ReciprocalArraySumTask t = new ReciprocalArraySumTask(0,
+                input.length, input, mid);
+        POOL.invoke(t);
 
-        return l.getValue() + r.getValue();
+        return t.getValue();
     }
 
     /**
-     * TODO: Extend the work you did to implement parArraySum to use a set
-     * number of tasks to compute the reciprocal array sum. You may find the
-     * above utilities getChunkStartInclusive and getChunkEndExclusive helpful
-     * in computing the range of element indices that belong to each chunk.
+     * Computes the same reciprocal sum as seqArraySum by splitting the input
+     * into numTasks flat chunks, one task each, on the shared fork/join
+     * pool.
      *
      * @param input Input array
      * @param numTasks The number of tasks to create
@@ -169,19 +623,72 @@ public final class ReciprocalArraySum {
      */
     protected static double parManyTaskArraySum(final double[] input,
             final int numTasks) {
+        return parManyTaskArraySum(input, numTasks, POOL);
+    }
+
+    /**
+     * Computes the reciprocal sum with the same flat chunking as
+     * parManyTaskArraySum, but runs the chunks on the given pool. This lets
+     * callers compare a pool created per call against a reused one.
+     *
+     * @param input Input array
+     * @param numTasks The number of tasks to create
+     * @param pool The pool to run the tasks on
+     * @return The sum of the reciprocals of the array input
+     */
+    static double parManyTaskArraySum(final double[] input,
+            final int numTasks, final ForkJoinPool pool) {
+        final int length = input.length;
+        final ReciprocalArraySumTask[] tasks =
+            new ReciprocalArraySumTask[numTasks];
+        for (int i = 0; i < numTasks; i++) {
+            tasks[i] = new ReciprocalArraySumTask(
+                    getChunkStartInclusive(i, numTasks, length),
+                    getChunkEndExclusive(i, numTasks, length), input);
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
 
         double sum = 0;
-        int length = input.length;
-        ForkJoinPool pool = new ForkJoinPool(numTasks);
-
-        ReciprocalArraySumTask lis[] = new ReciprocalArraySumTask[numTasks];
-        for (int i = 0; i < numTasks; i++) 
-            lis[i] = new ReciprocalArraySumTask(getChunkStartInclusive(i, numTasks, length),
-                getChunkEndExclusive(i, numTasks, length), input);
-        for (int i = 0; i < numTasks; i++) lis[i].fork();
-        for (int i = 0; i < numTasks; i++) lis[i].join();
-        for (int i = 0; i < numTasks; i++) sum += lis[i].getValue();
-            
+        for (int i = 0; i < numTasks; i++) {
+            sum += tasks[i].getValue();
+        }
         return sum;
     }
+
+    /**
+     * Computes the same reciprocal sum as seqArraySum using recursive
+     * divide-and-conquer on the shared fork/join pool. The sequential cutoff
+     * is derived from the array size and the number of available cores, and
+     * idle workers steal the forked halves when chunks run unevenly.
+     *
+     * @param input Input array
+     * @return The sum of the reciprocals of the array input
+     */
+    protected static double parRecursiveArraySum(final double[] input) {
+        return parRecursiveArraySum(input, Kernel.SCALAR);
+    }
+
+    /**
+     * Computes the reciprocal sum like parRecursiveArraySum, but traverses
+     * each leaf range with the given kernel.
+     *
+     * @param input Input array
+     * @param kernel Inner loop used for each leaf range
+     * @return The sum of the reciprocals of the array input
+     */
+    protected static double parRecursiveArraySum(final double[] input,
+            final Kernel kernel) {
+        final int cutoff = getSequentialCutoff(input.length,
+                POOL.getParallelism());
+        ReciprocalArraySumTask t = new ReciprocalArraySumTask(0,
+                input.length, input, cutoff, kernel);
+        POOL.invoke(t);
+        return t.getValue();
+    }
 }
@@ -0,0 +1,143 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import edu.coursera.parallel.ArrayReductions.Backend;
+
+public class ArrayReductionsTest extends TestCase {
+    // Sizes to test, covering empty input, a single chunk, and many chunks.
+    final static private int[] SIZES = {0, 1, 1000, 1_000_003};
+
+    private double[] createDoubleArray(final int N) {
+        final double[] input = new double[N];
+        final Random rand = new Random(314);
+        for (int i = 0; i < N; i++) {
+            input[i] = 1 + rand.nextInt(100);
+        }
+        return input;
+    }
+
+    private int[] createIntArray(final int N) {
+        final int[] input = new int[N];
+        final Random rand = new Random(314);
+        for (int i = 0; i < N; i++) {
+            input[i] = rand.nextInt(2000) - 1000;
+        }
+        return input;
+    }
+
+    private long[] createLongArray(final int N) {
+        final long[] input = new long[N];
+        final Random rand = new Random(314);
+        for (int i = 0; i < N; i++) {
+            input[i] = rand.nextInt(2_000_000) - 1_000_000;
+        }
+        return input;
+    }
+
+    private void assertClose(final String what, final int N, final double expected, final double computed) {
+        final double err = Math.abs(expected - computed);
+        final double tolerance = 1E-9 * Math.max(1.0, Math.abs(expected));
+        final String errMsg = String.format("Mismatch in %s for N = %d, expected = %f, computed = %f", what, N,
+                expected, computed);
+        assertTrue(errMsg, err <= tolerance);
+    }
+
+    /**
+     * Test that both backends agree with plain loops on double[] reductions.
+     */
+    public void testDoubleReductions() {
+        for (int N : SIZES) {
+            final double[] a = createDoubleArray(N);
+            final double[] b = createDoubleArray(N);
+            double sum = 0;
+            double recip = 0;
+            double squares = 0;
+            double dot = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < N; i++) {
+                sum += a[i];
+                recip += 1 / a[i];
+                squares += a[i] * a[i];
+                dot += a[i] * b[i];
+                min = Math.min(min, a[i]);
+                max = Math.max(max, a[i]);
+            }
+
+            for (Backend backend : Backend.values()) {
+                assertClose("sum", N, sum, ArrayReductions.sum(a, backend));
+                assertClose("sumOfReciprocals", N, recip, ArrayReductions.sumOfReciprocals(a, backend));
+                assertClose("sumOfSquares", N, squares, ArrayReductions.sumOfSquares(a, backend));
+                assertClose("dot", N, dot, ArrayReductions.dot(a, b, backend));
+                assertEquals(min, ArrayReductions.min(a, backend));
+                assertEquals(max, ArrayReductions.max(a, backend));
+            }
+        }
+    }
+
+    /**
+     * Test that both backends agree exactly with plain loops on int[] and long[] reductions.
+     */
+    public void testIntegralReductions() {
+        for (int N : SIZES) {
+            final int[] ia = createIntArray(N);
+            final long[] la = createLongArray(N);
+            long isum = 0;
+            long isquares = 0;
+            int imin = Integer.MAX_VALUE;
+            int imax = Integer.MIN_VALUE;
+            long lsum = 0;
+            long ldot = 0;
+            long lmin = Long.MAX_VALUE;
+            long lmax = Long.MIN_VALUE;
+            for (int i = 0; i < N; i++) {
+                isum += ia[i];
+                isquares += (long) ia[i] * ia[i];
+                imin = Math.min(imin, ia[i]);
+                imax = Math.max(imax, ia[i]);
+                lsum += la[i];
+                ldot += la[i] * la[i];
+                lmin = Math.min(lmin, la[i]);
+                lmax = Math.max(lmax, la[i]);
+            }
+
+            for (Backend backend : Backend.values()) {
+                assertEquals(isum, ArrayReductions.sum(ia, backend));
+                assertEquals(isquares, ArrayReductions.sumOfSquares(ia, backend));
+                assertEquals(isquares, ArrayReductions.dot(ia, ia, backend));
+                assertEquals(imin, ArrayReductions.min(ia, backend));
+                assertEquals(imax, ArrayReductions.max(ia, backend));
+                assertEquals(lsum, ArrayReductions.sum(la, backend));
+                assertEquals(ldot, ArrayReductions.dot(la, la, backend));
+                assertEquals(ldot, ArrayReductions.sumOfSquares(la, backend));
+                assertEquals(lmin, ArrayReductions.min(la, backend));
+                assertEquals(lmax, ArrayReductions.max(la, backend));
+            }
+        }
+    }
+
+    /**
+     * Test that the fork/join backend matches ReciprocalArraySum on its own workload.
+     */
+    public void testMatchesReciprocalArraySum() {
+        final double[] input = createDoubleArray(2_000_000);
+        final double expected = ReciprocalArraySum.seqArraySum(input);
+        assertClose("sumOfReciprocals", input.length, expected,
+                ArrayReductions.sumOfReciprocals(input, Backend.FORK_JOIN));
+    }
+
+    /**
+     * Test that dot rejects arrays of different lengths.
+     */
+    public void testDotLengthMismatch() {
+        try {
+            ArrayReductions.dot(new double[2], new double[3], Backend.SEQUENTIAL);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package edu.coursera.parallel;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.TestCase;
 
@@ -154,4 +161,165 @@ public class ReciprocalArraySumTest extends TestCase {
                 "least %fx faster, but it only achieved %fx speedup", minimalExpectedSpeedup, speedup);
         assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
     }
+
+    /**
+     * A helper function for tests of the recursive parallel implementation. Both versions run on the same shared
+     * pool, after a warm-up, with their timed runs interleaved so that any drift in machine load hits both alike.
+     *
+     * @param N The size of the array to test
+     * @return The speedup over the flat many-task version running one task per core
+     */
+    private double parRecursiveTestHelper(final int N) {
+        final int ncores = getNCores();
+        final double[] input = createArray(N);
+        final double correct = seqArraySum(input);
+        final double sum = ReciprocalArraySum.parRecursiveArraySum(input);
+        final double err = Math.abs(sum - correct);
+        final String errMsg = String.format("Mismatch in result for N = %d, expected = %f, computed = %f, absolute " +
+                "error = %f", N, correct, sum, err);
+        assertTrue(errMsg, err < 1E-2);
+
+        for (int r = 0; r < 5; r++) {
+            ReciprocalArraySum.parManyTaskArraySum(input, ncores, ReciprocalArraySum.POOL);
+            ReciprocalArraySum.parRecursiveArraySum(input);
+        }
+
+        long flatTime = 0;
+        long recTime = 0;
+        for (int r = 0; r < REPEATS; r++) {
+            final long flatStartTime = System.nanoTime();
+            ReciprocalArraySum.parManyTaskArraySum(input, ncores, ReciprocalArraySum.POOL);
+            final long recStartTime = System.nanoTime();
+            ReciprocalArraySum.parRecursiveArraySum(input);
+            final long recEndTime = System.nanoTime();
+
+            flatTime += recStartTime - flatStartTime;
+            recTime += recEndTime - recStartTime;
+        }
+
+        return (double)flatTime / (double)recTime;
+    }
+
+    /**
+     * Test that the recursive parallel implementation computes the same result as the sequential one, including
+     * for arrays below the sequential cutoff.
+     */
+    public void testParRecursiveCorrectness() {
+        for (int N : new int[] {0, 1, 1000, 2_000_001}) {
+            final double[] input = createArray(N);
+            final double correct = seqArraySum(input);
+            final double sum = ReciprocalArraySum.parRecursiveArraySum(input);
+            final double err = Math.abs(sum - correct);
+            final String errMsg = String.format("Mismatch in result for N = %d, expected = %f, computed = %f",
+                    N, correct, sum);
+            assertTrue(errMsg, err < 1E-2);
+        }
+    }
+
+    /**
+     * Test that the recursive parallel implementation is at least as fast as flat chunking on a hundred
+     * million-element array. With a single core both run the same loop on one worker and there is no imbalance for
+     * work stealing to recover, so the speed comparison is only asserted on multi-core machines.
+     */
+    public void testParRecursiveHundredMillion() {
+        final double speedup = parRecursiveTestHelper(100_000_000);
+        System.out.println("Recursive vs. flat chunking on " + getNCores() + " cores: " + speedup + "x");
+        if (getNCores() > 1) {
+            final double minimalExpectedSpeedup = 1.0;
+            final String errMsg = String.format("It was expected that the recursive parallel implementation would " +
+                    "run at least %fx as fast as flat chunking, but it only achieved %fx", minimalExpectedSpeedup,
+                    speedup);
+            assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
+        }
+    }
+
+    /**
+     * Test that the unrolled kernel computes the same result as the sequential one, sequentially and in parallel,
+     * including for lengths that are not a multiple of the unroll factor.
+     */
+    public void testUnrolledKernelCorrectness() {
+        for (int N : new int[] {0, 1, 3, 5, 1001, 2_000_003}) {
+            final double[] input = createArray(N);
+            final double correct = seqArraySum(input);
+            final double seqSum = ReciprocalArraySum.seqArraySumUnrolled(input);
+            final double parSum = ReciprocalArraySum.parRecursiveArraySum(input, ReciprocalArraySum.Kernel.UNROLLED);
+            assertTrue(String.format("Mismatch in sequential result for N = %d, expected = %f, computed = %f", N,
+                    correct, seqSum), Math.abs(seqSum - correct) < 1E-2);
+            assertTrue(String.format("Mismatch in parallel result for N = %d, expected = %f, computed = %f", N,
+                    correct, parSum), Math.abs(parSum - correct) < 1E-2);
+        }
+    }
+
+    /**
+     * Test that the reproducible parallel implementation is bit-identical to its sequential counterpart for any
+     * number of cores, and no less accurate than the plain sequential sum.
+     */
+    public void testParReproducibleBitIdentical() {
+        for (int N : new int[] {0, 1, 4095, 4097, 2_000_003}) {
+            final double[] input = createArray(N);
+            final double correct = seqArraySum(input);
+            final double expected = ReciprocalArraySum.seqReproducibleArraySum(input);
+            assertTrue(String.format("Mismatch in result for N = %d, expected = %f, computed = %f", N, correct,
+                    expected), Math.abs(expected - correct) < 1E-2);
+
+            assertEquals(Double.doubleToLongBits(expected),
+                    Double.doubleToLongBits(ReciprocalArraySum.parReproducibleArraySum(input)));
+            for (int ncores : new int[] {1, 2, 3, 8, 64}) {
+                final double sum = ReciprocalArraySum.parReproducibleArraySum(input, ncores);
+                assertEquals("Result for N = " + N + " differs with " + ncores + " cores",
+                        Double.doubleToLongBits(expected), Double.doubleToLongBits(sum));
+            }
+        }
+    }
+
+    /**
+     * Test that the memory-mapped implementation computes the same result as the sequential one, with region
+     * sizes small enough that tasks must split across region boundaries.
+     */
+    public void testParMappedFile() throws IOException {
+        final int N = 2_000_003;
+        final double[] input = createArray(N);
+        final double correct = seqArraySum(input);
+
+        final Path file = Files.createTempFile("reciprocal", ".bin");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                for (double d : input) {
+                    out.writeDouble(d);
+                }
+            }
+
+            for (int regionSize : new int[] {1000, 65_536, N, MappedDoubleFile.DEFAULT_REGION_SIZE}) {
+                try (MappedDoubleFile mapped = new MappedDoubleFile(file, ByteOrder.BIG_ENDIAN, regionSize)) {
+                    assertEquals(N, mapped.size());
+                    final double sum = ReciprocalArraySum.parMappedArraySum(mapped);
+                    final double err = Math.abs(sum - correct);
+                    final String errMsg = String.format("Mismatch in result for region size %d, expected = %f, " +
+                            "computed = %f", regionSize, correct, sum);
+                    assertTrue(errMsg, err < 1E-2);
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Test that flat chunking computes the same result when run on a caller-supplied pool.
+     */
+    public void testParManyTaskOnGivenPool() {
+        final double[] input = createArray(2_000_000);
+        final double correct = seqArraySum(input);
+        for (int ntasks : new int[] {1, 3, 16}) {
+            final ForkJoinPool pool = new ForkJoinPool(ntasks);
+            try {
+                final double sum = ReciprocalArraySum.parManyTaskArraySum(input, ntasks, pool);
+                final String errMsg = String.format("Mismatch in result for %d tasks, expected = %f, computed = %f",
+                        ntasks, correct, sum);
+                assertTrue(errMsg, Math.abs(sum - correct) < 1E-2);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
 }
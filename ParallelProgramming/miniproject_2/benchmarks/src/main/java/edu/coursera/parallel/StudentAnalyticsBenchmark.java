@@ -0,0 +1,145 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and allocation of the StudentAnalytics most-common-name queries,
+ * and of running all three queries separately versus fused into one pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StudentAnalyticsBenchmark {
+    /**
+     * First names to draw from.
+     */
+    private static final String[] FIRST_NAMES = {"Sanjay", "Yunming", "John",
+        "Vivek", "Shams", "Max"};
+    /**
+     * Last names to draw from.
+     */
+    private static final String[] LAST_NAMES = {"Chatterjee", "Zhang",
+        "Smith", "Sarkar", "Imam", "Grossman"};
+
+    /**
+     * Number of students.
+     */
+    @Param({"2000000"})
+    private int size;
+
+    /**
+     * Student data for the class.
+     */
+    private Student[] students;
+    /**
+     * Columnar copy of students.
+     */
+    private StudentTable table;
+    /**
+     * Analytics under test.
+     */
+    private final StudentAnalytics analytics = new StudentAnalytics();
+
+    /**
+     * Generates students the same way StudentAnalyticsTest does.
+     */
+    @Setup
+    public void setup() {
+        final Random r = new Random(123);
+        final int nCurrent = (int) (size * 0.3);
+        students = new Student[size];
+        for (int s = 0; s < size; s++) {
+            students[s] = new Student(
+                    FIRST_NAMES[r.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[r.nextInt(LAST_NAMES.length)],
+                    r.nextDouble() * 100.0, 1 + r.nextInt(100), s < nCurrent);
+        }
+        table = new StudentTable(students);
+    }
+
+    /**
+     * HashMap and HashMap-of-boxed-counter baseline.
+     *
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonImperative() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsImperative(
+                students);
+    }
+
+    /**
+     * groupingBy(..., counting()) baseline.
+     *
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonParallelStream() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(
+                students);
+    }
+
+    /**
+     * Per-leaf primitive open-addressing counters.
+     *
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonHeavyHitter() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsHeavyHitter(
+                students);
+    }
+
+    /**
+     * Per-leaf dense counters over dictionary codes.
+     *
+     * @return Most common first name of inactive students
+     */
+    @Benchmark
+    public String mostCommonColumnarParallel() {
+        return analytics.mostCommonFirstNameOfInactiveStudentsColumnarParallel(
+                table);
+    }
+
+    /**
+     * All three parallel stream queries, each scanning the students.
+     *
+     * @return Combined answers, so that none is dead code
+     */
+    @Benchmark
+    public Object[] allQueriesSeparately() {
+        return new Object[] {
+            analytics.averageAgeOfEnrolledStudentsParallelStream(students),
+            analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(
+                    students),
+            analytics.countNumberOfFailedStudentsOlderThan20ParallelStream(
+                    students),
+        };
+    }
+
+    /**
+     * All three queries answered in one fused pass.
+     *
+     * @return Answers to all queries
+     */
+    @Benchmark
+    public StudentQueryResults allQueriesFused() {
+        return analytics.runBatchParallel(students, StudentQuery.values());
+    }
+}
@@ -0,0 +1,222 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+
+/**
+ * A Misra-Gries frequent-items summary of a stream of names. It keeps at most
+ * capacity counters no matter how many distinct names it sees, and summaries
+ * built over disjoint parts of the input can be merged into a summary of the
+ * whole with the same guarantee (Agarwal et al., "Mergeable Summaries").
+ *
+ * For every name with true count f, the estimate e satisfies
+ * f - getErrorBound() &lt;= e &lt;= f. Any name that occurs more than
+ * getTotal() / (capacity + 1) times is guaranteed to have a counter.
+ */
+public final class FrequentNamesSketch {
+    /**
+     * Maximum number of counters kept between operations.
+     */
+    private final int capacity;
+    /**
+     * Name in each hash slot, or null if the slot is empty.
+     */
+    private final String[] names;
+    /**
+     * Counter of the name in each hash slot.
+     */
+    private final long[] counts;
+    /**
+     * Scratch space for the names that survive a decrement.
+     */
+    private final String[] scratchNames;
+    /**
+     * Scratch space for the counters that survive a decrement.
+     */
+    private final long[] scratchCounts;
+    /**
+     * Number of occupied slots.
+     */
+    private int size;
+    /**
+     * Number of names summarized, including those of merged summaries.
+     */
+    private long total;
+
+    /**
+     * Constructor.
+     *
+     * @param setCapacity Maximum number of counters to keep
+     */
+    public FrequentNamesSketch(final int setCapacity) {
+        if (setCapacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: "
+                    + setCapacity);
+        }
+        this.capacity = setCapacity;
+        // Merging may hold up to 2 * capacity counters before shrinking; keep
+        // the table at most half full even then.
+        int tableSize = 1;
+        while (tableSize < 4 * setCapacity) {
+            tableSize <<= 1;
+        }
+        this.names = new String[tableSize];
+        this.counts = new long[tableSize];
+        this.scratchNames = new String[2 * setCapacity];
+        this.scratchCounts = new long[2 * setCapacity];
+    }
+
+    /**
+     * Finds the slot holding name, or the empty slot it would be placed in.
+     *
+     * @param name Name to look up
+     * @return Slot index
+     */
+    private int slotOf(final String name) {
+        final int mask = names.length - 1;
+        final int h = name.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (names[slot] != null && !names[slot].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Summarizes one occurrence of name.
+     *
+     * @param name Name to add
+     */
+    public void add(final String name) {
+        total++;
+        final int slot = slotOf(name);
+        if (names[slot] != null) {
+            counts[slot]++;
+        } else if (size < capacity) {
+            names[slot] = name;
+            counts[slot] = 1;
+            size++;
+        } else {
+            // The new name and every counter lose one occurrence each.
+            subtractFromAll(1);
+        }
+    }
+
+    /**
+     * Merges another summary into this one.
+     *
+     * @param other Summary of a disjoint part of the input, with the same
+     *        capacity
+     */
+    public void mergeFrom(final FrequentNamesSketch other) {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Capacity mismatch: "
+                    + capacity + " vs " + other.capacity);
+        }
+        total += other.total;
+        for (int s = 0; s < other.names.length; s++) {
+            if (other.names[s] != null) {
+                final int slot = slotOf(other.names[s]);
+                if (names[slot] == null) {
+                    names[slot] = other.names[s];
+                    size++;
+                }
+                counts[slot] += other.counts[s];
+            }
+        }
+
+        if (size > capacity) {
+            int n = 0;
+            for (int slot = 0; slot < names.length; slot++) {
+                if (names[slot] != null) {
+                    scratchCounts[n++] = counts[slot];
+                }
+            }
+            Arrays.sort(scratchCounts, 0, n);
+            // The (capacity + 1)-th largest counter
+            subtractFromAll(scratchCounts[n - capacity - 1]);
+        }
+    }
+
+    /**
+     * Subtracts delta from every counter and drops those that reach zero,
+     * rebuilding the hash table from the survivors.
+     *
+     * @param delta Amount to subtract
+     */
+    private void subtractFromAll(final long delta) {
+        int n = 0;
+        for (int slot = 0; slot < names.length; slot++) {
+            if (names[slot] != null && counts[slot] > delta) {
+                scratchNames[n] = names[slot];
+                scratchCounts[n] = counts[slot] - delta;
+                n++;
+            }
+            names[slot] = null;
+            counts[slot] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            final int slot = slotOf(scratchNames[i]);
+            names[slot] = scratchNames[i];
+            counts[slot] = scratchCounts[i];
+            scratchNames[i] = null;
+        }
+        size = n;
+    }
+
+    /**
+     * Get the number of names summarized.
+     *
+     * @return Total number of names added, including merged summaries
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the maximum amount by which any estimate undercounts the true
+     * count. Every subtraction removes one occurrence from capacity + 1
+     * distinct names, so the number of removed occurrences bounds it.
+     *
+     * @return Error bound on every estimate
+     */
+    public long getErrorBound() {
+        long kept = 0;
+        for (int slot = 0; slot < names.length; slot++) {
+            kept += counts[slot];
+        }
+        return (total - kept) / (capacity + 1);
+    }
+
+    /**
+     * Get the estimated count of a name.
+     *
+     * @param name Name to look up
+     * @return Lower bound on the true count, within getErrorBound() of it
+     */
+    public long getEstimate(final String name) {
+        final int slot = slotOf(name);
+        return names[slot] == null ? 0 : counts[slot];
+    }
+
+    /**
+     * Get the names with the highest estimates, highest first. Equal
+     * estimates are ordered by name.
+     *
+     * @param k Maximum number of names to return
+     * @return Up to k names that have counters
+     */
+    public String[] getTopNames(final int k) {
+        final String[] result = new String[size];
+        int n = 0;
+        for (int slot = 0; slot < names.length; slot++) {
+            if (names[slot] != null) {
+                result[n++] = names[slot];
+            }
+        }
+        Arrays.sort(result, (a, b) -> {
+            final int byCount = Long.compare(getEstimate(b), getEstimate(a));
+            return byCount != 0 ? byCount : a.compareTo(b);
+        });
+        return Arrays.copyOf(result, Math.min(k, n));
+    }
+}
@@ -0,0 +1,256 @@
+package edu.coursera.parallel;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Analytics over a changing set of student records, kept up to date as
+ * records are inserted, updated and deleted rather than recomputed from the
+ * full set on every query.
+ *
+ * Records are keyed by an id. Each event locks only the map bin of its id
+ * (and, for inactive students, of the first name it touches), so many writer
+ * threads can apply events at once. Running totals are kept in adders, which
+ * do not serialize writers either. Queries read the running totals without
+ * locking: once writers are quiescent they match a full recomputation, and
+ * while writes are in flight they reflect some mix of completed events.
+ *
+ * Ages are summed in fixed point, so adding and later removing a record
+ * restores the sum exactly, and the average does not drift however many
+ * events are applied.
+ */
+public final class IncrementalStudentAnalytics {
+    /**
+     * Number of fractional bits ages are rounded to when summed, a
+     * resolution of about two seconds. Sums stay exact for up to about 5e8
+     * enrolled students aged under 1000.
+     */
+    static final int AGE_FRACTION_BITS = 24;
+
+    /**
+     * Current record for each id.
+     */
+    private final ConcurrentHashMap<Long, Student> records =
+        new ConcurrentHashMap<Long, Student>();
+    /**
+     * Sum of the ages of enrolled students, in units of 2^-AGE_FRACTION_BITS.
+     */
+    private final LongAdder enrolledAgeSum = new LongAdder();
+    /**
+     * Number of enrolled students.
+     */
+    private final LongAdder enrolledCount = new LongAdder();
+    /**
+     * Number of inactive students older than 20 with a failing grade.
+     */
+    private final LongAdder failedOlderThan20 = new LongAdder();
+    /**
+     * Number of inactive students with each first name. Names whose count
+     * drops to zero are removed.
+     */
+    private final ConcurrentHashMap<String, NameCount> inactiveNameCounts =
+        new ConcurrentHashMap<String, NameCount>();
+    /**
+     * The entries of inactiveNameCounts, ordered by count and then by name in
+     * reverse, so that the last entry is the most common name.
+     */
+    private final ConcurrentSkipListSet<NameCount> inactiveNamesByCount =
+        new ConcurrentSkipListSet<NameCount>(Comparator
+            .comparingLong((NameCount c) -> c.count)
+            .thenComparing(c -> c.name, Comparator.reverseOrder()));
+
+    /**
+     * An immutable count of one first name.
+     */
+    private static final class NameCount {
+        /**
+         * First name.
+         */
+        private final String name;
+        /**
+         * Number of inactive students with this first name.
+         */
+        private final long count;
+
+        /**
+         * Constructor.
+         *
+         * @param setName First name
+         * @param setCount Number of inactive students with that name
+         */
+        NameCount(final String setName, final long setCount) {
+            this.name = setName;
+            this.count = setCount;
+        }
+    }
+
+    /**
+     * Constructor for an empty set of records.
+     */
+    public IncrementalStudentAnalytics() {
+    }
+
+    /**
+     * Constructor that inserts each student of an array, using its index as
+     * its id.
+     *
+     * @param studentArray Initial student data for the class.
+     */
+    public IncrementalStudentAnalytics(final Student[] studentArray) {
+        for (int i = 0; i < studentArray.length; i++) {
+            insert(i, studentArray[i]);
+        }
+    }
+
+    /**
+     * Adds a new record.
+     *
+     * @param id Id of the record
+     * @param student Contents of the record
+     * @throws IllegalArgumentException If a record with id already exists
+     */
+    public void insert(final long id, final Student student) {
+        records.compute(id, (k, old) -> {
+            if (old != null) {
+                throw new IllegalArgumentException("Record " + id
+                        + " already exists");
+            }
+            apply(student, 1);
+            return student;
+        });
+    }
+
+    /**
+     * Replaces an existing record.
+     *
+     * @param id Id of the record
+     * @param student New contents of the record
+     * @throws IllegalArgumentException If there is no record with id
+     */
+    public void update(final long id, final Student student) {
+        records.compute(id, (k, old) -> {
+            if (old == null) {
+                throw new IllegalArgumentException("No record " + id);
+            }
+            apply(old, -1);
+            apply(student, 1);
+            return student;
+        });
+    }
+
+    /**
+     * Removes an existing record.
+     *
+     * @param id Id of the record
+     * @throws IllegalArgumentException If there is no record with id
+     */
+    public void delete(final long id) {
+        records.compute(id, (k, old) -> {
+            if (old == null) {
+                throw new IllegalArgumentException("No record " + id);
+            }
+            apply(old, -1);
+            return null;
+        });
+    }
+
+    /**
+     * Adds (sign = 1) or removes (sign = -1) a student's contribution to
+     * every running total.
+     *
+     * @param s Student whose contribution changes
+     * @param sign Direction of the change
+     */
+    private void apply(final Student s, final int sign) {
+        if (s.checkIsCurrent()) {
+            enrolledAgeSum.add(sign * toFixedPoint(s.getAge()));
+            enrolledCount.add(sign);
+            return;
+        }
+
+        if (s.getAge() > 20 && s.getGrade() < 65) {
+            failedOlderThan20.add(sign);
+        }
+        inactiveNameCounts.compute(s.getFirstName(), (name, old) -> {
+            final long count = (old == null ? 0 : old.count) + sign;
+            if (old != null) {
+                inactiveNamesByCount.remove(old);
+            }
+            if (count == 0) {
+                return null;
+            }
+            final NameCount updated = new NameCount(name, count);
+            inactiveNamesByCount.add(updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Rounds an age to the fixed point representation of enrolledAgeSum.
+     *
+     * @param age Age in years
+     * @return Age in units of 2^-AGE_FRACTION_BITS years
+     */
+    private static long toFixedPoint(final double age) {
+        return Math.round(Math.scalb(age, AGE_FRACTION_BITS));
+    }
+
+    /**
+     * Get the number of records.
+     *
+     * @return Number of students
+     */
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Computes the average age of all actively enrolled students in O(1).
+     *
+     * @return Average age of enrolled students
+     */
+    public double averageAgeOfEnrolledStudents() {
+        return Math.scalb((double) enrolledAgeSum.sum(), -AGE_FRACTION_BITS)
+            / (double) enrolledCount.sum();
+    }
+
+    /**
+     * Finds the most common first name out of all students that are no longer
+     * active in O(log n) in the number of distinct names. Ties go to the
+     * name that sorts first, as in StudentAnalytics.
+     *
+     * @return Most common first name of inactive students, or null if there
+     *         are none
+     */
+    public String mostCommonFirstNameOfInactiveStudents() {
+        try {
+            return inactiveNamesByCount.last().name;
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the number of inactive students with a given first name.
+     *
+     * @param firstName First name to look up
+     * @return Number of inactive students with that name
+     */
+    public long countInactiveStudentsNamed(final String firstName) {
+        final NameCount c = inactiveNameCounts.get(firstName);
+        return c == null ? 0 : c.count;
+    }
+
+    /**
+     * Computes the number of students who have failed the course who are also
+     * older than 20 years old in O(1).
+     *
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20() {
+        return failedOlderThan20.intValue();
+    }
+}
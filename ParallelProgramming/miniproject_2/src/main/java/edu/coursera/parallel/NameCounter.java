@@ -0,0 +1,149 @@
+package edu.coursera.parallel;
+
+/**
+ * An open-addressing hash map from name to a primitive occurrence count, used
+ * to count first names without boxing a counter per increment.
+ */
+final class NameCounter {
+    /**
+     * Initial number of slots, a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Name stored in each slot, or null if the slot is empty.
+     */
+    private String[] names;
+    /**
+     * Occurrence count of the name in each slot.
+     */
+    private long[] counts;
+    /**
+     * Number of occupied slots.
+     */
+    private int size;
+
+    /**
+     * Default constructor.
+     */
+    NameCounter() {
+        names = new String[INITIAL_CAPACITY];
+        counts = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Finds the slot holding name, or the empty slot it would be placed in.
+     *
+     * @param name Name to look up
+     * @return Slot index
+     */
+    private int slotOf(final String name) {
+        final int mask = names.length - 1;
+        final int h = name.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (names[slot] != null && !names[slot].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Adds count occurrences of name.
+     *
+     * @param name Name to count
+     * @param count Number of occurrences to add
+     */
+    private void add(final String name, final long count) {
+        int slot = slotOf(name);
+        if (names[slot] == null) {
+            if (2 * (size + 1) > names.length) {
+                grow();
+                slot = slotOf(name);
+            }
+            names[slot] = name;
+            size++;
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * Counts one occurrence of name.
+     *
+     * @param name Name to count
+     */
+    void add(final String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Adds all counts from another counter into this one.
+     *
+     * @param other Counter to merge in
+     */
+    void mergeFrom(final NameCounter other) {
+        for (int slot = 0; slot < other.names.length; slot++) {
+            if (other.names[slot] != null) {
+                add(other.names[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Doubles the number of slots, keeping the load factor at most one half.
+     */
+    private void grow() {
+        final String[] oldNames = names;
+        final long[] oldCounts = counts;
+
+        names = new String[oldNames.length * 2];
+        counts = new long[oldNames.length * 2];
+        for (int slot = 0; slot < oldNames.length; slot++) {
+            if (oldNames[slot] != null) {
+                final int newSlot = slotOf(oldNames[slot]);
+                names[newSlot] = oldNames[slot];
+                counts[newSlot] = oldCounts[slot];
+            }
+        }
+    }
+
+    /**
+     * Get the number of distinct names counted.
+     *
+     * @return Number of distinct names
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the count of a name.
+     *
+     * @param name Name to look up
+     * @return Number of occurrences of name
+     */
+    long getCount(final String name) {
+        final int slot = slotOf(name);
+        return names[slot] == null ? 0 : counts[slot];
+    }
+
+    /**
+     * Picks the most common name. Ties go to the name that sorts first, so
+     * the result does not depend on how the input was split.
+     *
+     * @return Most common name, or null if nothing was counted
+     */
+    String mostCommon() {
+        String mostCommon = null;
+        long mostCommonCount = 0;
+        for (int slot = 0; slot < names.length; slot++) {
+            if (names[slot] != null && (mostCommon == null
+                    || counts[slot] > mostCommonCount
+                    || (counts[slot] == mostCommonCount
+                        && names[slot].compareTo(mostCommon) < 0))) {
+                mostCommon = names[slot];
+                mostCommonCount = counts[slot];
+            }
+        }
+        return mostCommon;
+    }
+}
@@ -4,13 +4,21 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.Collectors;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.Map.Entry;
 
 /**
  * A simple wrapper class for various analytics methods.
+ *
+ * Every query for the most common first name breaks ties the same way: of
+ * the names with the highest count, the one that sorts first by
+ * String.compareTo wins. This keeps the answers of the sequential, parallel,
+ * columnar and incremental versions identical on any data.
  */
 public final class StudentAnalytics {
     /**
@@ -61,7 +69,8 @@ public final class StudentAnalytics {
 
     /**
      * Sequentially computes the most common first name out of all students that
-     * are no longer active in the class using loops.
+     * are no longer active in the class using loops. Ties go to the name that
+     * sorts first.
      *
      * @param studentArray Student data for the class.
      * @return Most common first name of inactive students
@@ -90,7 +99,9 @@ public final class StudentAnalytics {
         String mostCommon = null;
         int mostCommonCount = -1;
         for (Map.Entry<String, Integer> entry : nameCounts.entrySet()) {
-            if (mostCommon == null || entry.getValue() > mostCommonCount) {
+            if (mostCommon == null || entry.getValue() > mostCommonCount
+                    || (entry.getValue() == mostCommonCount
+                        && entry.getKey().compareTo(mostCommon) < 0)) {
                 mostCommon = entry.getKey();
                 mostCommonCount = entry.getValue();
             }
@@ -103,7 +114,7 @@ public final class StudentAnalytics {
      * TODO compute the most common first name out of all students that are no
      * longer active in the class using parallel streams. This should mirror the
      * functionality of mostCommonFirstNameOfInactiveStudentsImperative. This
-     * method should not use any loops.
+     * method should not use any loops. Ties go to the name that sorts first.
      *
      * @param studentArray Student data for the class.
      * @return Most common first name of inactive students
@@ -118,12 +129,58 @@ public final class StudentAnalytics {
                             .collect(Collectors.groupingBy(n -> n, Collectors.counting()))
                             .entrySet()
                             .stream()
-                            .max(Comparator.comparing(Entry::getValue))
+                            .max(Entry.<String, Long>comparingByValue()
+                                .thenComparing(Entry.comparingByKey(
+                                    Comparator.reverseOrder())))
                             .get().getKey();
 
         return res;
     }
 
+    /**
+     * Computes the most common first name out of all students that are no
+     * longer active in the class in parallel, without allocating per student.
+     * Each leaf counts names into its own primitive open-addressing
+     * NameCounter, and the counters are merged once per pair of leaves. Ties
+     * go to the name that sorts first.
+     *
+     * @param studentArray Student data for the class.
+     * @return Most common first name of inactive students
+     */
+    public String mostCommonFirstNameOfInactiveStudentsHeavyHitter(
+            final Student[] studentArray) {
+        return Stream.of(studentArray)
+                     .parallel()
+                     .filter(s -> !s.checkIsCurrent())
+                     .collect(NameCounter::new,
+                             (c, s) -> c.add(s.getFirstName()),
+                             NameCounter::mergeFrom)
+                     .mostCommon();
+    }
+
+    /**
+     * Approximates the most common first names out of all students that are
+     * no longer active in the class in parallel, using memory proportional to
+     * capacity rather than to the number of distinct names. Each leaf builds
+     * its own FrequentNamesSketch, and the sketches are merged as leaves are
+     * combined. Use getTopNames on the result for the top-K names, and
+     * getErrorBound for how far any estimate may undercount.
+     *
+     * @param studentArray Student data for the class.
+     * @param capacity Number of counters each sketch keeps
+     * @return Merged sketch of the first names of inactive students
+     */
+    public FrequentNamesSketch approximateTopFirstNamesOfInactiveStudents(
+            final Student[] studentArray, final int capacity) {
+        return IntStream.range(0, studentArray.length)
+                        .parallel()
+                        .filter(i -> !studentArray[i].checkIsCurrent())
+                        .collect(() -> new FrequentNamesSketch(capacity),
+                                (c, i) -> c.add(
+                                    studentArray[i].getFirstName()),
+                                FrequentNamesSketch::mergeFrom);
+    }
+
     /**
      * Sequentially computes the number of students who have failed the course
      * who are also older than 20 years old. A failing grade is anything below a
@@ -167,4 +224,195 @@ public final class StudentAnalytics {
 
         return res;
     }
+
+    /**
+     * Sequentially computes the average age of all actively enrolled students
+     * by scanning the enrollment and age columns of a StudentTable.
+     *
+     * @param table Columnar student data for the class.
+     * @return Average age of enrolled students
+     */
+    public double averageAgeOfEnrolledStudentsColumnar(
+            final StudentTable table) {
+        final boolean[] isCurrent = table.getIsCurrent();
+        final double[] ages = table.getAges();
+
+        double ageSum = 0.0;
+        int count = 0;
+        for (int i = 0; i < isCurrent.length; i++) {
+            if (isCurrent[i]) {
+                ageSum += ages[i];
+                count++;
+            }
+        }
+
+        return ageSum / (double) count;
+    }
+
+    /**
+     * Computes the average age of all actively enrolled students in parallel
+     * over the columns of a StudentTable.
+     *
+     * @param table Columnar student data for the class.
+     * @return Average age of enrolled students
+     */
+    public double averageAgeOfEnrolledStudentsColumnarParallel(
+            final StudentTable table) {
+        final boolean[] isCurrent = table.getIsCurrent();
+        final double[] ages = table.getAges();
+
+        return IntStream.range(0, table.size())
+                        .parallel()
+                        .filter(i -> isCurrent[i])
+                        .mapToDouble(i -> ages[i])
+                        .average()
+                        .orElse(Double.NaN);
+    }
+
+    /**
+     * Picks the most common first name given a count per dictionary code.
+     * Ties go to the name that sorts first.
+     *
+     * @param table Columnar student data the codes refer to
+     * @param counts Number of occurrences of each first name code
+     * @return Most common first name, or null if every count is zero
+     */
+    private static String mostCommonFirstName(final StudentTable table,
+            final long[] counts) {
+        int mostCommon = -1;
+        long mostCommonCount = 0;
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > mostCommonCount
+                    || (counts[code] == mostCommonCount && mostCommon >= 0
+                        && table.getFirstName(code).compareTo(
+                            table.getFirstName(mostCommon)) < 0)) {
+                mostCommon = code;
+                mostCommonCount = counts[code];
+            }
+        }
+        return mostCommon < 0 ? null : table.getFirstName(mostCommon);
+    }
+
+    /**
+     * Sequentially computes the most common first name out of all students
+     * that are no longer active in the class, counting dictionary codes in a
+     * dense array instead of a map.
+     *
+     * @param table Columnar student data for the class.
+     * @return Most common first name of inactive students
+     */
+    public String mostCommonFirstNameOfInactiveStudentsColumnar(
+            final StudentTable table) {
+        final boolean[] isCurrent = table.getIsCurrent();
+        final int[] codes = table.getFirstNameCodes();
+
+        final long[] counts = new long[table.getNFirstNames()];
+        for (int i = 0; i < codes.length; i++) {
+            if (!isCurrent[i]) {
+                counts[codes[i]]++;
+            }
+        }
+
+        return mostCommonFirstName(table, counts);
+    }
+
+    /**
+     * Computes the most common first name out of all students that are no
+     * longer active in the class in parallel. Each leaf counts dictionary
+     * codes into its own dense array, and the arrays are summed when leaves
+     * are combined.
+     *
+     * @param table Columnar student data for the class.
+     * @return Most common first name of inactive students
+     */
+    public String mostCommonFirstNameOfInactiveStudentsColumnarParallel(
+            final StudentTable table) {
+        final boolean[] isCurrent = table.getIsCurrent();
+        final int[] codes = table.getFirstNameCodes();
+        final int nNames = table.getNFirstNames();
+
+        final long[] counts = IntStream.range(0, table.size())
+                        .parallel()
+                        .filter(i -> !isCurrent[i])
+                        .collect(() -> new long[nNames],
+                                (c, i) -> c[codes[i]]++,
+                                (a, b) -> {
+                                    for (int code = 0; code < nNames; code++) {
+                                        a[code] += b[code];
+                                    }
+                                });
+
+        return mostCommonFirstName(table, counts);
+    }
+
+    /**
+     * Sequentially computes the number of students who have failed the course
+     * who are also older than 20 years old, scanning the columns of a
+     * StudentTable.
+     *
+     * @param table Columnar student data for the class.
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20Columnar(
+            final StudentTable table) {
+        final boolean[] isCurrent = table.getIsCurrent();
+        final double[] ages = table.getAges();
+        final int[] grades = table.getGrades();
+
+        int count = 0;
+        for (int i = 0; i < isCurrent.length; i++) {
+            if (!isCurrent[i] && ages[i] > 20 && grades[i] < 65) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Computes the number of students who have failed the course who are
+     * also older than 20 years old in parallel over the columns of a
+     * StudentTable.
+     *
+     * @param table Columnar student data for the class.
+     * @return Number of failed grades from students older than 20 years old.
+     */
+    public int countNumberOfFailedStudentsOlderThan20ColumnarParallel(
+            final StudentTable table) {
+        final boolean[] isCurrent = table.getIsCurrent();
+        final double[] ages = table.getAges();
+        final int[] grades = table.getGrades();
+
+        return (int) IntStream.range(0, table.size())
+                        .parallel()
+                        .filter(i -> !isCurrent[i] && ages[i] > 20
+                                && grades[i] < 65)
+                        .count();
+    }
+
+    /**
+     * Answers several queries in a single parallel pass over the students.
+     * Each leaf of the pass keeps one StudentQueryResults holding the running
+     * aggregates of every requested query, so each student is loaded once no
+     * matter how many queries are asked.
+     *
+     * @param studentArray Student data for the class.
+     * @param queries Queries to answer, at least one
+     * @return Answers to the requested queries
+     */
+    public StudentQueryResults runBatchParallel(final Student[] studentArray,
+            final StudentQuery... queries) {
+        if (queries.length == 0) {
+            throw new IllegalArgumentException("No queries requested");
+        }
+        final Set<StudentQuery> requested = EnumSet.noneOf(StudentQuery.class);
+        for (StudentQuery q : queries) {
+            requested.add(q);
+        }
+
+        return IntStream.range(0, studentArray.length)
+                        .parallel()
+                        .collect(() -> new StudentQueryResults(requested),
+                                (r, i) -> r.accept(studentArray[i]),
+                                StudentQueryResults::mergeFrom);
+    }
 }
@@ -0,0 +1,23 @@
+package edu.coursera.parallel;
+
+/**
+ * The queries that StudentAnalytics.runBatchParallel can answer together in a
+ * single pass over the students.
+ */
+public enum StudentQuery {
+    /**
+     * Average age of all actively enrolled students, as in
+     * averageAgeOfEnrolledStudentsImperative.
+     */
+    AVERAGE_AGE_OF_ENROLLED_STUDENTS,
+    /**
+     * Most common first name of inactive students, as in
+     * mostCommonFirstNameOfInactiveStudentsParallelStream.
+     */
+    MOST_COMMON_FIRST_NAME_OF_INACTIVE_STUDENTS,
+    /**
+     * Number of inactive students older than 20 with a failing grade, as in
+     * countNumberOfFailedStudentsOlderThan20Imperative.
+     */
+    NUMBER_OF_FAILED_STUDENTS_OLDER_THAN_20
+}
@@ -0,0 +1,143 @@
+package edu.coursera.parallel;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Running aggregates for a batch of StudentQuery, and the answers they yield.
+ * One instance accumulates each leaf of a parallel pass; leaves are then
+ * merged pairwise. Only the aggregates of the requested queries are updated.
+ */
+public final class StudentQueryResults {
+    /**
+     * Queries this batch answers.
+     */
+    private final Set<StudentQuery> queries;
+    /**
+     * Whether AVERAGE_AGE_OF_ENROLLED_STUDENTS was requested.
+     */
+    private final boolean averageAge;
+    /**
+     * Whether NUMBER_OF_FAILED_STUDENTS_OLDER_THAN_20 was requested.
+     */
+    private final boolean failedCount;
+    /**
+     * Inactive first name counts, or null if
+     * MOST_COMMON_FIRST_NAME_OF_INACTIVE_STUDENTS was not requested.
+     */
+    private final NameCounter inactiveNames;
+    /**
+     * Sum of the ages of enrolled students.
+     */
+    private double enrolledAgeSum;
+    /**
+     * Number of enrolled students.
+     */
+    private long enrolledCount;
+    /**
+     * Number of inactive students older than 20 with a failing grade.
+     */
+    private int failedOlderThan20;
+
+    /**
+     * Constructor for an empty accumulator.
+     *
+     * @param setQueries Queries to accumulate for
+     */
+    StudentQueryResults(final Set<StudentQuery> setQueries) {
+        this.queries = setQueries;
+        this.averageAge = setQueries.contains(
+                StudentQuery.AVERAGE_AGE_OF_ENROLLED_STUDENTS);
+        this.failedCount = setQueries.contains(
+                StudentQuery.NUMBER_OF_FAILED_STUDENTS_OLDER_THAN_20);
+        this.inactiveNames = setQueries.contains(
+                StudentQuery.MOST_COMMON_FIRST_NAME_OF_INACTIVE_STUDENTS)
+            ? new NameCounter() : null;
+    }
+
+    /**
+     * Adds one student to the aggregates of every requested query.
+     *
+     * @param s Student to add
+     */
+    void accept(final Student s) {
+        if (s.checkIsCurrent()) {
+            if (averageAge) {
+                enrolledAgeSum += s.getAge();
+                enrolledCount++;
+            }
+        } else {
+            if (inactiveNames != null) {
+                inactiveNames.add(s.getFirstName());
+            }
+            if (failedCount && s.getAge() > 20 && s.getGrade() < 65) {
+                failedOlderThan20++;
+            }
+        }
+    }
+
+    /**
+     * Merges the aggregates of another leaf into this one.
+     *
+     * @param other Aggregates over a disjoint part of the input
+     */
+    void mergeFrom(final StudentQueryResults other) {
+        enrolledAgeSum += other.enrolledAgeSum;
+        enrolledCount += other.enrolledCount;
+        failedOlderThan20 += other.failedOlderThan20;
+        if (inactiveNames != null) {
+            inactiveNames.mergeFrom(other.inactiveNames);
+        }
+    }
+
+    /**
+     * Fails if query was not part of this batch.
+     *
+     * @param query Query whose answer is being read
+     */
+    private void checkRequested(final StudentQuery query) {
+        if (!queries.contains(query)) {
+            throw new IllegalStateException(query + " was not requested");
+        }
+    }
+
+    /**
+     * Get the queries this batch answers.
+     *
+     * @return Requested queries
+     */
+    public Set<StudentQuery> getQueries() {
+        return EnumSet.copyOf(queries);
+    }
+
+    /**
+     * Get the answer to AVERAGE_AGE_OF_ENROLLED_STUDENTS.
+     *
+     * @return Average age of enrolled students
+     */
+    public double getAverageAgeOfEnrolledStudents() {
+        checkRequested(StudentQuery.AVERAGE_AGE_OF_ENROLLED_STUDENTS);
+        return enrolledAgeSum / (double) enrolledCount;
+    }
+
+    /**
+     * Get the answer to MOST_COMMON_FIRST_NAME_OF_INACTIVE_STUDENTS.
+     *
+     * @return Most common first name of inactive students
+     */
+    public String getMostCommonFirstNameOfInactiveStudents() {
+        checkRequested(
+                StudentQuery.MOST_COMMON_FIRST_NAME_OF_INACTIVE_STUDENTS);
+        return inactiveNames.mostCommon();
+    }
+
+    /**
+     * Get the answer to NUMBER_OF_FAILED_STUDENTS_OLDER_THAN_20.
+     *
+     * @return Number of failed grades from students older than 20 years old
+     */
+    public int getNumberOfFailedStudentsOlderThan20() {
+        checkRequested(StudentQuery.NUMBER_OF_FAILED_STUDENTS_OLDER_THAN_20);
+        return failedOlderThan20;
+    }
+}
@@ -0,0 +1,131 @@
+package edu.coursera.parallel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A columnar (struct-of-arrays) view of the student fields used by
+ * StudentAnalytics. Each field is stored in its own primitive array, indexed
+ * by student, so that a query only streams through the columns it reads.
+ * First names are dictionary-encoded: each distinct name is stored once and
+ * students refer to it by an int code.
+ */
+public final class StudentTable {
+    /**
+     * Age of each student.
+     */
+    private final double[] ages;
+    /**
+     * Grade of each student.
+     */
+    private final int[] grades;
+    /**
+     * Whether each student is currently enrolled.
+     */
+    private final boolean[] isCurrent;
+    /**
+     * Dictionary code of each student's first name.
+     */
+    private final int[] firstNameCodes;
+    /**
+     * Distinct first names, indexed by code in order of first appearance.
+     */
+    private final String[] firstNameDictionary;
+
+    /**
+     * Constructor, copying the fields of each student into columns.
+     *
+     * @param students Student data for the class.
+     */
+    public StudentTable(final Student[] students) {
+        final int n = students.length;
+        this.ages = new double[n];
+        this.grades = new int[n];
+        this.isCurrent = new boolean[n];
+        this.firstNameCodes = new int[n];
+
+        final Map<String, Integer> codes = new HashMap<String, Integer>();
+        final List<String> dictionary = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            final Student s = students[i];
+            ages[i] = s.getAge();
+            grades[i] = s.getGrade();
+            isCurrent[i] = s.checkIsCurrent();
+
+            Integer code = codes.get(s.getFirstName());
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(s.getFirstName(), code);
+                dictionary.add(s.getFirstName());
+            }
+            firstNameCodes[i] = code;
+        }
+        this.firstNameDictionary = dictionary.toArray(new String[0]);
+    }
+
+    /**
+     * Get the number of students in this table.
+     *
+     * @return Number of students
+     */
+    public int size() {
+        return ages.length;
+    }
+
+    /**
+     * Get the age column.
+     *
+     * @return Age of each student
+     */
+    public double[] getAges() {
+        return ages;
+    }
+
+    /**
+     * Get the grade column.
+     *
+     * @return Grade of each student
+     */
+    public int[] getGrades() {
+        return grades;
+    }
+
+    /**
+     * Get the enrollment column.
+     *
+     * @return Whether each student is currently enrolled
+     */
+    public boolean[] getIsCurrent() {
+        return isCurrent;
+    }
+
+    /**
+     * Get the first name column as dictionary codes.
+     *
+     * @return Dictionary code of each student's first name
+     */
+    public int[] getFirstNameCodes() {
+        return firstNameCodes;
+    }
+
+    /**
+     * Get the number of distinct first names.
+     *
+     * @return Size of the first name dictionary
+     */
+    public int getNFirstNames() {
+        return firstNameDictionary.length;
+    }
+
+    /**
+     * Decode a first name.
+     *
+     * @param code Dictionary code
+     * @return The first name with that code
+     */
+    public String getFirstName(final int code) {
+        return firstNameDictionary[code];
+    }
+}
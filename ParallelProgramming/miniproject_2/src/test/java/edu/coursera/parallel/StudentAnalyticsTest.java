@@ -1,5 +1,7 @@
 package edu.coursera.parallel;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
 import junit.framework.TestCase;
@@ -165,4 +167,270 @@ public class StudentAnalyticsTest extends TestCase {
         assertTrue(msg, speedup > 1.2);
     }
 
+    /*
+     * Test correctness of the sequential and parallel columnar queries against the imperative ones.
+     */
+    public void testColumnarQueries() {
+        final Student[] students = generateStudentData();
+        final StudentTable table = new StudentTable(students);
+        final StudentAnalytics analytics = new StudentAnalytics();
+
+        assertEquals(students.length, table.size());
+        assertEquals(firstNames.length, table.getNFirstNames());
+
+        final double refAge = analytics.averageAgeOfEnrolledStudentsImperative(students);
+        assertEquals(refAge, analytics.averageAgeOfEnrolledStudentsColumnar(table), 1E-5);
+        assertEquals(refAge, analytics.averageAgeOfEnrolledStudentsColumnarParallel(table), 1E-5);
+
+        final String refName = analytics.mostCommonFirstNameOfInactiveStudentsImperative(students);
+        assertEquals(refName, analytics.mostCommonFirstNameOfInactiveStudentsColumnar(table));
+        assertEquals(refName, analytics.mostCommonFirstNameOfInactiveStudentsColumnarParallel(table));
+
+        final int refCount = analytics.countNumberOfFailedStudentsOlderThan20Imperative(students);
+        assertEquals(refCount, analytics.countNumberOfFailedStudentsOlderThan20Columnar(table));
+        assertEquals(refCount, analytics.countNumberOfFailedStudentsOlderThan20ColumnarParallel(table));
+    }
+
+    /*
+     * Test that every most-common-first-name query breaks ties in count the same documented way: the name that
+     * sorts first wins, whatever order the tied names appear in.
+     */
+    public void testMostCommonFirstNameTieBreak() {
+        // Zed, Mia and Amy are each inactive three times, Bob only twice; Amy sorts first but appears last.
+        final String[] inactive = {"Zed", "Mia", "Bob", "Zed", "Amy", "Mia", "Bob", "Zed", "Mia", "Amy", "Amy"};
+        final Student[] small = new Student[inactive.length + 5];
+        for (int s = 0; s < inactive.length; s++) {
+            small[s] = new Student(inactive[s], lastNames[0], 30.0, 50, false);
+        }
+        for (int s = inactive.length; s < small.length; s++) {
+            small[s] = new Student("Abe", lastNames[0], 30.0, 50, true);
+        }
+        assertMostCommonFirstName("Amy", small);
+
+        // Many tied names spread over enough students that the parallel versions split them across leaves.
+        final Student[] large = new Student[3 * firstNames.length * 1000];
+        String first = null;
+        for (int s = 0; s < large.length; s++) {
+            final String firstName = firstNames[s % firstNames.length] + (s / (3 * firstNames.length));
+            large[s] = new Student(firstName, lastNames[0], 30.0, 50, false);
+            if (first == null || firstName.compareTo(first) < 0) {
+                first = firstName;
+            }
+        }
+        assertMostCommonFirstName(first, large);
+    }
+
+    /*
+     * Checks that every most-common-first-name query gives the expected answer.
+     */
+    private void assertMostCommonFirstName(final String expected, final Student[] students) {
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final StudentTable table = new StudentTable(students);
+
+        assertEquals(expected, analytics.mostCommonFirstNameOfInactiveStudentsImperative(students));
+        assertEquals(expected, analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students));
+        assertEquals(expected, analytics.mostCommonFirstNameOfInactiveStudentsHeavyHitter(students));
+        assertEquals(expected, analytics.mostCommonFirstNameOfInactiveStudentsColumnar(table));
+        assertEquals(expected, analytics.mostCommonFirstNameOfInactiveStudentsColumnarParallel(table));
+        assertEquals(expected, analytics.runBatchParallel(students,
+                    StudentQuery.MOST_COMMON_FIRST_NAME_OF_INACTIVE_STUDENTS).getMostCommonFirstNameOfInactiveStudents());
+        assertEquals(expected, new IncrementalStudentAnalytics(students).mostCommonFirstNameOfInactiveStudents());
+    }
+
+    /*
+     * Test that the heavy-hitter query agrees with the parallel stream one, including when counts are tied.
+     */
+    public void testMostCommonFirstNameOfInactiveStudentsHeavyHitter() {
+        final Student[] students = generateStudentData();
+        final StudentAnalytics analytics = new StudentAnalytics();
+
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students),
+                analytics.mostCommonFirstNameOfInactiveStudentsHeavyHitter(students));
+
+        // Every name appears exactly 3 times among inactive students, so the result is decided by tie-breaking.
+        final Student[] tied = new Student[3 * firstNames.length * 1000];
+        for (int s = 0; s < tied.length; s++) {
+            final String firstName = firstNames[s % firstNames.length] + (s / (3 * firstNames.length));
+            tied[s] = new Student(firstName, lastNames[0], 30.0, 50, false);
+        }
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(tied),
+                analytics.mostCommonFirstNameOfInactiveStudentsHeavyHitter(tied));
+
+        assertNull(analytics.mostCommonFirstNameOfInactiveStudentsHeavyHitter(new Student[0]));
+    }
+
+    /*
+     * Test that the approximate top-K sketch stays within its error bound, with far more distinct names than
+     * counters.
+     */
+    public void testApproximateMostCommonFirstNamesOfInactiveStudents() {
+        final int N_STUDENTS = 1000000;
+        final int capacity = 64;
+        final Random r = new Random(123);
+
+        // A few heavy names over a long tail of rare ones.
+        final Student[] students = new Student[N_STUDENTS];
+        final Map<String, Long> exact = new HashMap<String, Long>();
+        for (int s = 0; s < N_STUDENTS; s++) {
+            final String firstName;
+            if (r.nextInt(10) < 6) {
+                firstName = firstNames[Math.min(r.nextInt(10), firstNames.length - 1)];
+            } else {
+                firstName = "Tail" + r.nextInt(100000);
+            }
+            final boolean current = r.nextInt(10) < 3;
+            students[s] = new Student(firstName, lastNames[0], 30.0, 50, current);
+            if (!current) {
+                exact.merge(firstName, 1L, Long::sum);
+            }
+        }
+
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final FrequentNamesSketch sketch = analytics.approximateTopFirstNamesOfInactiveStudents(students,
+                capacity);
+
+        long total = 0;
+        for (long count : exact.values()) {
+            total += count;
+        }
+        assertEquals(total, sketch.getTotal());
+        assertTrue("Error bound " + sketch.getErrorBound() + " exceeds n / (k + 1)",
+                sketch.getErrorBound() <= total / (capacity + 1));
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            final long estimate = sketch.getEstimate(entry.getKey());
+            final String msg = "Estimate " + estimate + " for " + entry.getKey() + " is not within "
+                    + sketch.getErrorBound() + " below " + entry.getValue();
+            assertTrue(msg, estimate <= entry.getValue());
+            assertTrue(msg, estimate >= entry.getValue() - sketch.getErrorBound());
+        }
+
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(students),
+                sketch.getTopNames(1)[0]);
+    }
+
+    /*
+     * Test that a fused batch answers every query the same way as the individual methods, and only those queries.
+     */
+    public void testRunBatchParallel() {
+        final Student[] students = generateStudentData();
+        final StudentAnalytics analytics = new StudentAnalytics();
+
+        final StudentQueryResults all = analytics.runBatchParallel(students, StudentQuery.values());
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students),
+                all.getAverageAgeOfEnrolledStudents(), 1E-5);
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsParallelStream(students),
+                all.getMostCommonFirstNameOfInactiveStudents());
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                all.getNumberOfFailedStudentsOlderThan20());
+
+        final StudentQueryResults one = analytics.runBatchParallel(students,
+                StudentQuery.NUMBER_OF_FAILED_STUDENTS_OLDER_THAN_20);
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                one.getNumberOfFailedStudentsOlderThan20());
+        try {
+            one.getAverageAgeOfEnrolledStudents();
+            fail("Expected IllegalStateException for a query that was not requested");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /*
+     * Test that incremental analytics match a full recomputation after many writer threads insert, update and
+     * delete records concurrently.
+     */
+    public void testIncrementalStudentAnalytics() throws InterruptedException {
+        final Student[] students = generateStudentData();
+        final StudentAnalytics analytics = new StudentAnalytics();
+        final IncrementalStudentAnalytics incremental = new IncrementalStudentAnalytics(students);
+
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(students),
+                incremental.averageAgeOfEnrolledStudents(), 1E-5);
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(students),
+                incremental.countNumberOfFailedStudentsOlderThan20());
+
+        // Each writer owns the ids congruent to its index, so the final state is deterministic.
+        final int nWriters = 4;
+        final int nEvents = 200000;
+        final Student[] expected = students.clone();
+        final Thread[] writers = new Thread[nWriters];
+        for (int w = 0; w < nWriters; w++) {
+            final int writer = w;
+            writers[w] = new Thread(() -> {
+                final Random r = new Random(writer);
+                for (int e = 0; e < nEvents; e++) {
+                    final int id = writer + nWriters * r.nextInt(students.length / nWriters);
+                    final Student s = new Student(firstNames[r.nextInt(firstNames.length)], lastNames[0],
+                            r.nextDouble() * 100.0, 1 + r.nextInt(100), r.nextBoolean());
+                    if (expected[id] == null) {
+                        incremental.insert(id, s);
+                        expected[id] = s;
+                    } else if (r.nextInt(4) == 0) {
+                        incremental.delete(id);
+                        expected[id] = null;
+                    } else {
+                        incremental.update(id, s);
+                        expected[id] = s;
+                    }
+                }
+            });
+            writers[w].start();
+        }
+        for (Thread t : writers) {
+            t.join();
+        }
+
+        int n = 0;
+        for (Student s : expected) {
+            if (s != null) {
+                n++;
+            }
+        }
+        final Student[] remaining = new Student[n];
+        n = 0;
+        for (Student s : expected) {
+            if (s != null) {
+                remaining[n++] = s;
+            }
+        }
+
+        assertEquals(remaining.length, incremental.size());
+        assertEquals(analytics.averageAgeOfEnrolledStudentsImperative(remaining),
+                incremental.averageAgeOfEnrolledStudents(), 1E-5);
+        assertEquals(analytics.countNumberOfFailedStudentsOlderThan20Imperative(remaining),
+                incremental.countNumberOfFailedStudentsOlderThan20());
+
+        final Map<String, Long> exact = new HashMap<String, Long>();
+        for (Student s : remaining) {
+            if (!s.checkIsCurrent()) {
+                exact.merge(s.getFirstName(), 1L, Long::sum);
+            }
+        }
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            assertEquals(entry.getValue().longValue(), incremental.countInactiveStudentsNamed(entry.getKey()));
+        }
+        assertEquals(analytics.mostCommonFirstNameOfInactiveStudentsImperative(remaining),
+                incremental.mostCommonFirstNameOfInactiveStudents());
+    }
+
+    /*
+     * Test that the running average age does not drift: after many records of very different ages have been
+     * inserted, updated and deleted, it is exactly the age of the one record left.
+     */
+    public void testIncrementalAverageAgeAfterChurn() {
+        final IncrementalStudentAnalytics incremental = new IncrementalStudentAnalytics();
+        incremental.insert(0, new Student(firstNames[0], lastNames[0], 30.1, 50, true));
+
+        final Random r = new Random(7);
+        for (int e = 0; e < 1_000_000; e++) {
+            incremental.insert(1, new Student(firstNames[0], lastNames[0], r.nextDouble() * 1e6, 50, true));
+            incremental.update(1, new Student(firstNames[0], lastNames[0], r.nextDouble() * 1e-6, 50, true));
+            incremental.delete(1);
+        }
+
+        final double expected = Math.scalb((double) Math.round(Math.scalb(30.1,
+                        IncrementalStudentAnalytics.AGE_FRACTION_BITS)), -IncrementalStudentAnalytics.AGE_FRACTION_BITS);
+        assertEquals(expected, incremental.averageAgeOfEnrolledStudents(), 0.0);
+        assertEquals(30.1, incremental.averageAgeOfEnrolledStudents(), 1E-6);
+    }
 }
@@ -0,0 +1,92 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to multiply a batch of small square matrices, either one parallel
+ * multiply per product or one batched call parallelized across products.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class BatchedMatrixMultiplyBenchmark {
+    /**
+     * Size of each dimension of every matrix.
+     */
+    @Param({"8", "16", "32", "64"})
+    private int n;
+
+    /**
+     * Number of products in the batch.
+     */
+    @Param({"4096"})
+    private int count;
+
+    /**
+     * Left operands.
+     */
+    private MatrixBatch a;
+    /**
+     * Right operands.
+     */
+    private MatrixBatch b;
+    /**
+     * Outputs.
+     */
+    private MatrixBatch c;
+
+    /**
+     * Fills the operands with random values.
+     */
+    @Setup
+    public void setup() {
+        final Random rand = new Random(314);
+        a = new MatrixBatch(count, n, n);
+        b = new MatrixBatch(count, n, n);
+        c = new MatrixBatch(count, n, n);
+        for (int i = 0; i < a.getValues().length; i++) {
+            a.getValues()[i] = rand.nextInt(100);
+            b.getValues()[i] = rand.nextInt(100);
+        }
+    }
+
+    /**
+     * One parallel multiply call per product.
+     *
+     * @return The outputs
+     */
+    @Benchmark
+    public MatrixBatch perProductParallel() {
+        for (int m = 0; m < count; m++) {
+            MatrixMultiply.parMatrixMultiply(a.get(m), b.get(m), c.get(m));
+        }
+        return c;
+    }
+
+    /**
+     * One batched call, parallel across products.
+     *
+     * @return The outputs
+     */
+    @Benchmark
+    public MatrixBatch batchedParallel() {
+        BatchedMatrixMultiply.parMultiply(a, b, c);
+        return c;
+    }
+}
@@ -0,0 +1,134 @@
+package edu.coursera.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time per NxN multiply of the MatrixMultiply entry points. One multiply is
+ * 2 * N^3 floating-point operations, so GFLOP/s is 2 * N^3 / (time in ns).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MatrixMultiplyBenchmark {
+    /**
+     * Size of each dimension of the matrices.
+     */
+    @Param({"512", "1024", "2048"})
+    private int n;
+
+    /**
+     * Left input.
+     */
+    private double[][] a;
+    /**
+     * Right input.
+     */
+    private double[][] b;
+    /**
+     * Output.
+     */
+    private double[][] c;
+    /**
+     * Left input, stored flat.
+     */
+    private DenseMatrix denseA;
+    /**
+     * Right input, stored flat.
+     */
+    private DenseMatrix denseB;
+    /**
+     * Output, stored flat.
+     */
+    private DenseMatrix denseC;
+
+    /**
+     * Fills the inputs with random values.
+     */
+    @Setup
+    public void setup() {
+        final Random rand = new Random(314);
+        a = new double[n][n];
+        b = new double[n][n];
+        c = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                a[i][j] = rand.nextInt(100);
+                b[i][j] = rand.nextInt(100);
+            }
+        }
+        denseA = DenseMatrix.fromArray(a);
+        denseB = DenseMatrix.fromArray(b);
+        denseC = new DenseMatrix(n, n);
+    }
+
+    /**
+     * Unblocked forall2dChunked multiply.
+     *
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] parMatrixMultiply() {
+        MatrixMultiply.parMatrixMultiply(a, b, c, n);
+        return c;
+    }
+
+    /**
+     * Cache-blocked multiply on packed, transposed B.
+     *
+     * @return The output matrix
+     */
+    @Benchmark
+    public double[][] parMatrixMultiplyBlocked() {
+        MatrixMultiply.parMatrixMultiplyBlocked(a, b, c, n);
+        return c;
+    }
+
+    /**
+     * Cache-blocked multiply on flat row-major matrices.
+     *
+     * @return The output matrix
+     */
+    @Benchmark
+    public DenseMatrix parMatrixMultiplyDense() {
+        MatrixMultiply.parMatrixMultiply(denseA, denseB, denseC);
+        return denseC;
+    }
+
+    /**
+     * Cache-oblivious recursive multiply.
+     *
+     * @return The output matrix
+     */
+    @Benchmark
+    public DenseMatrix recursiveMultiply() {
+        RecursiveMatrixMultiply.multiply(denseA, denseB, denseC);
+        return denseC;
+    }
+
+    /**
+     * Recursive multiply with Strassen steps above the default threshold.
+     *
+     * @return The output matrix
+     */
+    @Benchmark
+    public DenseMatrix strassenMultiply() {
+        RecursiveMatrixMultiply.multiplyStrassen(denseA, denseB, denseC);
+        return denseC;
+    }
+}
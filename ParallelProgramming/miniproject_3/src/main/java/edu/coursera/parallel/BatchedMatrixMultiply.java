@@ -0,0 +1,250 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Many independent small matrix multiplies (C[b] = A[b] x B[b]) at once.
+ *
+ * Parallelizing within one 8x8 to 64x64 product costs more in task overhead
+ * than the product itself, so the parallel version instead gives each
+ * fork/join task a run of whole products, sized so each task does at least
+ * MIN_TASK_WORK multiply-adds. The operands live in MatrixBatch objects, so
+ * a task walks its A, B and C matrices through contiguous memory.
+ *
+ * Small operands fit in L1, so the kernel does no blocking or packing: it
+ * updates four rows of C at a time, streaming along rows of B and reusing
+ * each element of B it loads four times. Every element of C sums its
+ * products in increasing k order, so each product is bit-identical to
+ * MatrixMultiply.seqMatrixMultiply.
+ */
+public final class BatchedMatrixMultiply {
+    /**
+     * Fewest multiply-adds a task does before it stops splitting.
+     */
+    static final long MIN_TASK_WORK = 1L << 18;
+
+    /**
+     * Default constructor.
+     */
+    private BatchedMatrixMultiply() {
+    }
+
+    /**
+     * Computes every product of a batch sequentially.
+     *
+     * @param A Left operands, each MxK
+     * @param B Right operands, each KxN
+     * @param C Outputs, each MxN
+     * @throws IllegalArgumentException If the counts or shapes do not agree
+     */
+    public static void seqMultiply(final MatrixBatch A, final MatrixBatch B,
+            final MatrixBatch C) {
+        checkShapes(A, B, C);
+        multiplyRange(A, B, C, 0, C.getCount());
+    }
+
+    /**
+     * Computes the products of a batch in parallel, across the batch.
+     *
+     * @param A Left operands, each MxK
+     * @param B Right operands, each KxN
+     * @param C Outputs, each MxN
+     * @throws IllegalArgumentException If the counts or shapes do not agree
+     */
+    public static void parMultiply(final MatrixBatch A, final MatrixBatch B,
+            final MatrixBatch C) {
+        checkShapes(A, B, C);
+        final long work = Math.max(1L, (long) C.getNRows() * C.getNCols()
+                * A.getNCols());
+        final int grain = (int) Math.max(1L, Math.min(C.getCount(),
+                    MIN_TASK_WORK / work));
+        MatrixMultiply.POOL.invoke(new BatchTask(A, B, C, 0, C.getCount(),
+                    grain));
+    }
+
+    /**
+     * Computes C[b] = A[b] x B[b] for arrays of operand triples in parallel,
+     * packing them into batches first and unpacking the results into C.
+     *
+     * @param A Left operands, each MxK
+     * @param B Right operands, each KxN
+     * @param C Outputs, each MxN
+     * @throws IllegalArgumentException If the counts or shapes do not agree
+     */
+    public static void parMatrixMultiplyBatch(final double[][][] A,
+            final double[][][] B, final double[][][] C) {
+        final MatrixBatch packedA = MatrixBatch.pack(A);
+        final MatrixBatch packedB = MatrixBatch.pack(B);
+        final int nrows = C.length == 0 ? 0 : C[0].length;
+        final int ncols = nrows == 0 ? 0 : C[0][0].length;
+        final MatrixBatch packedC = new MatrixBatch(C.length, nrows, ncols);
+        parMultiply(packedA, packedB, packedC);
+        packedC.unpack(C);
+    }
+
+    /**
+     * Checks that C[b] = A[b] x B[b] is well-formed.
+     *
+     * @param A Left operands, each MxK
+     * @param B Right operands, each KxN
+     * @param C Outputs, each MxN
+     * @throws IllegalArgumentException If the counts or shapes do not agree
+     */
+    private static void checkShapes(final MatrixBatch A, final MatrixBatch B,
+            final MatrixBatch C) {
+        if (A.getCount() != C.getCount() || B.getCount() != C.getCount()
+                || A.getNCols() != B.getNRows()
+                || C.getNRows() != A.getNRows()
+                || C.getNCols() != B.getNCols()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getCount() + " " + A.getNRows() + "x" + A.getNCols()
+                    + " by " + B.getCount() + " " + B.getNRows() + "x"
+                    + B.getNCols() + " into " + C.getCount() + " "
+                    + C.getNRows() + "x" + C.getNCols());
+        }
+    }
+
+    /**
+     * Computes the products [lo, hi) of a batch.
+     *
+     * @param A Left operands, each MxK
+     * @param B Right operands, each KxN
+     * @param C Outputs, each MxN
+     * @param lo First product
+     * @param hi Product after the last one
+     */
+    private static void multiplyRange(final MatrixBatch A,
+            final MatrixBatch B, final MatrixBatch C, final int lo,
+            final int hi) {
+        for (int b = lo; b < hi; b++) {
+            multiplySmall(A.getValues(), A.getOffsetOf(b), B.getValues(),
+                    B.getOffsetOf(b), C.getValues(), C.getOffsetOf(b),
+                    C.getNRows(), A.getNCols(), C.getNCols());
+        }
+    }
+
+    /**
+     * Small-matrix kernel: c = a x b for contiguous row-major operands.
+     *
+     * @param a Array holding the MxK left operand
+     * @param aOffset Offset of the left operand in a
+     * @param b Array holding the KxN right operand
+     * @param bOffset Offset of the right operand in b
+     * @param c Array holding the MxN output
+     * @param cOffset Offset of the output in c
+     * @param M Rows of the output
+     * @param K Shared dimension
+     * @param N Columns of the output
+     */
+    static void multiplySmall(final double[] a, final int aOffset,
+            final double[] b, final int bOffset, final double[] c,
+            final int cOffset, final int M, final int K, final int N) {
+        int i = 0;
+        for (; i + 3 < M; i += 4) {
+            final int a0 = aOffset + i * K;
+            final int c0 = cOffset + i * N;
+            final int c1 = c0 + N;
+            final int c2 = c1 + N;
+            final int c3 = c2 + N;
+            for (int j = 0; j < 4 * N; j++) {
+                c[c0 + j] = 0.0;
+            }
+            for (int k = 0; k < K; k++) {
+                final double x0 = a[a0 + k];
+                final double x1 = a[a0 + K + k];
+                final double x2 = a[a0 + 2 * K + k];
+                final double x3 = a[a0 + 3 * K + k];
+                final int bRow = bOffset + k * N;
+                for (int j = 0; j < N; j++) {
+                    final double y = b[bRow + j];
+                    c[c0 + j] += x0 * y;
+                    c[c1 + j] += x1 * y;
+                    c[c2 + j] += x2 * y;
+                    c[c3 + j] += x3 * y;
+                }
+            }
+        }
+        for (; i < M; i++) {
+            final int aRow = aOffset + i * K;
+            final int cRow = cOffset + i * N;
+            for (int j = 0; j < N; j++) {
+                c[cRow + j] = 0.0;
+            }
+            for (int k = 0; k < K; k++) {
+                final double x = a[aRow + k];
+                final int bRow = bOffset + k * N;
+                for (int j = 0; j < N; j++) {
+                    c[cRow + j] += x * b[bRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Task that computes a run of products of a batch, splitting the run in
+     * half recursively using fork-compute-join until it is no longer than
+     * the grain.
+     */
+    private static final class BatchTask extends RecursiveAction {
+        /**
+         * Left operands.
+         */
+        private final MatrixBatch A;
+        /**
+         * Right operands.
+         */
+        private final MatrixBatch B;
+        /**
+         * Outputs.
+         */
+        private final MatrixBatch C;
+        /**
+         * First product computed by this task.
+         */
+        private final int lo;
+        /**
+         * Product after the last one computed by this task.
+         */
+        private final int hi;
+        /**
+         * Most products a task computes without splitting.
+         */
+        private final int grain;
+
+        /**
+         * Constructor.
+         *
+         * @param setA Left operands
+         * @param setB Right operands
+         * @param setC Outputs
+         * @param setLo First product to compute
+         * @param setHi Product after the last one to compute
+         * @param setGrain Most products to compute without splitting
+         */
+        BatchTask(final MatrixBatch setA, final MatrixBatch setB,
+                final MatrixBatch setC, final int setLo, final int setHi,
+                final int setGrain) {
+            this.A = setA;
+            this.B = setB;
+            this.C = setC;
+            this.lo = setLo;
+            this.hi = setHi;
+            this.grain = setGrain;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= grain) {
+                multiplyRange(A, B, C, lo, hi);
+                return;
+            }
+
+            final int mid = (lo + hi) >>> 1;
+            final BatchTask l = new BatchTask(A, B, C, lo, mid, grain);
+            final BatchTask r = new BatchTask(A, B, C, mid, hi, grain);
+            l.fork();
+            r.compute();
+            l.join();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package edu.coursera.parallel;
+
+/**
+ * A dense two-dimensional matrix stored in a single flat array in row-major
+ * order. Element (row, col) lives at getOffsetOfRow(row) + col of
+ * getValues().
+ *
+ * Consecutive rows are rowStride elements apart, which may be more than the
+ * number of columns. This lets a matrix be a view of a rectangular block of
+ * a larger matrix, sharing its storage: writes through either one are seen
+ * by the other.
+ */
+public final class DenseMatrix {
+    /**
+     * Backing storage, possibly shared with other views.
+     */
+    private final double[] values;
+    /**
+     * Index in values of element (0, 0).
+     */
+    private final int offset;
+    /**
+     * The number of rows in the matrix.
+     */
+    private final int nrows;
+    /**
+     * The number of columns in the matrix.
+     */
+    private final int ncols;
+    /**
+     * Distance in values between the starts of consecutive rows.
+     */
+    private final int rowStride;
+
+    /**
+     * Constructor for a zero-filled matrix with its own storage.
+     *
+     * @param setNrows Number of rows
+     * @param setNcols Number of columns
+     */
+    public DenseMatrix(final int setNrows, final int setNcols) {
+        this(new double[setNrows * setNcols], 0, setNrows, setNcols,
+                setNcols);
+    }
+
+    /**
+     * Constructor for a matrix over existing storage, without copying it.
+     *
+     * @param setValues Backing storage
+     * @param setOffset Index in setValues of element (0, 0)
+     * @param setNrows Number of rows
+     * @param setNcols Number of columns
+     * @param setRowStride Distance in setValues between the starts of
+     *        consecutive rows, at least setNcols
+     * @throws IllegalArgumentException If the matrix does not fit in
+     *         setValues
+     */
+    public DenseMatrix(final double[] setValues, final int setOffset,
+            final int setNrows, final int setNcols, final int setRowStride) {
+        if (setNrows < 0 || setNcols < 0 || setOffset < 0
+                || setRowStride < setNcols) {
+            throw new IllegalArgumentException("Invalid shape: offset "
+                    + setOffset + ", " + setNrows + "x" + setNcols
+                    + ", row stride " + setRowStride);
+        }
+        if (setNrows > 0 && (long) setOffset
+                + (long) (setNrows - 1) * setRowStride + setNcols
+                > setValues.length) {
+            throw new IllegalArgumentException(setNrows + "x" + setNcols
+                    + " matrix with row stride " + setRowStride
+                    + " at offset " + setOffset + " does not fit in "
+                    + setValues.length + " values");
+        }
+        this.values = setValues;
+        this.offset = setOffset;
+        this.nrows = setNrows;
+        this.ncols = setNcols;
+        this.rowStride = setRowStride;
+    }
+
+    /**
+     * Copy constructor. The copy has its own contiguous storage.
+     *
+     * @param other Another matrix to copy the contents of
+     */
+    public DenseMatrix(final DenseMatrix other) {
+        this(other.nrows, other.ncols);
+        for (int i = 0; i < nrows; i++) {
+            System.arraycopy(other.values, other.getOffsetOfRow(i), values,
+                    getOffsetOfRow(i), ncols);
+        }
+    }
+
+    /**
+     * Wraps a flat row-major array as a contiguous matrix, without copying
+     * it.
+     *
+     * @param values Row-major values, of length at least nrows * ncols
+     * @param nrows Number of rows
+     * @param ncols Number of columns
+     * @return A matrix backed by values
+     */
+    public static DenseMatrix wrap(final double[] values, final int nrows,
+            final int ncols) {
+        return new DenseMatrix(values, 0, nrows, ncols, ncols);
+    }
+
+    /**
+     * Wraps one row of a double[][] as a 1xN matrix, without copying it.
+     * The rows of a double[][] are separate arrays, so this is the largest
+     * part of one that can be shared rather than copied.
+     *
+     * @param row Row to wrap
+     * @return A 1 x row.length matrix backed by row
+     */
+    public static DenseMatrix wrapRow(final double[] row) {
+        return wrap(row, 1, row.length);
+    }
+
+    /**
+     * Copies a rectangular double[][] into a new contiguous matrix.
+     *
+     * @param array Input, with every row the same length
+     * @return A matrix with the same contents
+     * @throws IllegalArgumentException If the rows differ in length
+     */
+    public static DenseMatrix fromArray(final double[][] array) {
+        final int ncols = array.length == 0 ? 0 : array[0].length;
+        final DenseMatrix m = new DenseMatrix(array.length, ncols);
+        m.copyFrom(array);
+        return m;
+    }
+
+    /**
+     * Copies the contents of a double[][] into this matrix.
+     *
+     * @param array Input with the same dimensions as this matrix
+     * @throws IllegalArgumentException If the dimensions differ
+     */
+    public void copyFrom(final double[][] array) {
+        checkArrayShape(array);
+        for (int i = 0; i < nrows; i++) {
+            System.arraycopy(array[i], 0, values, getOffsetOfRow(i), ncols);
+        }
+    }
+
+    /**
+     * Copies the contents of this matrix into a double[][].
+     *
+     * @param array Output with the same dimensions as this matrix
+     * @throws IllegalArgumentException If the dimensions differ
+     */
+    public void copyInto(final double[][] array) {
+        checkArrayShape(array);
+        for (int i = 0; i < nrows; i++) {
+            System.arraycopy(values, getOffsetOfRow(i), array[i], 0, ncols);
+        }
+    }
+
+    /**
+     * Copies the contents of this matrix into a new double[][].
+     *
+     * @return An nrows x ncols array with the same contents
+     */
+    public double[][] toArray() {
+        final double[][] array = new double[nrows][ncols];
+        copyInto(array);
+        return array;
+    }
+
+    /**
+     * Checks that a double[][] has the same dimensions as this matrix.
+     *
+     * @param array Array to check
+     * @throws IllegalArgumentException If the dimensions differ
+     */
+    private void checkArrayShape(final double[][] array) {
+        if (array.length != nrows) {
+            throw new IllegalArgumentException("Expected " + nrows
+                    + " rows, got " + array.length);
+        }
+        for (int i = 0; i < nrows; i++) {
+            if (array[i].length != ncols) {
+                throw new IllegalArgumentException("Expected " + ncols
+                        + " columns, got " + array[i].length + " in row "
+                        + i);
+            }
+        }
+    }
+
+    /**
+     * Get a view of a rectangular block of this matrix that shares its
+     * storage.
+     *
+     * @param row First row of the block
+     * @param col First column of the block
+     * @param setNrows Number of rows in the block
+     * @param setNcols Number of columns in the block
+     * @return A matrix whose element (i, j) is element (row + i, col + j) of
+     *         this one
+     * @throws IllegalArgumentException If the block is not inside this
+     *         matrix
+     */
+    public DenseMatrix view(final int row, final int col, final int setNrows,
+            final int setNcols) {
+        if (row < 0 || col < 0 || setNrows < 0 || setNcols < 0
+                || row + setNrows > nrows || col + setNcols > ncols) {
+            throw new IllegalArgumentException("Block at (" + row + ", "
+                    + col + ") of size " + setNrows + "x" + setNcols
+                    + " is outside a " + nrows + "x" + ncols + " matrix");
+        }
+        return new DenseMatrix(values, offset + row * rowStride + col,
+                setNrows, setNcols, rowStride);
+    }
+
+    /**
+     * Set the value at (row, col) to the specified value.
+     *
+     * @param row Row index
+     * @param col Column index
+     * @param val Value
+     */
+    public void set(final int row, final int col, final double val) {
+        values[offset + row * rowStride + col] = val;
+    }
+
+    /**
+     * Increment the value at (row, col) by the specified value.
+     *
+     * @param row Row index
+     * @param col Column index
+     * @param val Increment value
+     */
+    public void incr(final int row, final int col, final double val) {
+        values[offset + row * rowStride + col] += val;
+    }
+
+    /**
+     * Fetch the value currently stored at (row, col).
+     *
+     * @param row Row index
+     * @param col Column index
+     * @return The value stored at (row, col)
+     */
+    public double get(final int row, final int col) {
+        return values[offset + row * rowStride + col];
+    }
+
+    /**
+     * Fetch the number of rows in this matrix.
+     *
+     * @return # of rows
+     */
+    public int getNRows() {
+        return nrows;
+    }
+
+    /**
+     * Fetch the number of columns in this matrix.
+     *
+     * @return # of columns
+     */
+    public int getNCols() {
+        return ncols;
+    }
+
+    /**
+     * Fetch the distance in getValues() between the starts of consecutive
+     * rows.
+     *
+     * @return Row stride
+     */
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    /**
+     * Check whether the rows of this matrix are stored back to back.
+     *
+     * @return Whether the row stride equals the number of columns
+     */
+    public boolean isContiguous() {
+        return rowStride == ncols;
+    }
+
+    /**
+     * Get the offset in the flattened values array of the first element in the
+     * specified row.
+     *
+     * @param row Row to get the offset of
+     * @return Row offset
+     */
+    public int getOffsetOfRow(final int row) {
+        return offset + row * rowStride;
+    }
+
+    /**
+     * Get the raw, one-dimensional values array used to store this matrix's
+     * values. For a view, this is the storage of the whole underlying
+     * matrix.
+     *
+     * @return Raw values array
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
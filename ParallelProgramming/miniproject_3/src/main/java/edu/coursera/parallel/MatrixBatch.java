@@ -0,0 +1,166 @@
+package edu.coursera.parallel;
+
+/**
+ * A batch of matrices of the same shape, stored back to back in one flat
+ * array. Matrix b of the batch is row-major at [getOffsetOf(b),
+ * getOffsetOf(b + 1)) of getValues(), so walking the batch in order walks
+ * memory in order.
+ */
+public final class MatrixBatch {
+    /**
+     * Values of every matrix, one after the other.
+     */
+    private final double[] values;
+    /**
+     * Number of matrices in the batch.
+     */
+    private final int count;
+    /**
+     * The number of rows in each matrix.
+     */
+    private final int nrows;
+    /**
+     * The number of columns in each matrix.
+     */
+    private final int ncols;
+
+    /**
+     * Constructor for a zero-filled batch.
+     *
+     * @param setCount Number of matrices
+     * @param setNrows Number of rows in each matrix
+     * @param setNcols Number of columns in each matrix
+     */
+    public MatrixBatch(final int setCount, final int setNrows,
+            final int setNcols) {
+        if (setCount < 0 || setNrows < 0 || setNcols < 0) {
+            throw new IllegalArgumentException("Invalid batch of "
+                    + setCount + " " + setNrows + "x" + setNcols
+                    + " matrices");
+        }
+        this.count = setCount;
+        this.nrows = setNrows;
+        this.ncols = setNcols;
+        this.values = new double[Math.multiplyExact(setCount,
+                Math.multiplyExact(setNrows, setNcols))];
+    }
+
+    /**
+     * Copies matrices of the same shape into a new batch.
+     *
+     * @param matrices Input matrices, each with the same rectangular shape
+     * @return A batch with the same contents
+     * @throws IllegalArgumentException If the shapes differ
+     */
+    public static MatrixBatch pack(final double[][][] matrices) {
+        final int nrows = matrices.length == 0 ? 0 : matrices[0].length;
+        final int ncols = nrows == 0 ? 0 : matrices[0][0].length;
+        final MatrixBatch batch = new MatrixBatch(matrices.length, nrows,
+                ncols);
+        for (int b = 0; b < matrices.length; b++) {
+            batch.checkShape(matrices[b], b);
+            for (int i = 0; i < nrows; i++) {
+                System.arraycopy(matrices[b][i], 0, batch.values,
+                        batch.getOffsetOf(b) + i * ncols, ncols);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Copies the matrices of this batch into existing arrays.
+     *
+     * @param matrices Output matrices, each with the shape of this batch
+     * @throws IllegalArgumentException If the count or shapes differ
+     */
+    public void unpack(final double[][][] matrices) {
+        if (matrices.length != count) {
+            throw new IllegalArgumentException("Expected " + count
+                    + " matrices, got " + matrices.length);
+        }
+        for (int b = 0; b < count; b++) {
+            checkShape(matrices[b], b);
+            for (int i = 0; i < nrows; i++) {
+                System.arraycopy(values, getOffsetOf(b) + i * ncols,
+                        matrices[b][i], 0, ncols);
+            }
+        }
+    }
+
+    /**
+     * Checks that a double[][] has the shape of the matrices of this batch.
+     *
+     * @param matrix Matrix to check
+     * @param index Position of the matrix, for the error message
+     * @throws IllegalArgumentException If the shape differs
+     */
+    private void checkShape(final double[][] matrix, final int index) {
+        boolean matches = matrix.length == nrows;
+        for (int i = 0; matches && i < nrows; i++) {
+            matches = matrix[i].length == ncols;
+        }
+        if (!matches) {
+            throw new IllegalArgumentException("Matrix " + index
+                    + " is not " + nrows + "x" + ncols);
+        }
+    }
+
+    /**
+     * Get one matrix of the batch as a DenseMatrix that shares its storage.
+     *
+     * @param index Position of the matrix in the batch
+     * @return A view of that matrix
+     */
+    public DenseMatrix get(final int index) {
+        return new DenseMatrix(values, getOffsetOf(index), nrows, ncols,
+                ncols);
+    }
+
+    /**
+     * Get the offset in the flattened values array of the first element of
+     * the specified matrix.
+     *
+     * @param index Position of the matrix in the batch
+     * @return Matrix offset
+     */
+    public int getOffsetOf(final int index) {
+        return index * nrows * ncols;
+    }
+
+    /**
+     * Fetch the number of matrices in this batch.
+     *
+     * @return # of matrices
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Fetch the number of rows in each matrix.
+     *
+     * @return # of rows
+     */
+    public int getNRows() {
+        return nrows;
+    }
+
+    /**
+     * Fetch the number of columns in each matrix.
+     *
+     * @return # of columns
+     */
+    public int getNCols() {
+        return ncols;
+    }
+
+    /**
+     * Get the raw, one-dimensional values array holding every matrix of this
+     * batch.
+     *
+     * @return Raw values array
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
@@ -3,10 +3,53 @@ package edu.coursera.parallel;
 import static edu.rice.pcdp.PCDP.forseq2d;
 import static edu.rice.pcdp.PCDP.forallChunked;
 import static edu.rice.pcdp.PCDP.forall2dChunked;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Wrapper class for implementing matrix multiply efficiently in parallel.
  */
 public final class MatrixMultiply {
+    /**
+     * Rows of C that the blocked micro-kernel computes together. Each element
+     * of B it loads is reused this many times from a register.
+     */
+    static final int REGISTER_ROWS = 4;
+
+    /**
+     * Columns of C that the blocked micro-kernel computes together. Each
+     * element of A it loads is reused this many times from a register.
+     */
+    static final int REGISTER_COLS = 2;
+
+    /**
+     * Length of the slice of the k dimension that the blocked multiply works
+     * on at a time, so that the slices of A and B it touches stay in cache.
+     */
+    static final int DEPTH_BLOCK = 256;
+
+    /**
+     * Number of columns of C that the blocked multiply computes against one
+     * DEPTH_BLOCK slice of packed B before moving on. The slice of packed B
+     * this covers (COLUMN_BLOCK * DEPTH_BLOCK doubles) is sized for L2.
+     */
+    static final int COLUMN_BLOCK = 64;
+
+    /**
+     * Largest number of rows a fork/join task processes without splitting.
+     * Kept a multiple of REGISTER_ROWS.
+     */
+    static final int ROW_BLOCK = 32;
+
+    /**
+     * Shared pool that the blocked multiply runs on, so that worker threads
+     * are started once and reused across calls.
+     */
+    static final ForkJoinPool POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors());
+
     /**
      * Default constructor.
      */
@@ -54,4 +97,394 @@ public final class MatrixMultiply {
             }
         });
     }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel,
+     * blocked for cache and registers.
+     *
+     * The rows of a double[][] are separate arrays, so A and B are first
+     * copied into flat matrices, in parallel, and the product is computed by
+     * the DenseMatrix kernel of parMatrixMultiply before being copied back
+     * into C. The copies are O(N^2) against the O(N^3) multiply.
+     *
+     * The result is bit-identical to seqMatrixMultiply.
+     *
+     * @param A An input matrix with dimensions NxN
+     * @param B An input matrix with dimensions NxN
+     * @param C The output matrix
+     * @param N Size of each dimension of the input matrices
+     */
+    public static void parMatrixMultiplyBlocked(final double[][] A,
+            final double[][] B, final double[][] C, final int N) {
+        final DenseMatrix a = new DenseMatrix(N, N);
+        final DenseMatrix b = new DenseMatrix(N, N);
+        final DenseMatrix c = new DenseMatrix(N, N);
+        POOL.invoke(new RowBlockTask(0, N, (lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                System.arraycopy(A[i], 0, a.getValues(), a.getOffsetOfRow(i),
+                        N);
+                System.arraycopy(B[i], 0, b.getValues(), b.getOffsetOfRow(i),
+                        N);
+            }
+        }));
+        parMatrixMultiply(a, b, c);
+        POOL.invoke(new RowBlockTask(0, N, (lo, hi) -> {
+            for (int i = lo; i < hi; i++) {
+                System.arraycopy(c.getValues(), c.getOffsetOfRow(i), C[i], 0,
+                        N);
+            }
+        }));
+    }
+
+    /**
+     * Checks that A x B = C is well-formed.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    private static void checkShapes(final DenseMatrix A, final DenseMatrix B,
+            final DenseMatrix C) {
+        if (A.getNCols() != B.getNRows() || C.getNRows() != A.getNRows()
+                || C.getNCols() != B.getNCols()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by "
+                    + B.getNRows() + "x" + B.getNCols() + " into "
+                    + C.getNRows() + "x" + C.getNCols());
+        }
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) sequentially on
+     * flat matrices. Any of the matrices may be views, but C must not share
+     * storage with A or B.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void seqMatrixMultiply(final DenseMatrix A,
+            final DenseMatrix B, final DenseMatrix C) {
+        checkShapes(A, B, C);
+        final int K = A.getNCols();
+        final double[] a = A.getValues();
+        final double[] b = B.getValues();
+        final double[] c = C.getValues();
+        final int bStride = B.getRowStride();
+
+        for (int i = 0; i < C.getNRows(); i++) {
+            final int aRow = A.getOffsetOfRow(i);
+            final int cRow = C.getOffsetOfRow(i);
+            for (int j = 0; j < C.getNCols(); j++) {
+                double sum = 0.0;
+                int bIndex = B.getOffsetOfRow(0) + j;
+                for (int k = 0; k < K; k++) {
+                    sum += a[aRow + k] * b[bIndex];
+                    bIndex += bStride;
+                }
+                c[cRow + j] = sum;
+            }
+        }
+    }
+
+    /**
+     * Perform a two-dimensional matrix multiply (A x B = C) in parallel on
+     * flat matrices. Any of the matrices may be views, but C must not share
+     * storage with A or B.
+     *
+     * B is first packed into a contiguous transposed copy, so that the inner
+     * loop reads both A and B along unit-stride rows. Rows of C are then
+     * split across fork/join tasks in blocks of up to ROW_BLOCK rows. Within
+     * a block, the k dimension is walked in slices of DEPTH_BLOCK and the
+     * columns in blocks of COLUMN_BLOCK, and each REGISTER_ROWS x
+     * REGISTER_COLS tile of C is accumulated in local variables rather than
+     * written back on every k.
+     *
+     * Every element of C still sums its products in increasing k order
+     * starting from 0.0, so the result is bit-identical to seqMatrixMultiply
+     * on the same matrices.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void parMatrixMultiply(final DenseMatrix A,
+            final DenseMatrix B, final DenseMatrix C) {
+        checkShapes(A, B, C);
+        final double[] packedB = new double[B.getNRows() * B.getNCols()];
+        POOL.invoke(new RowBlockTask(0, B.getNCols(),
+                    (lo, hi) -> packTransposed(B, packedB, lo, hi)));
+        POOL.invoke(new RowBlockTask(0, C.getNRows(),
+                    (lo, hi) -> multiplyRowBlock(A, packedB, C, lo, hi)));
+    }
+
+    /**
+     * Copies columns [lo, hi) of B into rows [lo, hi) of the row-major,
+     * transposed packedB. The columns are copied ROW_BLOCK at a time, so
+     * the strided writes for each row of B land in the same few rows of
+     * packedB until the block is done.
+     *
+     * @param B Input matrix with dimensions KxN
+     * @param packedB Output, packedB[j * K + k] = B.get(k, j)
+     * @param lo First column to pack
+     * @param hi Column after the last one to pack
+     */
+    static void packTransposed(final DenseMatrix B,
+            final double[] packedB, final int lo, final int hi) {
+        final int K = B.getNRows();
+        final double[] b = B.getValues();
+        for (int j0 = lo; j0 < hi; j0 += ROW_BLOCK) {
+            final int j1 = Math.min(j0 + ROW_BLOCK, hi);
+            for (int k = 0; k < K; k++) {
+                final int bRow = B.getOffsetOfRow(k);
+                for (int j = j0; j < j1; j++) {
+                    packedB[j * K + k] = b[bRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the transpose of all of B into packedB, splitting the columns
+     * into RowBlockTasks run in the pool of the calling task.
+     *
+     * @param B Input matrix with dimensions KxN
+     * @param packedB Output, packedB[j * K + k] = B.get(k, j)
+     */
+    static void packTransposedInTask(final DenseMatrix B,
+            final double[] packedB) {
+        new RowBlockTask(0, B.getNCols(),
+                (lo, hi) -> packTransposed(B, packedB, lo, hi)).invoke();
+    }
+
+    /**
+     * Computes rows [lo, hi) of C = A x B from the packed transpose of B.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param packedB Packed transpose of B, as built by packTransposed
+     * @param C The output matrix, with dimensions MxN
+     * @param lo First row of C to compute
+     * @param hi Row after the last one to compute
+     */
+    private static void multiplyRowBlock(final DenseMatrix A,
+            final double[] packedB, final DenseMatrix C, final int lo,
+            final int hi) {
+        for (int i = lo; i < hi; i++) {
+            final int cRow = C.getOffsetOfRow(i);
+            Arrays.fill(C.getValues(), cRow, cRow + C.getNCols(), 0.0);
+        }
+        multiplyAddRowBlock(A, packedB, 0, A.getNCols(), C, lo, hi);
+    }
+
+    /**
+     * Adds rows [lo, hi) of A x B to the same rows of C, given the packed
+     * transpose of B. Each element of C gets its products added in
+     * increasing k order.
+     *
+     * The packed transpose may be a panel of a larger one: B.get(k, j) is
+     * read from packedB[bOffset + j * bStride + k], so a packed copy of a
+     * whole matrix serves any block of it.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param packedB Packed transpose of B, as built by packTransposed
+     * @param bOffset Index in packedB of B.get(0, 0)
+     * @param bStride Distance in packedB between consecutive columns of B
+     * @param C The output matrix, with dimensions MxN
+     * @param lo First row of C to update
+     * @param hi Row after the last one to update
+     */
+    static void multiplyAddRowBlock(final DenseMatrix A,
+            final double[] packedB, final int bOffset, final int bStride,
+            final DenseMatrix C, final int lo, final int hi) {
+        final int K = A.getNCols();
+        final int N = C.getNCols();
+        final int iTiled = lo + (hi - lo) / REGISTER_ROWS * REGISTER_ROWS;
+        for (int k0 = 0; k0 < K; k0 += DEPTH_BLOCK) {
+            final int k1 = Math.min(k0 + DEPTH_BLOCK, K);
+            for (int j0 = 0; j0 < N; j0 += COLUMN_BLOCK) {
+                final int j1 = Math.min(j0 + COLUMN_BLOCK, N);
+                final int jTiled = j0 + (j1 - j0) / REGISTER_COLS
+                    * REGISTER_COLS;
+                for (int i = lo; i < iTiled; i += REGISTER_ROWS) {
+                    for (int j = j0; j < jTiled; j += REGISTER_COLS) {
+                        multiplyTile(A, packedB, bOffset, bStride, C, i,
+                                j, k0, k1);
+                    }
+                    multiplyEdge(A, packedB, bOffset, bStride, C, i,
+                            i + REGISTER_ROWS, jTiled, j1, k0, k1);
+                }
+                multiplyEdge(A, packedB, bOffset, bStride, C, iTiled, hi,
+                        j0, j1, k0, k1);
+            }
+        }
+    }
+
+    /**
+     * Adds the products over k in [k0, k1) to the REGISTER_ROWS x
+     * REGISTER_COLS tile of C whose top-left corner is (i, j).
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param packedB Packed transpose of B
+     * @param bOffset Index in packedB of B.get(0, 0)
+     * @param bStride Distance in packedB between consecutive columns of B
+     * @param C The output matrix, with dimensions MxN
+     * @param i Top row of the tile
+     * @param j Left column of the tile
+     * @param k0 First k to accumulate
+     * @param k1 k after the last one to accumulate
+     */
+    private static void multiplyTile(final DenseMatrix A,
+            final double[] packedB, final int bOffset, final int bStride,
+            final DenseMatrix C, final int i, final int j, final int k0,
+            final int k1) {
+        final double[] a = A.getValues();
+        final double[] c = C.getValues();
+        final int a0 = A.getOffsetOfRow(i);
+        final int a1 = a0 + A.getRowStride();
+        final int a2 = a1 + A.getRowStride();
+        final int a3 = a2 + A.getRowStride();
+        final int c0 = C.getOffsetOfRow(i) + j;
+        final int c1 = c0 + C.getRowStride();
+        final int c2 = c1 + C.getRowStride();
+        final int c3 = c2 + C.getRowStride();
+        final int b0 = bOffset + j * bStride;
+        final int b1 = b0 + bStride;
+
+        double c00 = c[c0];
+        double c01 = c[c0 + 1];
+        double c10 = c[c1];
+        double c11 = c[c1 + 1];
+        double c20 = c[c2];
+        double c21 = c[c2 + 1];
+        double c30 = c[c3];
+        double c31 = c[c3 + 1];
+        for (int k = k0; k < k1; k++) {
+            final double y0 = packedB[b0 + k];
+            final double y1 = packedB[b1 + k];
+            final double x0 = a[a0 + k];
+            final double x1 = a[a1 + k];
+            final double x2 = a[a2 + k];
+            final double x3 = a[a3 + k];
+            c00 += x0 * y0;
+            c01 += x0 * y1;
+            c10 += x1 * y0;
+            c11 += x1 * y1;
+            c20 += x2 * y0;
+            c21 += x2 * y1;
+            c30 += x3 * y0;
+            c31 += x3 * y1;
+        }
+        c[c0] = c00;
+        c[c0 + 1] = c01;
+        c[c1] = c10;
+        c[c1 + 1] = c11;
+        c[c2] = c20;
+        c[c2 + 1] = c21;
+        c[c3] = c30;
+        c[c3 + 1] = c31;
+    }
+
+    /**
+     * Adds the products over k in [k0, k1) to the block of C made of rows
+     * [i0, i1) and columns [j0, j1), one element at a time.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param packedB Packed transpose of B
+     * @param bOffset Index in packedB of B.get(0, 0)
+     * @param bStride Distance in packedB between consecutive columns of B
+     * @param C The output matrix, with dimensions MxN
+     * @param i0 First row
+     * @param i1 Row after the last one
+     * @param j0 First column
+     * @param j1 Column after the last one
+     * @param k0 First k to accumulate
+     * @param k1 k after the last one to accumulate
+     */
+    private static void multiplyEdge(final DenseMatrix A,
+            final double[] packedB, final int bOffset, final int bStride,
+            final DenseMatrix C, final int i0, final int i1, final int j0,
+            final int j1, final int k0, final int k1) {
+        final double[] a = A.getValues();
+        final double[] c = C.getValues();
+        for (int i = i0; i < i1; i++) {
+            final int aRow = A.getOffsetOfRow(i);
+            final int cRow = C.getOffsetOfRow(i);
+            for (int j = j0; j < j1; j++) {
+                final int b = bOffset + j * bStride;
+                double sum = c[cRow + j];
+                for (int k = k0; k < k1; k++) {
+                    sum += a[aRow + k] * packedB[b + k];
+                }
+                c[cRow + j] = sum;
+            }
+        }
+    }
+
+    /**
+     * Work done on a range of rows by a RowBlockTask.
+     */
+    @FunctionalInterface
+    private interface RowBlockBody {
+        /**
+         * Processes rows [lo, hi).
+         *
+         * @param lo First row
+         * @param hi Row after the last one
+         */
+        void run(int lo, int hi);
+    }
+
+    /**
+     * Task that applies a body to a range of rows. Ranges larger than
+     * ROW_BLOCK are split in half recursively using fork-compute-join, at a
+     * multiple of REGISTER_ROWS so that only the last block has a partial
+     * register tile.
+     */
+    private static final class RowBlockTask extends RecursiveAction {
+        /**
+         * First row processed by this task.
+         */
+        private final int lo;
+        /**
+         * Row after the last one processed by this task.
+         */
+        private final int hi;
+        /**
+         * Work to do on each block of rows.
+         */
+        private final RowBlockBody body;
+
+        /**
+         * Constructor.
+         *
+         * @param setLo First row to process
+         * @param setHi Row after the last one to process
+         * @param setBody Work to do on each block of rows
+         */
+        RowBlockTask(final int setLo, final int setHi,
+                final RowBlockBody setBody) {
+            this.lo = setLo;
+            this.hi = setHi;
+            this.body = setBody;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= ROW_BLOCK) {
+                body.run(lo, hi);
+                return;
+            }
+
+            final int half = (hi - lo) / 2 / REGISTER_ROWS * REGISTER_ROWS;
+            final int mid = lo + Math.max(half, REGISTER_ROWS);
+            final RowBlockTask l = new RowBlockTask(lo, mid, body);
+            final RowBlockTask r = new RowBlockTask(mid, hi, body);
+            l.fork();
+            r.compute();
+            l.join();
+        }
+    }
 }
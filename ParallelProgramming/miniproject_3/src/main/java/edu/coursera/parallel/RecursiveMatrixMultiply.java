@@ -0,0 +1,508 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A recursive, cache-oblivious matrix multiply on DenseMatrix, with an
+ * optional Strassen step for large square matrices.
+ *
+ * The cache-oblivious recursion halves the largest of the three dimensions
+ * of C += A x B until every dimension fits the base kernel, so that at some
+ * level of the recursion the working set fits each level of cache without
+ * tuning for it. The base kernel is the register-tiled kernel of
+ * MatrixMultiply, run on a packed transpose of B. B is packed once, at the
+ * first level below which no Strassen step can happen, into a scratch
+ * buffer; every task under it reads its block of B from that panel through
+ * an offset and a column stride instead of packing its own. Halves of the rows
+ * or columns of C are independent and run as fork/join tasks; halves of the
+ * shared dimension run one after the other, so every element of C still sums
+ * its products in increasing k order and the result is bit-identical to
+ * MatrixMultiply.seqMatrixMultiply.
+ *
+ * Above a threshold, square matrices of even size are instead split into
+ * quadrants and multiplied with Strassen's seven products, which run as
+ * fork/join tasks. Strassen's method adds and subtracts operands, so its
+ * rounding differs from the classical product. The temporaries it needs are
+ * taken from a ScratchBufferPool rather than allocated at every level, as are
+ * the packed panels of B.
+ */
+public final class RecursiveMatrixMultiply {
+    /**
+     * Largest dimension handled directly by the base kernel.
+     */
+    static final int BASE_SIZE = 256;
+
+    /**
+     * Smallest amount of work, as M * N * K, for which the two halves of a
+     * split are run as separate tasks.
+     */
+    static final long PARALLEL_WORK = 1L << 21;
+
+    /**
+     * Default smallest size at which a square multiply uses a Strassen step.
+     */
+    public static final int DEFAULT_STRASSEN_THRESHOLD = 512;
+
+    /**
+     * Most bytes of idle scratch buffers kept between calls.
+     */
+    static final long MAX_SCRATCH_BYTES = 64L << 20;
+
+    /**
+     * Scratch buffers shared by all Strassen steps and packed panels of B.
+     */
+    static final ScratchBufferPool SCRATCH =
+        new ScratchBufferPool(MAX_SCRATCH_BYTES);
+
+    /**
+     * Default constructor.
+     */
+    private RecursiveMatrixMultiply() {
+    }
+
+    /**
+     * Computes C = A x B with the cache-oblivious recursion only. The result
+     * is bit-identical to MatrixMultiply.seqMatrixMultiply.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN, not sharing storage
+     *        with A or B
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void multiply(final DenseMatrix A, final DenseMatrix B,
+            final DenseMatrix C) {
+        multiply(A, B, C, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes C = A x B using a Strassen step on square matrices of at least
+     * DEFAULT_STRASSEN_THRESHOLD.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN, not sharing storage
+     *        with A or B
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void multiplyStrassen(final DenseMatrix A,
+            final DenseMatrix B, final DenseMatrix C) {
+        multiply(A, B, C, DEFAULT_STRASSEN_THRESHOLD);
+    }
+
+    /**
+     * Computes C = A x B, using a Strassen step wherever the sub-problem is
+     * square, of even size, and at least strassenThreshold.
+     *
+     * @param A An input matrix with dimensions MxK
+     * @param B An input matrix with dimensions KxN
+     * @param C The output matrix, with dimensions MxN, not sharing storage
+     *        with A or B
+     * @param strassenThreshold Smallest size to use a Strassen step at;
+     *        Integer.MAX_VALUE disables Strassen
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void multiply(final DenseMatrix A, final DenseMatrix B,
+            final DenseMatrix C, final int strassenThreshold) {
+        if (A.getNCols() != B.getNRows() || C.getNRows() != A.getNRows()
+                || C.getNCols() != B.getNCols()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by "
+                    + B.getNRows() + "x" + B.getNCols() + " into "
+                    + C.getNRows() + "x" + C.getNCols());
+        }
+        fill(C, 0.0);
+        MatrixMultiply.POOL.invoke(new MultiplyTask(A, B, C,
+                    Math.max(strassenThreshold, 2)));
+    }
+
+    /**
+     * Sets every element of a matrix to a value.
+     *
+     * @param M Matrix to fill
+     * @param value Value to store
+     */
+    private static void fill(final DenseMatrix M, final double value) {
+        final double[] m = M.getValues();
+        for (int i = 0; i < M.getNRows(); i++) {
+            final int row = M.getOffsetOfRow(i);
+            Arrays.fill(m, row, row + M.getNCols(), value);
+        }
+    }
+
+    /**
+     * Computes out = X + sign * Y elementwise.
+     *
+     * @param X First operand
+     * @param Y Second operand, with the same dimensions as X
+     * @param sign 1 to add Y, -1 to subtract it
+     * @param out Output, with the same dimensions as X
+     */
+    private static void combine(final DenseMatrix X, final DenseMatrix Y,
+            final int sign, final DenseMatrix out) {
+        final double[] x = X.getValues();
+        final double[] y = Y.getValues();
+        final double[] o = out.getValues();
+        for (int i = 0; i < out.getNRows(); i++) {
+            final int xRow = X.getOffsetOfRow(i);
+            final int yRow = Y.getOffsetOfRow(i);
+            final int oRow = out.getOffsetOfRow(i);
+            for (int j = 0; j < out.getNCols(); j++) {
+                o[oRow + j] = x[xRow + j] + sign * y[yRow + j];
+            }
+        }
+    }
+
+    /**
+     * Computes C += sign * M elementwise.
+     *
+     * @param C Matrix to update
+     * @param M Matrix to add, with the same dimensions as C
+     * @param sign 1 to add M, -1 to subtract it
+     */
+    private static void accumulate(final DenseMatrix C, final DenseMatrix M,
+            final int sign) {
+        final double[] c = C.getValues();
+        final double[] m = M.getValues();
+        for (int i = 0; i < C.getNRows(); i++) {
+            final int cRow = C.getOffsetOfRow(i);
+            final int mRow = M.getOffsetOfRow(i);
+            for (int j = 0; j < C.getNCols(); j++) {
+                c[cRow + j] += sign * m[mRow + j];
+            }
+        }
+    }
+
+    /**
+     * Task that computes C += A x B, recursively splitting the largest
+     * dimension or taking a Strassen step.
+     */
+    private static final class MultiplyTask extends RecursiveAction {
+        /**
+         * An input matrix with dimensions MxK.
+         */
+        private final DenseMatrix A;
+        /**
+         * An input matrix with dimensions KxN.
+         */
+        private final DenseMatrix B;
+        /**
+         * The output matrix, with dimensions MxN, accumulated into.
+         */
+        private final DenseMatrix C;
+        /**
+         * Smallest size to use a Strassen step at.
+         */
+        private final int strassenThreshold;
+        /**
+         * Packed transpose of a matrix that B is a block of, or null if B
+         * has not been packed yet.
+         */
+        private final double[] packedB;
+        /**
+         * Index in packedB of B.get(0, 0).
+         */
+        private final int bOffset;
+        /**
+         * Distance in packedB between consecutive columns of B.
+         */
+        private final int bStride;
+
+        /**
+         * Constructor for a task that has not packed B yet.
+         *
+         * @param setA An input matrix with dimensions MxK
+         * @param setB An input matrix with dimensions KxN
+         * @param setC The output matrix, with dimensions MxN
+         * @param setStrassenThreshold Smallest size to use a Strassen step at
+         */
+        MultiplyTask(final DenseMatrix setA, final DenseMatrix setB,
+                final DenseMatrix setC, final int setStrassenThreshold) {
+            this(setA, setB, setC, setStrassenThreshold, null, 0, 0);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param setA An input matrix with dimensions MxK
+         * @param setB An input matrix with dimensions KxN
+         * @param setC The output matrix, with dimensions MxN
+         * @param setStrassenThreshold Smallest size to use a Strassen step at
+         * @param setPackedB Packed transpose of a matrix that setB is a
+         *        block of, or null
+         * @param setBOffset Index in setPackedB of setB.get(0, 0)
+         * @param setBStride Distance in setPackedB between consecutive
+         *        columns of setB
+         */
+        MultiplyTask(final DenseMatrix setA, final DenseMatrix setB,
+                final DenseMatrix setC, final int setStrassenThreshold,
+                final double[] setPackedB, final int setBOffset,
+                final int setBStride) {
+            this.A = setA;
+            this.B = setB;
+            this.C = setC;
+            this.strassenThreshold = setStrassenThreshold;
+            this.packedB = setPackedB;
+            this.bOffset = setBOffset;
+            this.bStride = setBStride;
+        }
+
+        @Override
+        protected void compute() {
+            final int M = C.getNRows();
+            final int N = C.getNCols();
+            final int K = A.getNCols();
+            if (M == 0 || N == 0 || K == 0) {
+                return;
+            }
+
+            if (M == N && N == K && N % 2 == 0 && N >= strassenThreshold) {
+                strassen();
+            } else if (packedB == null
+                    && (Math.min(M, Math.min(N, K)) < strassenThreshold
+                        || Math.max(M, Math.max(N, K)) <= BASE_SIZE)) {
+                /*
+                 * Every block below this one is at most as large in each
+                 * dimension, so none of them takes a Strassen step and B can
+                 * be packed once here for all of them.
+                 */
+                final double[] panel = SCRATCH.acquire(K * N);
+                try {
+                    MatrixMultiply.packTransposedInTask(B, panel);
+                    new MultiplyTask(A, B, C, strassenThreshold, panel, 0, K)
+                        .compute();
+                } finally {
+                    SCRATCH.release(panel);
+                }
+            } else if (Math.max(M, Math.max(N, K)) <= BASE_SIZE) {
+                MatrixMultiply.multiplyAddRowBlock(A, packedB, bOffset,
+                        bStride, C, 0, M);
+            } else if (M >= N && M >= K) {
+                final int h = M / 2;
+                runBoth(child(A.view(0, 0, h, K), B, C.view(0, 0, h, N),
+                            bOffset),
+                        child(A.view(h, 0, M - h, K), B,
+                            C.view(h, 0, M - h, N), bOffset));
+            } else if (N >= K) {
+                final int h = N / 2;
+                runBoth(child(A, B.view(0, 0, K, h), C.view(0, 0, M, h),
+                            bOffset),
+                        child(A, B.view(0, h, K, N - h),
+                            C.view(0, h, M, N - h), bOffset + h * bStride));
+            } else {
+                // Both halves of K write all of C, so they run in order.
+                final int h = K / 2;
+                child(A.view(0, 0, M, h), B.view(0, 0, h, N), C, bOffset)
+                    .compute();
+                child(A.view(0, h, M, K - h), B.view(h, 0, K - h, N), C,
+                        bOffset + h).compute();
+            }
+        }
+
+        /**
+         * Creates the task for a block of this one, reading B from the same
+         * packed panel.
+         *
+         * @param a Block of A
+         * @param b Block of B
+         * @param c Block of C
+         * @param offset Index in packedB of b.get(0, 0)
+         * @return Task computing c += a x b
+         */
+        private MultiplyTask child(final DenseMatrix a, final DenseMatrix b,
+                final DenseMatrix c, final int offset) {
+            return new MultiplyTask(a, b, c, strassenThreshold, packedB,
+                    offset, bStride);
+        }
+
+        /**
+         * Runs two tasks that write disjoint parts of C, in parallel if there
+         * is enough work to make it worthwhile.
+         *
+         * @param l First task
+         * @param r Second task
+         */
+        private void runBoth(final MultiplyTask l, final MultiplyTask r) {
+            if ((long) C.getNRows() * C.getNCols() * A.getNCols()
+                    < PARALLEL_WORK) {
+                l.compute();
+                r.compute();
+            } else {
+                l.fork();
+                r.compute();
+                l.join();
+            }
+        }
+
+        /**
+         * Computes C += A x B for square matrices of even size with one
+         * Strassen step: seven half-size products, computed in parallel into
+         * scratch buffers, and then combined into the quadrants of C.
+         */
+        private void strassen() {
+            final int h = C.getNRows() / 2;
+            final DenseMatrix a11 = A.view(0, 0, h, h);
+            final DenseMatrix a12 = A.view(0, h, h, h);
+            final DenseMatrix a21 = A.view(h, 0, h, h);
+            final DenseMatrix a22 = A.view(h, h, h, h);
+            final DenseMatrix b11 = B.view(0, 0, h, h);
+            final DenseMatrix b12 = B.view(0, h, h, h);
+            final DenseMatrix b21 = B.view(h, 0, h, h);
+            final DenseMatrix b22 = B.view(h, h, h, h);
+
+            final double[][] buffers = new double[7][];
+            final DenseMatrix[] m = new DenseMatrix[7];
+            for (int p = 0; p < 7; p++) {
+                buffers[p] = SCRATCH.acquireZeroed(h * h);
+                m[p] = DenseMatrix.wrap(buffers[p], h, h);
+            }
+
+            ForkJoinTask.invokeAll(
+                    product(a11, a22, 1, b11, b22, 1, m[0]),
+                    product(a21, a22, 1, b11, null, 0, m[1]),
+                    product(a11, null, 0, b12, b22, -1, m[2]),
+                    product(a22, null, 0, b21, b11, -1, m[3]),
+                    product(a11, a12, 1, b22, null, 0, m[4]),
+                    product(a21, a11, -1, b11, b12, 1, m[5]),
+                    product(a12, a22, -1, b21, b22, 1, m[6]));
+
+            final DenseMatrix c11 = C.view(0, 0, h, h);
+            final DenseMatrix c12 = C.view(0, h, h, h);
+            final DenseMatrix c21 = C.view(h, 0, h, h);
+            final DenseMatrix c22 = C.view(h, h, h, h);
+            accumulate(c11, m[0], 1);
+            accumulate(c11, m[3], 1);
+            accumulate(c11, m[4], -1);
+            accumulate(c11, m[6], 1);
+            accumulate(c12, m[2], 1);
+            accumulate(c12, m[4], 1);
+            accumulate(c21, m[1], 1);
+            accumulate(c21, m[3], 1);
+            accumulate(c22, m[0], 1);
+            accumulate(c22, m[1], -1);
+            accumulate(c22, m[2], 1);
+            accumulate(c22, m[5], 1);
+
+            for (double[] buffer : buffers) {
+                SCRATCH.release(buffer);
+            }
+        }
+
+        /**
+         * Creates the task for one Strassen product,
+         * out = (a1 + aSign * a2) x (b1 + bSign * b2).
+         *
+         * @param a1 First left operand
+         * @param a2 Second left operand, or null to use a1 alone
+         * @param aSign 1 to add a2, -1 to subtract it
+         * @param b1 First right operand
+         * @param b2 Second right operand, or null to use b1 alone
+         * @param bSign 1 to add b2, -1 to subtract it
+         * @param out Zero-filled output
+         * @return Task computing the product
+         */
+        private StrassenProductTask product(final DenseMatrix a1,
+                final DenseMatrix a2, final int aSign, final DenseMatrix b1,
+                final DenseMatrix b2, final int bSign,
+                final DenseMatrix out) {
+            return new StrassenProductTask(a1, a2, aSign, b1, b2, bSign, out,
+                    strassenThreshold);
+        }
+    }
+
+    /**
+     * Task that computes one Strassen product,
+     * out = (a1 + aSign * a2) x (b1 + bSign * b2), forming each sum in a
+     * scratch buffer before recursing.
+     */
+    private static final class StrassenProductTask extends RecursiveAction {
+        /**
+         * First left operand.
+         */
+        private final DenseMatrix a1;
+        /**
+         * Second left operand, or null.
+         */
+        private final DenseMatrix a2;
+        /**
+         * 1 to add a2, -1 to subtract it.
+         */
+        private final int aSign;
+        /**
+         * First right operand.
+         */
+        private final DenseMatrix b1;
+        /**
+         * Second right operand, or null.
+         */
+        private final DenseMatrix b2;
+        /**
+         * 1 to add b2, -1 to subtract it.
+         */
+        private final int bSign;
+        /**
+         * Zero-filled output.
+         */
+        private final DenseMatrix out;
+        /**
+         * Smallest size to use a Strassen step at.
+         */
+        private final int strassenThreshold;
+
+        /**
+         * Constructor.
+         *
+         * @param setA1 First left operand
+         * @param setA2 Second left operand, or null to use setA1 alone
+         * @param setASign 1 to add setA2, -1 to subtract it
+         * @param setB1 First right operand
+         * @param setB2 Second right operand, or null to use setB1 alone
+         * @param setBSign 1 to add setB2, -1 to subtract it
+         * @param setOut Zero-filled output
+         * @param setStrassenThreshold Smallest size to use a Strassen step at
+         */
+        StrassenProductTask(final DenseMatrix setA1, final DenseMatrix setA2,
+                final int setASign, final DenseMatrix setB1,
+                final DenseMatrix setB2, final int setBSign,
+                final DenseMatrix setOut, final int setStrassenThreshold) {
+            this.a1 = setA1;
+            this.a2 = setA2;
+            this.aSign = setASign;
+            this.b1 = setB1;
+            this.b2 = setB2;
+            this.bSign = setBSign;
+            this.out = setOut;
+            this.strassenThreshold = setStrassenThreshold;
+        }
+
+        @Override
+        protected void compute() {
+            final int h = out.getNRows();
+            double[] aBuffer = null;
+            double[] bBuffer = null;
+            DenseMatrix left = a1;
+            DenseMatrix right = b1;
+            if (a2 != null) {
+                aBuffer = SCRATCH.acquire(h * h);
+                left = DenseMatrix.wrap(aBuffer, h, h);
+                combine(a1, a2, aSign, left);
+            }
+            if (b2 != null) {
+                bBuffer = SCRATCH.acquire(h * h);
+                right = DenseMatrix.wrap(bBuffer, h, h);
+                combine(b1, b2, bSign, right);
+            }
+
+            new MultiplyTask(left, right, out, strassenThreshold).compute();
+
+            if (aBuffer != null) {
+                SCRATCH.release(aBuffer);
+            }
+            if (bBuffer != null) {
+                SCRATCH.release(bBuffer);
+            }
+        }
+    }
+}
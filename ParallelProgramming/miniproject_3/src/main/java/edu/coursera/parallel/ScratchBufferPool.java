@@ -0,0 +1,143 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe pool of double[] scratch buffers, keyed by length.
+ * Recursive algorithms that need temporaries of the same few sizes on every
+ * call acquire them here instead of allocating, and release them when done.
+ *
+ * Idle buffers are kept only while their total size stays within
+ * maxIdleBytes; buffers released beyond that are dropped for the garbage
+ * collector. Buffers that callers hold are not counted, so the cap bounds
+ * what the pool retains between calls, not the memory in use at once.
+ */
+final class ScratchBufferPool {
+    /**
+     * Bytes taken by each element of a buffer.
+     */
+    private static final int BYTES_PER_ELEMENT = 8;
+
+    /**
+     * Most bytes of idle buffers kept for reuse.
+     */
+    private final long maxIdleBytes;
+    /**
+     * Bytes currently held by idle buffers.
+     */
+    private final AtomicLong idleBytes = new AtomicLong();
+    /**
+     * Idle buffers of each length.
+     */
+    private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<double[]>>
+        idle = new ConcurrentHashMap<Integer,
+             ConcurrentLinkedQueue<double[]>>();
+    /**
+     * Number of idle buffers of each length. Kept separately because
+     * ConcurrentLinkedQueue.size() is linear.
+     */
+    private final ConcurrentHashMap<Integer, AtomicInteger> idleCounts =
+        new ConcurrentHashMap<Integer, AtomicInteger>();
+
+    /**
+     * Constructor.
+     *
+     * @param setMaxIdleBytes Most bytes of idle buffers to keep
+     */
+    ScratchBufferPool(final long setMaxIdleBytes) {
+        this.maxIdleBytes = setMaxIdleBytes;
+    }
+
+    /**
+     * Takes a buffer of the given length, reusing an idle one if there is
+     * one. Its contents are unspecified, so this is for buffers the caller
+     * overwrites completely.
+     *
+     * @param length Length of the buffer
+     * @return A buffer of exactly length elements
+     */
+    double[] acquire(final int length) {
+        final double[] buffer = queueOf(length).poll();
+        if (buffer == null) {
+            return new double[length];
+        }
+        idleCounts.get(length).decrementAndGet();
+        idleBytes.addAndGet(-bytesOf(length));
+        return buffer;
+    }
+
+    /**
+     * Takes a zero-filled buffer of the given length, reusing an idle one
+     * if there is one.
+     *
+     * @param length Length of the buffer
+     * @return A buffer of exactly length elements, all 0.0
+     */
+    double[] acquireZeroed(final int length) {
+        final double[] buffer = acquire(length);
+        Arrays.fill(buffer, 0.0);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use it afterwards.
+     *
+     * @param buffer Buffer obtained from acquire or acquireZeroed
+     */
+    void release(final double[] buffer) {
+        final long bytes = bytesOf(buffer.length);
+        if (idleBytes.addAndGet(bytes) > maxIdleBytes) {
+            idleBytes.addAndGet(-bytes);
+            return;
+        }
+        final ConcurrentLinkedQueue<double[]> queue = queueOf(buffer.length);
+        idleCounts.get(buffer.length).incrementAndGet();
+        queue.offer(buffer);
+    }
+
+    /**
+     * Get the number of bytes held by idle buffers.
+     *
+     * @return Bytes held by buffers available for reuse
+     */
+    long idleBytes() {
+        return idleBytes.get();
+    }
+
+    /**
+     * Get the number of idle buffers of a given length.
+     *
+     * @param length Length of the buffers
+     * @return Number of buffers of that length available for reuse
+     */
+    int idleCount(final int length) {
+        final AtomicInteger count = idleCounts.get(length);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Computes the size of a buffer.
+     *
+     * @param length Length of the buffer
+     * @return Bytes taken by its elements
+     */
+    private static long bytesOf(final int length) {
+        return (long) length * BYTES_PER_ELEMENT;
+    }
+
+    /**
+     * Finds the queue of idle buffers of a length, creating it if needed.
+     *
+     * @param length Length of the buffers
+     * @return Queue of idle buffers of that length
+     */
+    private ConcurrentLinkedQueue<double[]> queueOf(final int length) {
+        idleCounts.computeIfAbsent(length, l -> new AtomicInteger());
+        return idle.computeIfAbsent(length,
+                l -> new ConcurrentLinkedQueue<double[]>());
+    }
+}
@@ -0,0 +1,247 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+
+/**
+ * An immutable sparse matrix in compressed sparse row (CSR) form. The
+ * nonzeros of row i are at positions [getRowPointers()[i],
+ * getRowPointers()[i + 1]) of getColumnIndices() and getValues(), in
+ * increasing column order.
+ *
+ * The compressed sparse column (CSC) form of a matrix is the CSR form of
+ * its transpose, so transpose() also serves as the conversion between the
+ * two: the row pointers, indices and values of A.transpose() are the column
+ * pointers, row indices and values of A in CSC form.
+ */
+public final class SparseMatrix {
+    /**
+     * The number of rows in the matrix.
+     */
+    private final int nrows;
+    /**
+     * The number of columns in the matrix.
+     */
+    private final int ncols;
+    /**
+     * Start of each row's nonzeros, with a final entry equal to the number
+     * of nonzeros.
+     */
+    private final int[] rowPointers;
+    /**
+     * Column of each nonzero.
+     */
+    private final int[] columnIndices;
+    /**
+     * Value of each nonzero.
+     */
+    private final double[] values;
+
+    /**
+     * Constructor over existing CSR arrays, without copying them. The caller
+     * must not modify them afterwards.
+     *
+     * @param setNrows Number of rows
+     * @param setNcols Number of columns
+     * @param setRowPointers Start of each row's nonzeros, of length
+     *        setNrows + 1, starting at 0 and non-decreasing
+     * @param setColumnIndices Column of each nonzero, increasing within each
+     *        row
+     * @param setValues Value of each nonzero
+     * @throws IllegalArgumentException If the arrays are not valid CSR
+     */
+    public SparseMatrix(final int setNrows, final int setNcols,
+            final int[] setRowPointers, final int[] setColumnIndices,
+            final double[] setValues) {
+        if (setNrows < 0 || setNcols < 0
+                || setRowPointers.length != setNrows + 1
+                || setRowPointers[0] != 0
+                || setRowPointers[setNrows] != setColumnIndices.length
+                || setColumnIndices.length != setValues.length) {
+            throw new IllegalArgumentException("Invalid CSR arrays for a "
+                    + setNrows + "x" + setNcols + " matrix");
+        }
+        for (int i = 0; i < setNrows; i++) {
+            if (setRowPointers[i] > setRowPointers[i + 1]) {
+                throw new IllegalArgumentException("Row pointers decrease"
+                        + " at row " + i);
+            }
+            if (setRowPointers[i + 1] > setColumnIndices.length) {
+                throw new IllegalArgumentException("Row pointer of row "
+                        + (i + 1) + " is past the " + setColumnIndices.length
+                        + " nonzeros");
+            }
+            for (int p = setRowPointers[i]; p < setRowPointers[i + 1]; p++) {
+                final int col = setColumnIndices[p];
+                if (col < 0 || col >= setNcols || (p > setRowPointers[i]
+                            && col <= setColumnIndices[p - 1])) {
+                    throw new IllegalArgumentException("Column indices of"
+                            + " row " + i + " are not increasing and in"
+                            + " [0, " + setNcols + ")");
+                }
+            }
+        }
+        this.nrows = setNrows;
+        this.ncols = setNcols;
+        this.rowPointers = setRowPointers;
+        this.columnIndices = setColumnIndices;
+        this.values = setValues;
+    }
+
+    /**
+     * Builds the CSR form of the nonzero elements of a dense matrix.
+     *
+     * @param dense Input matrix
+     * @return A sparse matrix with the same contents
+     */
+    public static SparseMatrix fromDense(final DenseMatrix dense) {
+        final int m = dense.getNRows();
+        final int n = dense.getNCols();
+        final double[] d = dense.getValues();
+        final int[] pointers = new int[m + 1];
+        for (int i = 0; i < m; i++) {
+            final int row = dense.getOffsetOfRow(i);
+            int count = 0;
+            for (int j = 0; j < n; j++) {
+                if (d[row + j] != 0.0) {
+                    count++;
+                }
+            }
+            pointers[i + 1] = pointers[i] + count;
+        }
+
+        final int[] indices = new int[pointers[m]];
+        final double[] vals = new double[pointers[m]];
+        int p = 0;
+        for (int i = 0; i < m; i++) {
+            final int row = dense.getOffsetOfRow(i);
+            for (int j = 0; j < n; j++) {
+                if (d[row + j] != 0.0) {
+                    indices[p] = j;
+                    vals[p] = d[row + j];
+                    p++;
+                }
+            }
+        }
+        return new SparseMatrix(m, n, pointers, indices, vals);
+    }
+
+    /**
+     * Builds the CSR form of the nonzero elements of a double[][].
+     *
+     * @param array Input, with every row the same length
+     * @return A sparse matrix with the same contents
+     */
+    public static SparseMatrix fromArray(final double[][] array) {
+        return fromDense(DenseMatrix.fromArray(array));
+    }
+
+    /**
+     * Expands this matrix into a new dense matrix.
+     *
+     * @return A dense matrix with the same contents
+     */
+    public DenseMatrix toDense() {
+        final DenseMatrix dense = new DenseMatrix(nrows, ncols);
+        for (int i = 0; i < nrows; i++) {
+            for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                dense.set(i, columnIndices[p], values[p]);
+            }
+        }
+        return dense;
+    }
+
+    /**
+     * Computes the transpose with a counting sort of the nonzeros by column.
+     * Equivalently, converts this matrix to CSC form.
+     *
+     * @return The transpose of this matrix, in CSR form
+     */
+    public SparseMatrix transpose() {
+        final int[] pointers = new int[ncols + 1];
+        for (int p = 0; p < columnIndices.length; p++) {
+            pointers[columnIndices[p] + 1]++;
+        }
+        for (int j = 0; j < ncols; j++) {
+            pointers[j + 1] += pointers[j];
+        }
+
+        final int[] next = Arrays.copyOf(pointers, ncols);
+        final int[] indices = new int[columnIndices.length];
+        final double[] vals = new double[values.length];
+        for (int i = 0; i < nrows; i++) {
+            for (int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                final int q = next[columnIndices[p]]++;
+                indices[q] = i;
+                vals[q] = values[p];
+            }
+        }
+        return new SparseMatrix(ncols, nrows, pointers, indices, vals);
+    }
+
+    /**
+     * Fetch the value at (row, col), by binary search within the row.
+     *
+     * @param row Row index
+     * @param col Column index
+     * @return The value stored at (row, col), or 0.0 if it is not stored
+     */
+    public double get(final int row, final int col) {
+        final int p = Arrays.binarySearch(columnIndices, rowPointers[row],
+                rowPointers[row + 1], col);
+        return p >= 0 ? values[p] : 0.0;
+    }
+
+    /**
+     * Fetch the number of rows in this matrix.
+     *
+     * @return # of rows
+     */
+    public int getNRows() {
+        return nrows;
+    }
+
+    /**
+     * Fetch the number of columns in this matrix.
+     *
+     * @return # of columns
+     */
+    public int getNCols() {
+        return ncols;
+    }
+
+    /**
+     * Fetch the number of stored nonzeros.
+     *
+     * @return # of nonzeros
+     */
+    public int getNnz() {
+        return values.length;
+    }
+
+    /**
+     * Get the start of each row's nonzeros. Must not be modified.
+     *
+     * @return Row pointers, of length getNRows() + 1
+     */
+    public int[] getRowPointers() {
+        return rowPointers;
+    }
+
+    /**
+     * Get the column of each nonzero. Must not be modified.
+     *
+     * @return Column indices, of length getNnz()
+     */
+    public int[] getColumnIndices() {
+        return columnIndices;
+    }
+
+    /**
+     * Get the value of each nonzero. Must not be modified.
+     *
+     * @return Values, of length getNnz()
+     */
+    public double[] getValues() {
+        return values;
+    }
+}
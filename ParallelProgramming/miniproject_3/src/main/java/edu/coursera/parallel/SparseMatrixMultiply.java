@@ -0,0 +1,500 @@
+package edu.coursera.parallel;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sequential and parallel multiplies with a SparseMatrix on the left:
+ * sparse x vector (SpMV), sparse x dense (SpMM) and sparse x sparse
+ * (SpGEMM).
+ *
+ * The parallel versions split the rows of the output into contiguous parts
+ * of roughly equal work rather than of equal row count, so that a few dense
+ * rows among many sparse ones do not leave cores idle. The work of a row is
+ * its number of nonzeros for SpMV and SpMM, and its number of
+ * multiply-adds for SpGEMM. A single row is never split, so one row with
+ * more work than a part still runs on one core.
+ *
+ * Each output element sums its products in the same order in the
+ * sequential and parallel versions, so their results are bit-identical.
+ */
+public final class SparseMatrixMultiply {
+    /**
+     * Number of parts per core, enough slack to even out the parts that
+     * could not be balanced because rows are indivisible.
+     */
+    static final int PARTS_PER_CORE = 8;
+
+    /**
+     * Default constructor.
+     */
+    private SparseMatrixMultiply() {
+    }
+
+    /**
+     * Computes y = A x sequentially.
+     *
+     * @param A Sparse matrix with dimensions MxN
+     * @param x Input vector of length N
+     * @param y Output vector of length M
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void seqSpmv(final SparseMatrix A, final double[] x,
+            final double[] y) {
+        checkSpmv(A, x, y);
+        spmvRows(A, x, y, 0, A.getNRows());
+    }
+
+    /**
+     * Computes y = A x in parallel, splitting rows by nonzero count.
+     *
+     * @param A Sparse matrix with dimensions MxN
+     * @param x Input vector of length N
+     * @param y Output vector of length M
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void parSpmv(final SparseMatrix A, final double[] x,
+            final double[] y) {
+        checkSpmv(A, x, y);
+        final int[] bounds = partition(A.getRowPointers());
+        MatrixMultiply.POOL.invoke(new PartTask(0, bounds.length - 1,
+                    part -> spmvRows(A, x, y, bounds[part],
+                        bounds[part + 1])));
+    }
+
+    /**
+     * Checks that y = A x is well-formed.
+     *
+     * @param A Sparse matrix with dimensions MxN
+     * @param x Input vector of length N
+     * @param y Output vector of length M
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    private static void checkSpmv(final SparseMatrix A, final double[] x,
+            final double[] y) {
+        if (x.length != A.getNCols() || y.length != A.getNRows()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by a vector of "
+                    + x.length + " into a vector of " + y.length);
+        }
+    }
+
+    /**
+     * Computes rows [lo, hi) of y = A x.
+     *
+     * @param A Sparse matrix with dimensions MxN
+     * @param x Input vector of length N
+     * @param y Output vector of length M
+     * @param lo First row
+     * @param hi Row after the last one
+     */
+    private static void spmvRows(final SparseMatrix A, final double[] x,
+            final double[] y, final int lo, final int hi) {
+        final int[] pointers = A.getRowPointers();
+        final int[] cols = A.getColumnIndices();
+        final double[] vals = A.getValues();
+        for (int i = lo; i < hi; i++) {
+            double sum = 0.0;
+            for (int p = pointers[i]; p < pointers[i + 1]; p++) {
+                sum += vals[p] * x[cols[p]];
+            }
+            y[i] = sum;
+        }
+    }
+
+    /**
+     * Computes C = A x B sequentially, where B is dense.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Dense matrix with dimensions KxN
+     * @param C Output matrix with dimensions MxN, not sharing storage with B
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void seqSpmm(final SparseMatrix A, final DenseMatrix B,
+            final DenseMatrix C) {
+        checkSpmm(A, B, C);
+        spmmRows(A, B, C, 0, A.getNRows());
+    }
+
+    /**
+     * Computes C = A x B in parallel, where B is dense, splitting rows by
+     * nonzero count.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Dense matrix with dimensions KxN
+     * @param C Output matrix with dimensions MxN, not sharing storage with B
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static void parSpmm(final SparseMatrix A, final DenseMatrix B,
+            final DenseMatrix C) {
+        checkSpmm(A, B, C);
+        final int[] bounds = partition(A.getRowPointers());
+        MatrixMultiply.POOL.invoke(new PartTask(0, bounds.length - 1,
+                    part -> spmmRows(A, B, C, bounds[part],
+                        bounds[part + 1])));
+    }
+
+    /**
+     * Checks that C = A x B is well-formed.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Dense matrix with dimensions KxN
+     * @param C Output matrix with dimensions MxN
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    private static void checkSpmm(final SparseMatrix A, final DenseMatrix B,
+            final DenseMatrix C) {
+        if (A.getNCols() != B.getNRows() || C.getNRows() != A.getNRows()
+                || C.getNCols() != B.getNCols()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by "
+                    + B.getNRows() + "x" + B.getNCols() + " into "
+                    + C.getNRows() + "x" + C.getNCols());
+        }
+    }
+
+    /**
+     * Computes rows [lo, hi) of C = A x B, adding a scaled row of B into the
+     * row of C for each nonzero of A.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Dense matrix with dimensions KxN
+     * @param C Output matrix with dimensions MxN
+     * @param lo First row
+     * @param hi Row after the last one
+     */
+    private static void spmmRows(final SparseMatrix A, final DenseMatrix B,
+            final DenseMatrix C, final int lo, final int hi) {
+        final int[] pointers = A.getRowPointers();
+        final int[] cols = A.getColumnIndices();
+        final double[] vals = A.getValues();
+        final double[] b = B.getValues();
+        final double[] c = C.getValues();
+        final int n = C.getNCols();
+        for (int i = lo; i < hi; i++) {
+            final int cRow = C.getOffsetOfRow(i);
+            Arrays.fill(c, cRow, cRow + n, 0.0);
+            for (int p = pointers[i]; p < pointers[i + 1]; p++) {
+                final double v = vals[p];
+                final int bRow = B.getOffsetOfRow(cols[p]);
+                for (int j = 0; j < n; j++) {
+                    c[cRow + j] += v * b[bRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes C = A x B sequentially, where both are sparse.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Sparse matrix with dimensions KxN
+     * @return The sparse product, with dimensions MxN
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static SparseMatrix seqSpgemm(final SparseMatrix A,
+            final SparseMatrix B) {
+        checkSpgemm(A, B);
+        final SpgemmPart part = new SpgemmPart(A, B, 0, A.getNRows());
+        part.compute(A, B);
+        final int[] pointers = new int[A.getNRows() + 1];
+        System.arraycopy(part.rowCounts, 0, pointers, 1, A.getNRows());
+        for (int i = 0; i < A.getNRows(); i++) {
+            pointers[i + 1] += pointers[i];
+        }
+        return new SparseMatrix(A.getNRows(), B.getNCols(), pointers,
+                Arrays.copyOf(part.columns, part.size),
+                Arrays.copyOf(part.values, part.size));
+    }
+
+    /**
+     * Computes C = A x B in parallel, where both are sparse, splitting rows
+     * by the number of multiply-adds they need.
+     *
+     * Each part of the rows is multiplied into its own buffers. The row
+     * pointers of C are then a prefix sum of the row lengths, and each part
+     * copies its buffers into place in parallel.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Sparse matrix with dimensions KxN
+     * @return The sparse product, with dimensions MxN
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    public static SparseMatrix parSpgemm(final SparseMatrix A,
+            final SparseMatrix B) {
+        checkSpgemm(A, B);
+        final int m = A.getNRows();
+        final int[] aPointers = A.getRowPointers();
+        final int[] aCols = A.getColumnIndices();
+        final int[] bPointers = B.getRowPointers();
+
+        final long[] work = new long[m + 1];
+        for (int i = 0; i < m; i++) {
+            long flops = 0;
+            for (int p = aPointers[i]; p < aPointers[i + 1]; p++) {
+                flops += bPointers[aCols[p] + 1] - bPointers[aCols[p]];
+            }
+            work[i + 1] = work[i] + flops;
+        }
+
+        final int[] bounds = partition(work);
+        final int nParts = bounds.length - 1;
+        final SpgemmPart[] parts = new SpgemmPart[nParts];
+        MatrixMultiply.POOL.invoke(new PartTask(0, nParts, part -> {
+            parts[part] = new SpgemmPart(A, B, bounds[part],
+                    bounds[part + 1]);
+            parts[part].compute(A, B);
+        }));
+
+        final int[] pointers = new int[m + 1];
+        for (final SpgemmPart part : parts) {
+            for (int i = part.lo; i < part.hi; i++) {
+                pointers[i + 1] = pointers[i] + part.rowCounts[i - part.lo];
+            }
+        }
+
+        final int[] columns = new int[pointers[m]];
+        final double[] values = new double[pointers[m]];
+        MatrixMultiply.POOL.invoke(new PartTask(0, nParts, part -> {
+            final SpgemmPart p = parts[part];
+            System.arraycopy(p.columns, 0, columns, pointers[p.lo], p.size);
+            System.arraycopy(p.values, 0, values, pointers[p.lo], p.size);
+        }));
+        return new SparseMatrix(m, B.getNCols(), pointers, columns, values);
+    }
+
+    /**
+     * Checks that C = A x B is well-formed.
+     *
+     * @param A Sparse matrix with dimensions MxK
+     * @param B Sparse matrix with dimensions KxN
+     * @throws IllegalArgumentException If the dimensions do not agree
+     */
+    private static void checkSpgemm(final SparseMatrix A,
+            final SparseMatrix B) {
+        if (A.getNCols() != B.getNRows()) {
+            throw new IllegalArgumentException("Cannot multiply "
+                    + A.getNRows() + "x" + A.getNCols() + " by "
+                    + B.getNRows() + "x" + B.getNCols());
+        }
+    }
+
+    /**
+     * Splits rows into contiguous parts of roughly equal work, about
+     * PARTS_PER_CORE per core.
+     *
+     * @param prefixWork Cumulative work: the rows before row i need
+     *        prefixWork[i]
+     * @return Part boundaries: part p is rows [bounds[p], bounds[p + 1])
+     */
+    static int[] partition(final int[] prefixWork) {
+        final long[] work = new long[prefixWork.length];
+        for (int i = 0; i < work.length; i++) {
+            work[i] = prefixWork[i];
+        }
+        return partition(work);
+    }
+
+    /**
+     * Splits rows into contiguous parts of roughly equal work, about
+     * PARTS_PER_CORE per core. Each boundary is the first row at which the
+     * cumulative work reaches its share, found by binary search.
+     *
+     * @param prefixWork Cumulative work: the rows before row i need
+     *        prefixWork[i]
+     * @return Part boundaries: part p is rows [bounds[p], bounds[p + 1])
+     */
+    static int[] partition(final long[] prefixWork) {
+        final int m = prefixWork.length - 1;
+        final long total = prefixWork[m];
+        final int nParts = Math.max(1, Math.min(m,
+                    MatrixMultiply.POOL.getParallelism() * PARTS_PER_CORE));
+
+        final int[] bounds = new int[nParts + 1];
+        int n = 1;
+        for (int part = 1; part < nParts; part++) {
+            final long target = total * part / nParts;
+            int row = Arrays.binarySearch(prefixWork, bounds[n - 1], m,
+                    target);
+            if (row < 0) {
+                row = -row - 1;
+            }
+            // Skip empty parts, which would happen when one row holds more
+            // than a share of the work.
+            if (row > bounds[n - 1] && row < m) {
+                bounds[n++] = row;
+            }
+        }
+        bounds[n++] = m;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Work done on one part of the rows by a PartTask.
+     */
+    @FunctionalInterface
+    private interface PartBody {
+        /**
+         * Processes one part.
+         *
+         * @param part Index of the part
+         */
+        void run(int part);
+    }
+
+    /**
+     * Task that applies a body to a range of parts, splitting the range in
+     * half recursively using fork-compute-join until it holds one part.
+     */
+    private static final class PartTask extends RecursiveAction {
+        /**
+         * First part processed by this task.
+         */
+        private final int lo;
+        /**
+         * Part after the last one processed by this task.
+         */
+        private final int hi;
+        /**
+         * Work to do on each part.
+         */
+        private final PartBody body;
+
+        /**
+         * Constructor.
+         *
+         * @param setLo First part to process
+         * @param setHi Part after the last one to process
+         * @param setBody Work to do on each part
+         */
+        PartTask(final int setLo, final int setHi, final PartBody setBody) {
+            this.lo = setLo;
+            this.hi = setHi;
+            this.body = setBody;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= 1) {
+                if (hi > lo) {
+                    body.run(lo);
+                }
+                return;
+            }
+
+            final int mid = (lo + hi) / 2;
+            final PartTask l = new PartTask(lo, mid, body);
+            final PartTask r = new PartTask(mid, hi, body);
+            l.fork();
+            r.compute();
+            l.join();
+        }
+    }
+
+    /**
+     * The rows [lo, hi) of a sparse product, computed with Gustavson's
+     * row-by-row method into buffers owned by this part.
+     */
+    private static final class SpgemmPart {
+        /**
+         * First row of the part.
+         */
+        private final int lo;
+        /**
+         * Row after the last one of the part.
+         */
+        private final int hi;
+        /**
+         * Number of nonzeros in each row of the part.
+         */
+        private final int[] rowCounts;
+        /**
+         * Columns of the nonzeros of the part, row by row.
+         */
+        private int[] columns;
+        /**
+         * Values of the nonzeros of the part, row by row.
+         */
+        private double[] values;
+        /**
+         * Number of nonzeros of the part.
+         */
+        private int size;
+
+        /**
+         * Constructor.
+         *
+         * @param A Left operand
+         * @param B Right operand
+         * @param setLo First row of the part
+         * @param setHi Row after the last one of the part
+         */
+        SpgemmPart(final SparseMatrix A, final SparseMatrix B,
+                final int setLo, final int setHi) {
+            this.lo = setLo;
+            this.hi = setHi;
+            this.rowCounts = new int[setHi - setLo];
+            final int guess = Math.max(16, A.getRowPointers()[setHi]
+                    - A.getRowPointers()[setLo]);
+            this.columns = new int[guess];
+            this.values = new double[guess];
+        }
+
+        /**
+         * Multiplies the rows of the part. Each output row accumulates into a
+         * dense row of length N, and the columns it touched are then sorted
+         * and gathered, so every nonzero of A's row contributes in order.
+         *
+         * @param A Left operand
+         * @param B Right operand
+         */
+        void compute(final SparseMatrix A, final SparseMatrix B) {
+            final int[] aPointers = A.getRowPointers();
+            final int[] aCols = A.getColumnIndices();
+            final double[] aVals = A.getValues();
+            final int[] bPointers = B.getRowPointers();
+            final int[] bCols = B.getColumnIndices();
+            final double[] bVals = B.getValues();
+
+            final double[] accumulator = new double[B.getNCols()];
+            final boolean[] touched = new boolean[B.getNCols()];
+            int[] touchedColumns = new int[16];
+            for (int i = lo; i < hi; i++) {
+                int nTouched = 0;
+                for (int p = aPointers[i]; p < aPointers[i + 1]; p++) {
+                    final double v = aVals[p];
+                    final int k = aCols[p];
+                    for (int q = bPointers[k]; q < bPointers[k + 1]; q++) {
+                        final int j = bCols[q];
+                        if (!touched[j]) {
+                            touched[j] = true;
+                            if (nTouched == touchedColumns.length) {
+                                touchedColumns = Arrays.copyOf(
+                                        touchedColumns, 2 * nTouched);
+                            }
+                            touchedColumns[nTouched++] = j;
+                        }
+                        accumulator[j] += v * bVals[q];
+                    }
+                }
+
+                Arrays.sort(touchedColumns, 0, nTouched);
+                if (size + nTouched > columns.length) {
+                    final int capacity = Math.max(2 * columns.length,
+                            size + nTouched);
+                    columns = Arrays.copyOf(columns, capacity);
+                    values = Arrays.copyOf(values, capacity);
+                }
+                for (int t = 0; t < nTouched; t++) {
+                    final int j = touchedColumns[t];
+                    columns[size] = j;
+                    values[size] = accumulator[j];
+                    size++;
+                    accumulator[j] = 0.0;
+                    touched[j] = false;
+                }
+                rowCounts[i - lo] = nTouched;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package edu.coursera.parallel;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import junit.framework.TestCase;
@@ -17,6 +18,14 @@ public class MatrixMultiplyTest extends TestCase {
         }
     }
 
+    static {
+        // PCDP's forall2dChunked deadlocks with a single worker, so run at least two even on a single-core host.
+        // Surefire forks a JVM per test class, so this is set before PCDP's runtime reads it.
+        if (System.getProperty("pcdp.numWorkers") == null) {
+            System.setProperty("pcdp.numWorkers", Integer.toString(Math.max(2, getNCores())));
+        }
+    }
+
     /**
      * Create a double[] of length N to use as input for the tests.
      *
@@ -129,4 +138,442 @@ public class MatrixMultiplyTest extends TestCase {
                 "least %fx faster, but it only achieved %fx speedup", minimalExpectedSpeedup, speedup);
         assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
     }
+
+    /**
+     * Tests that the blocked implementation matches seqMatrixMultiply bit for bit, including sizes that do not
+     * divide evenly into register tiles or cache blocks, and fractional values whose sums depend on ordering.
+     */
+    public void testParBlockedMatchesSequential() {
+        final Random rand = new Random(42);
+        for (int N : new int[] {1, 2, 3, 5, 33, 67, 257, 300}) {
+            final double[][] A = new double[N][N];
+            final double[][] B = new double[N][N];
+            for (int i = 0; i < N; i++) {
+                for (int j = 0; j < N; j++) {
+                    A[i][j] = rand.nextDouble() - 0.5;
+                    B[i][j] = rand.nextDouble() * 1E3;
+                }
+            }
+            final double[][] refC = new double[N][N];
+            final double[][] C = new double[N][N];
+            for (double[] row : C) {
+                Arrays.fill(row, Double.NaN);
+            }
+
+            MatrixMultiply.seqMatrixMultiply(A, B, refC, N);
+            MatrixMultiply.parMatrixMultiplyBlocked(A, B, C, N);
+
+            checkResult(refC, C, N);
+        }
+    }
+
+    /**
+     * Tests that the blocked implementation is faster than the unblocked parallel implementation on a 1024x1024
+     * matrix, where B no longer fits in cache.
+     */
+    public void testParBlocked1024_x_1024() {
+        final int N = 1024;
+        final double[][] A = createMatrix(N);
+        final double[][] B = createMatrix(N);
+        final double[][] C = new double[N][N];
+        final double[][] refC = new double[N][N];
+
+        MatrixMultiply.parMatrixMultiply(A, B, refC, N);
+        MatrixMultiply.parMatrixMultiplyBlocked(A, B, C, N);
+        checkResult(refC, C, N);
+
+        final int repeats = 3;
+        final long parStartTime = System.nanoTime();
+        for (int r = 0; r < repeats; r++) {
+            MatrixMultiply.parMatrixMultiply(A, B, C, N);
+        }
+        final long parEndTime = System.nanoTime();
+
+        final long blockedStartTime = System.nanoTime();
+        for (int r = 0; r < repeats; r++) {
+            MatrixMultiply.parMatrixMultiplyBlocked(A, B, C, N);
+        }
+        final long blockedEndTime = System.nanoTime();
+
+        final double speedup = (double)(parEndTime - parStartTime) / (double)(blockedEndTime - blockedStartTime);
+        // With one core both versions run effectively sequentially, so the ratio is the cache-blocking gain alone
+        // (about 18x on a 1-core host). With more cores the unblocked version's time also depends on how PCDP's
+        // workers share the memory bus on the host, so only require 2x there.
+        final double minimalExpectedSpeedup = getNCores() == 1 ? 4.0 : 2.0;
+        final String errMsg = String.format("It was expected that the blocked implementation would run at " +
+                "least %fx faster, but it only achieved %fx speedup", minimalExpectedSpeedup, speedup);
+        assertTrue(errMsg, speedup >= minimalExpectedSpeedup);
+    }
+
+    /**
+     * Tests the DenseMatrix overloads against the double[][] reference on rectangular shapes, and checks that
+     * the parallel version matches the sequential one bit for bit.
+     */
+    public void testDenseMatrixMultiply() {
+        final Random rand = new Random(7);
+        final int[][] shapes = {{1, 1, 1}, {3, 5, 2}, {17, 9, 33}, {64, 64, 64}, {130, 257, 71}};
+        for (int[] shape : shapes) {
+            final int M = shape[0];
+            final int K = shape[1];
+            final int N = shape[2];
+            final double[][] a = new double[M][K];
+            final double[][] b = new double[K][N];
+            for (double[] row : a) {
+                for (int k = 0; k < K; k++) {
+                    row[k] = rand.nextDouble() - 0.5;
+                }
+            }
+            for (double[] row : b) {
+                for (int j = 0; j < N; j++) {
+                    row[j] = rand.nextDouble() * 1E3;
+                }
+            }
+
+            final double[][] refC = new double[M][N];
+            for (int i = 0; i < M; i++) {
+                for (int j = 0; j < N; j++) {
+                    for (int k = 0; k < K; k++) {
+                        refC[i][j] += a[i][k] * b[k][j];
+                    }
+                }
+            }
+
+            final DenseMatrix A = DenseMatrix.fromArray(a);
+            final DenseMatrix B = DenseMatrix.fromArray(b);
+            final DenseMatrix seqC = new DenseMatrix(M, N);
+            final DenseMatrix parC = new DenseMatrix(M, N);
+            MatrixMultiply.seqMatrixMultiply(A, B, seqC);
+            MatrixMultiply.parMatrixMultiply(A, B, parC);
+
+            final double[][] seqResult = seqC.toArray();
+            final double[][] parResult = parC.toArray();
+            for (int i = 0; i < M; i++) {
+                for (int j = 0; j < N; j++) {
+                    String msg = "Error detected on cell (" + i + ", " + j + ")";
+                    assertEquals(msg, refC[i][j], seqResult[i][j]);
+                    assertEquals(msg, seqResult[i][j], parResult[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that views share storage with their parent matrix and that multiplies read and write through views
+     * with a row stride larger than their width, leaving the rest of the parent untouched.
+     */
+    public void testDenseMatrixViews() {
+        final int N = 100;
+        final double[][] a = createMatrix(N);
+        final DenseMatrix parent = DenseMatrix.fromArray(a);
+        final DenseMatrix A = parent.view(10, 20, 37, 45);
+        final DenseMatrix B = parent.view(50, 5, 45, 41);
+        assertEquals(N, A.getRowStride());
+        assertFalse(A.isContiguous());
+        assertEquals(a[10 + 3][20 + 4], A.get(3, 4));
+
+        final DenseMatrix expected = new DenseMatrix(37, 41);
+        MatrixMultiply.seqMatrixMultiply(new DenseMatrix(A), new DenseMatrix(B), expected);
+
+        final DenseMatrix out = new DenseMatrix(60, 60);
+        for (int i = 0; i < 60; i++) {
+            for (int j = 0; j < 60; j++) {
+                out.set(i, j, -1.0);
+            }
+        }
+        final DenseMatrix C = out.view(11, 13, 37, 41);
+        MatrixMultiply.parMatrixMultiply(A, B, C);
+
+        for (int i = 0; i < 60; i++) {
+            for (int j = 0; j < 60; j++) {
+                final boolean inside = i >= 11 && i < 11 + 37 && j >= 13 && j < 13 + 41;
+                final double want = inside ? expected.get(i - 11, j - 13) : -1.0;
+                assertEquals("Error detected on cell (" + i + ", " + j + ")", want, out.get(i, j));
+            }
+        }
+
+        // Views and wrapped rows share storage rather than copying it.
+        A.set(0, 0, 12345.0);
+        assertEquals(12345.0, parent.get(10, 20));
+        final DenseMatrix row = DenseMatrix.wrapRow(a[0]);
+        row.set(0, 1, 6789.0);
+        assertEquals(6789.0, a[0][1]);
+
+        try {
+            parent.view(90, 0, 20, 10);
+            fail("Expected a view outside the matrix to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            MatrixMultiply.parMatrixMultiply(A, A, new DenseMatrix(37, 45));
+            fail("Expected mismatched dimensions to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that the cache-oblivious recursion matches seqMatrixMultiply bit for bit on shapes that split
+     * unevenly along every dimension.
+     */
+    public void testRecursiveMatrixMultiply() {
+        final Random rand = new Random(11);
+        final int[][] shapes = {{1, 1, 1}, {65, 3, 130}, {300, 129, 67}, {100, 600, 90}, {130, 70, 520}};
+        for (int[] shape : shapes) {
+            final DenseMatrix A = new DenseMatrix(shape[0], shape[1]);
+            final DenseMatrix B = new DenseMatrix(shape[1], shape[2]);
+            for (int i = 0; i < A.getValues().length; i++) {
+                A.getValues()[i] = rand.nextDouble() - 0.5;
+            }
+            for (int i = 0; i < B.getValues().length; i++) {
+                B.getValues()[i] = rand.nextDouble() * 1E3;
+            }
+            final DenseMatrix refC = new DenseMatrix(shape[0], shape[2]);
+            final DenseMatrix C = new DenseMatrix(shape[0], shape[2]);
+            MatrixMultiply.seqMatrixMultiply(A, B, refC);
+            RecursiveMatrixMultiply.multiply(A, B, C);
+            assertTrue(Arrays.equals(refC.getValues(), C.getValues()));
+        }
+    }
+
+    /**
+     * Tests Strassen steps on integer-valued matrices, where every sum and difference is exact, so the result
+     * must equal the classical product. 200 exercises a Strassen step whose halves fall back to the classical
+     * recursion once they become odd.
+     */
+    public void testStrassenMatrixMultiply() {
+        for (int N : new int[] {256, 200}) {
+            final double[][] a = createMatrix(N);
+            final double[][] b = createMatrix(N);
+            final double[][] refC = new double[N][N];
+            seqMatrixMultiply(a, b, refC, N);
+
+            final DenseMatrix C = new DenseMatrix(N, N);
+            RecursiveMatrixMultiply.multiply(DenseMatrix.fromArray(a), DenseMatrix.fromArray(b), C, 16);
+            checkResult(refC, C.toArray(), N);
+        }
+
+        // The scratch buffers of the top-level step are back in the pool and are reused on the next call.
+        final int quadrant = 128 * 128;
+        final int idle = RecursiveMatrixMultiply.SCRATCH.idleCount(quadrant);
+        assertTrue(idle > 0);
+        final DenseMatrix A = DenseMatrix.fromArray(createMatrix(256));
+        RecursiveMatrixMultiply.multiply(A, A, new DenseMatrix(256, 256), 16);
+        assertEquals(idle, RecursiveMatrixMultiply.SCRATCH.idleCount(quadrant));
+    }
+
+    /**
+     * Tests that the scratch buffer pool hands out zeroed buffers on request, reuses released ones, and keeps no
+     * more idle bytes than its cap, whatever the mix of lengths.
+     */
+    public void testScratchBufferPool() {
+        final ScratchBufferPool pool = new ScratchBufferPool(2 * 8 * 8);
+        final double[] first = pool.acquire(8);
+        first[3] = 1.0;
+        pool.release(first);
+        final double[] again = pool.acquireZeroed(8);
+        assertSame(first, again);
+        assertEquals(0.0, again[3]);
+
+        pool.release(again);
+        pool.release(new double[8]);
+        pool.release(new double[8]);
+        assertEquals(2, pool.idleCount(8));
+        assertEquals(2 * 8 * 8, pool.idleBytes());
+
+        pool.release(new double[4]);
+        assertEquals(0, pool.idleCount(4));
+        pool.acquire(8);
+        pool.release(new double[4]);
+        pool.release(new double[4]);
+        assertEquals(2, pool.idleCount(4));
+        assertEquals(1, pool.idleCount(8));
+        assertEquals(2 * 8 * 8, pool.idleBytes());
+    }
+
+    /**
+     * Create a sparse matrix with about the given density of nonzeros, plus a few rows that are almost fully
+     * dense, so that splitting by row count would be badly unbalanced.
+     */
+    private double[][] createSkewedSparseMatrix(final int M, final int N, final double density, final Random rand) {
+        final double[][] m = new double[M][N];
+        for (int i = 0; i < M; i++) {
+            final double rowDensity = i % 97 == 0 ? 0.9 : density;
+            for (int j = 0; j < N; j++) {
+                if (rand.nextDouble() < rowDensity) {
+                    m[i][j] = rand.nextDouble() - 0.5;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Tests the sparse layout conversions: dense round trips, transpose (the CSC form) and element lookup.
+     */
+    public void testSparseMatrixConversions() {
+        final Random rand = new Random(5);
+        final double[][] a = createSkewedSparseMatrix(120, 70, 0.05, rand);
+        final SparseMatrix A = SparseMatrix.fromArray(a);
+        final SparseMatrix At = A.transpose();
+        assertEquals(70, At.getNRows());
+        assertEquals(A.getNnz(), At.getNnz());
+
+        final double[][] back = A.toDense().toArray();
+        for (int i = 0; i < 120; i++) {
+            for (int j = 0; j < 70; j++) {
+                assertEquals(a[i][j], back[i][j]);
+                assertEquals(a[i][j], A.get(i, j));
+                assertEquals(a[i][j], At.get(j, i));
+            }
+        }
+        assertTrue(Arrays.equals(A.getRowPointers(), At.transpose().getRowPointers()));
+        assertTrue(Arrays.equals(A.getColumnIndices(), At.transpose().getColumnIndices()));
+
+        try {
+            new SparseMatrix(1, 3, new int[] {0, 2}, new int[] {2, 1}, new double[] {1.0, 2.0});
+            fail("Expected unsorted column indices to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new SparseMatrix(2, 3, new int[] {0, 5, 3}, new int[] {0, 1, 2}, new double[] {1.0, 2.0, 3.0});
+            fail("Expected a row pointer past the nonzeros to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests sparse x vector, sparse x dense and sparse x sparse products against the dense reference, and checks
+     * that the parallel versions match the sequential ones bit for bit.
+     */
+    public void testSparseMatrixMultiply() {
+        final Random rand = new Random(13);
+        final int M = 500;
+        final int K = 300;
+        final int N = 40;
+        final double[][] a = createSkewedSparseMatrix(M, K, 0.03, rand);
+        final double[][] b = createSkewedSparseMatrix(K, N, 0.2, rand);
+        final SparseMatrix A = SparseMatrix.fromArray(a);
+        final DenseMatrix denseA = DenseMatrix.fromArray(a);
+        final DenseMatrix denseB = DenseMatrix.fromArray(b);
+        final DenseMatrix refC = new DenseMatrix(M, N);
+        MatrixMultiply.seqMatrixMultiply(denseA, denseB, refC);
+
+        // SpMV, using each column of B as a vector
+        final double[] x = new double[K];
+        for (int k = 0; k < K; k++) {
+            x[k] = b[k][3];
+        }
+        final double[] seqY = new double[M];
+        final double[] parY = new double[M];
+        SparseMatrixMultiply.seqSpmv(A, x, seqY);
+        SparseMatrixMultiply.parSpmv(A, x, parY);
+        for (int i = 0; i < M; i++) {
+            assertEquals(refC.get(i, 3), seqY[i]);
+        }
+        assertTrue(Arrays.equals(seqY, parY));
+
+        // SpMM
+        final DenseMatrix seqC = new DenseMatrix(M, N);
+        final DenseMatrix parC = new DenseMatrix(M, N);
+        SparseMatrixMultiply.seqSpmm(A, denseB, seqC);
+        SparseMatrixMultiply.parSpmm(A, denseB, parC);
+        assertTrue(Arrays.equals(refC.getValues(), seqC.getValues()));
+        assertTrue(Arrays.equals(refC.getValues(), parC.getValues()));
+
+        // SpGEMM
+        final SparseMatrix B = SparseMatrix.fromArray(b);
+        final SparseMatrix seqProduct = SparseMatrixMultiply.seqSpgemm(A, B);
+        final SparseMatrix parProduct = SparseMatrixMultiply.parSpgemm(A, B);
+        assertTrue(Arrays.equals(refC.getValues(), seqProduct.toDense().getValues()));
+        assertTrue(Arrays.equals(seqProduct.getRowPointers(), parProduct.getRowPointers()));
+        assertTrue(Arrays.equals(seqProduct.getColumnIndices(), parProduct.getColumnIndices()));
+        assertTrue(Arrays.equals(seqProduct.getValues(), parProduct.getValues()));
+    }
+
+    /**
+     * Tests that rows are partitioned by work rather than by count: with one very heavy row, the remaining rows
+     * still spread across parts, and every row is covered exactly once.
+     */
+    public void testSparsePartitionByWork() {
+        final int M = 1000;
+        final long[] prefixWork = new long[M + 1];
+        for (int i = 0; i < M; i++) {
+            prefixWork[i + 1] = prefixWork[i] + (i == 10 ? 100000 : 1);
+        }
+        final int[] bounds = SparseMatrixMultiply.partition(prefixWork);
+        assertEquals(0, bounds[0]);
+        assertEquals(M, bounds[bounds.length - 1]);
+        for (int p = 0; p + 1 < bounds.length; p++) {
+            assertTrue(bounds[p] < bounds[p + 1]);
+        }
+        // The heavy row ends a part of its own, apart from the light rows after it.
+        boolean isolated = false;
+        for (int p = 0; p + 1 < bounds.length; p++) {
+            isolated |= bounds[p + 1] == 11;
+        }
+        assertTrue(isolated);
+    }
+
+    /**
+     * Tests batched products of small matrices against the reference multiply, for square sizes around the
+     * kernel's four-row unrolling and for a rectangular shape.
+     */
+    public void testBatchedMatrixMultiply() {
+        final Random rand = new Random(17);
+        for (int N : new int[] {1, 7, 8, 13, 64}) {
+            final int count = 300;
+            final double[][][] a = new double[count][N][N];
+            final double[][][] b = new double[count][N][N];
+            final double[][][] c = new double[count][N][N];
+            for (int m = 0; m < count; m++) {
+                for (int i = 0; i < N; i++) {
+                    for (int j = 0; j < N; j++) {
+                        a[m][i][j] = rand.nextDouble() - 0.5;
+                        b[m][i][j] = rand.nextDouble() * 1E3;
+                    }
+                }
+            }
+
+            BatchedMatrixMultiply.parMatrixMultiplyBatch(a, b, c);
+
+            final double[][] refC = new double[N][N];
+            for (int m = 0; m < count; m++) {
+                MatrixMultiply.seqMatrixMultiply(a[m], b[m], refC, N);
+                checkResult(refC, c[m], N);
+            }
+        }
+
+        final MatrixBatch A = new MatrixBatch(50, 6, 10);
+        final MatrixBatch B = new MatrixBatch(50, 10, 3);
+        for (int i = 0; i < A.getValues().length; i++) {
+            A.getValues()[i] = rand.nextDouble();
+        }
+        for (int i = 0; i < B.getValues().length; i++) {
+            B.getValues()[i] = rand.nextDouble();
+        }
+        final MatrixBatch seqC = new MatrixBatch(50, 6, 3);
+        final MatrixBatch parC = new MatrixBatch(50, 6, 3);
+        BatchedMatrixMultiply.seqMultiply(A, B, seqC);
+        BatchedMatrixMultiply.parMultiply(A, B, parC);
+        assertTrue(Arrays.equals(seqC.getValues(), parC.getValues()));
+        for (int m = 0; m < 50; m++) {
+            final DenseMatrix refC = new DenseMatrix(6, 3);
+            MatrixMultiply.seqMatrixMultiply(A.get(m), B.get(m), refC);
+            for (int i = 0; i < 6; i++) {
+                for (int j = 0; j < 3; j++) {
+                    assertEquals(refC.get(i, j), seqC.get(m).get(i, j));
+                }
+            }
+        }
+
+        try {
+            BatchedMatrixMultiply.parMultiply(A, B, new MatrixBatch(49, 6, 3));
+            fail("Expected mismatched batch sizes to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
 }
@@ -0,0 +1,147 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to run one-dimensional iterative averaging on a persistent team of
+ * workers with an all-to-all barrier, a fuzzy barrier, or neighbor-only
+ * synchronization, with and without skew between the workers.
+ *
+ * Skew comes from noise threads that spin for the whole measurement and
+ * compete with the workers for cores, so at any moment some workers are
+ * descheduled. Under a barrier every such pause stalls the whole team;
+ * under neighbor-only synchronization it only holds back the chunks next to
+ * the paused one, which can absorb it over later iterations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class NeighborPhaserBenchmark {
+    /**
+     * The size of the problem.
+     */
+    @Param({"65536"})
+    private int n;
+
+    /**
+     * The number of iterations per run.
+     */
+    @Param({"1000"})
+    private int iterations;
+
+    /**
+     * Number of spinning threads competing with the workers.
+     */
+    @Param({"0", "1"})
+    private int noiseThreads;
+
+    /**
+     * A double array that starts as the output array.
+     */
+    private double[] myNew;
+    /**
+     * A double array that contains the initial input.
+     */
+    private double[] myVal;
+    /**
+     * Persistent workers, one per core and at least two.
+     */
+    private StencilExecutor executor;
+    /**
+     * The noise threads.
+     */
+    private Thread[] noise;
+    /**
+     * Tells the noise threads to stop.
+     */
+    private volatile boolean stopNoise;
+
+    /**
+     * Creates the input, starts the workers and starts the noise threads.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        myNew = new double[n + 2];
+        myVal = new double[n + 2];
+        myVal[n + 1] = 1.0;
+        myNew[n + 1] = 1.0;
+        executor = new StencilExecutor(
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+        stopNoise = false;
+        noise = new Thread[noiseThreads];
+        for (int t = 0; t < noiseThreads; t++) {
+            noise[t] = new Thread(() -> {
+                while (!stopNoise) {
+                    // Spin, rereading the volatile flag each time.
+                }
+            });
+            noise[t].setDaemon(true);
+            noise[t].start();
+        }
+    }
+
+    /**
+     * Stops the noise threads and the workers.
+     *
+     * @throws InterruptedException If interrupted while waiting
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        stopNoise = true;
+        for (Thread t : noise) {
+            t.join();
+        }
+        executor.close();
+    }
+
+    /**
+     * All workers meet at a barrier every iteration.
+     *
+     * @return The output array
+     */
+    @Benchmark
+    public double[] barrier() {
+        executor.runBarrier(iterations, myNew, myVal, n);
+        return myNew;
+    }
+
+    /**
+     * Fuzzy barrier: arrive after the edges, wait before the next iteration.
+     *
+     * @return The output array
+     */
+    @Benchmark
+    public double[] fuzzyBarrier() {
+        executor.runFuzzyBarrier(iterations, myNew, myVal, n);
+        return myNew;
+    }
+
+    /**
+     * Each worker waits only for its two neighbors.
+     *
+     * @return The output array
+     */
+    @Benchmark
+    public double[] neighbor() {
+        executor.runNeighbor(iterations, myNew, myVal, n);
+        return myNew;
+    }
+}
@@ -0,0 +1,97 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to run one-dimensional iterative averaging on a problem that does not
+ * fit in cache, synchronizing either every iteration at a barrier or once
+ * per block of iterations with temporal blocking.
+ *
+ * The barrier version streams both arrays through memory every iteration;
+ * the temporally blocked one reads and writes them once per
+ * DEFAULT_TIME_BLOCK iterations and works in cache-sized buffers in between.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TemporalBlockingBenchmark {
+    /**
+     * The size of the problem.
+     */
+    @Param({"2097152"})
+    private int n;
+
+    /**
+     * The number of iterations per run.
+     */
+    @Param({"300"})
+    private int iterations;
+
+    /**
+     * A double array that starts as the output array.
+     */
+    private double[] myNew;
+    /**
+     * A double array that contains the initial input.
+     */
+    private double[] myVal;
+    /**
+     * Number of tasks, one per core.
+     */
+    private int tasks;
+
+    /**
+     * Creates the input, with ones spread through the array so that most
+     * elements change on every iteration.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        myNew = new double[n + 2];
+        myVal = new double[n + 2];
+        for (int i = n + 1; i > 0; i -= iterations / 4) {
+            myNew[i] = 1.0;
+            myVal[i] = 1.0;
+        }
+        tasks = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * All tasks meet at a barrier every iteration.
+     *
+     * @return The output array
+     */
+    @Benchmark
+    public double[] barrier() {
+        OneDimAveragingPhaser.runParallelBarrier(iterations, myNew, myVal, n,
+                tasks);
+        return myNew;
+    }
+
+    /**
+     * Tasks synchronize once per DEFAULT_TIME_BLOCK iterations.
+     *
+     * @return The output array
+     */
+    @Benchmark
+    public double[] temporalBlocking() {
+        OneDimAveragingPhaser.runParallelTemporalBlocking(iterations, myNew,
+                myVal, n, tasks);
+        return myNew;
+    }
+}
@@ -7,12 +7,71 @@ import java.util.concurrent.Phaser;
  * phasers.
  */
 public final class OneDimAveragingPhaser {
+    /**
+     * Default number of iterations runParallelTemporalBlocking advances each
+     * chunk between synchronizations.
+     */
+    static final int DEFAULT_TIME_BLOCK = 15;
+
+    /**
+     * Number of elements runParallelTemporalBlocking advances through a
+     * whole time block at once, small enough that the private buffers stay
+     * in L2 cache.
+     */
+    static final int TIME_BLOCK_TILE = 4096;
+
     /**
      * Default constructor.
      */
     private OneDimAveragingPhaser() {
     }
 
+    /**
+     * Outcome of runParallelBarrierUntilConverged.
+     */
+    public static final class Convergence {
+        /**
+         * Number of iterations run.
+         */
+        private final int iterations;
+        /**
+         * Residual of the last iteration run.
+         */
+        private final double residual;
+
+        /**
+         * Constructor.
+         *
+         * @param setIterations Number of iterations run
+         * @param setResidual Residual of the last iteration run
+         */
+        Convergence(final int setIterations, final double setResidual) {
+            this.iterations = setIterations;
+            this.residual = setResidual;
+        }
+
+        /**
+         * Get the number of iterations run. As in runSequential, the final
+         * values are in myNew if this is odd and in myVal if it is even.
+         *
+         * @return Number of iterations run
+         */
+        public int getIterations() {
+            return iterations;
+        }
+
+        /**
+         * Get the residual of the last iteration run: the largest absolute
+         * change of any element during that iteration, or positive infinity
+         * if no iteration was run.
+         *
+         * @return Final residual
+         */
+        public double getResidual() {
+            return residual;
+        }
+    }
+
     /**
      * Sequential implementation of one-dimensional iterative averaging.
      *
@@ -59,27 +118,8 @@ public final class OneDimAveragingPhaser {
         for (int ii = 0; ii < tasks; ii++) {
             final int i = ii;
 
-            threads[ii] = new Thread(() -> {
-                double[] threadPrivateMyVal = myVal;
-                double[] threadPrivateMyNew = myNew;
-
-                final int chunkSize = (n + tasks - 1) / tasks;
-                final int left = (i * chunkSize) + 1;
-                int right = (left + chunkSize) - 1;
-                if (right > n) right = n;
-
-                for (int iter = 0; iter < iterations; iter++) {
-                    for (int j = left; j <= right; j++) {
-                        threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
-                            + threadPrivateMyVal[j + 1]) / 2.0;
-                    }
-                    ph.arriveAndAwaitAdvance();
-
-                    double[] temp = threadPrivateMyNew;
-                    threadPrivateMyNew = threadPrivateMyVal;
-                    threadPrivateMyVal = temp;
-                }
-            });
+            threads[ii] = new Thread(() -> runBarrierChunk(i, iterations,
+                        myNew, myVal, n, tasks, ph));
             threads[ii].start();
         }
 
@@ -123,42 +163,8 @@ public final class OneDimAveragingPhaser {
         for (int i = 0; i < tasks; i++) {
             int local_i = i; // WHY WE NEED THIS LINE?
             
-            threads[local_i] = new Thread(() -> {
-
-                // if we don't have the following two lines
-                // all thread can access myVal and myNew
-                // there will be a data race
-                // where all threads try to change these two variables
-                double[] thread_local_myVal = myVal;
-                double[] thread_local_myNew = myNew;
-
-                for (int k = 0; k < iterations; k++) {  
-
-                    final int chunk_size = (n-1)/tasks + 1;
-                    final int left = local_i * chunk_size + 1;
-                    final int right = Integer.min(left+chunk_size-1, n);
-    
-                    thread_local_myNew[left] = (thread_local_myVal[left-1] 
-                                                + thread_local_myVal[left+1])/2.0;
-                    thread_local_myNew[right] = (thread_local_myVal[right-1] 
-                                                + thread_local_myVal[right+1])/2.0;
-    
-                    int cur_phase = ph.arrive(); // I, II, III
-                    // int cur_phase = ph[local_i].arrive(); // IV
-
-                    for (int j = left+1; j < right; j++) 
-                        thread_local_myNew[j] = (thread_local_myVal[j-1] 
-                                                + thread_local_myVal[j+1])/2.0;
-
-                    ph.awaitAdvance(cur_phase); // I, II, III
-                    // if (local_i > 0) ph[local_i-1].awaitAdvance(cur_phase);
-                    // if (local_i < tasks-1) ph[local_i+1].awaitAdvance(cur_phase); // IV
-    
-                    double temp[] = thread_local_myVal;
-                    thread_local_myVal = thread_local_myNew;
-                    thread_local_myNew = temp;
-                }
-            });
+            threads[local_i] = new Thread(() -> runFuzzyBarrierChunk(local_i,
+                        iterations, myNew, myVal, n, tasks, ph));
 
             threads[local_i].start();
         }
@@ -172,4 +178,500 @@ public final class OneDimAveragingPhaser {
         }
 
     }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging in
+     * which each task synchronizes only with the tasks that own the chunks
+     * next to its own, using one phaser per chunk (variant IV above).
+     *
+     * A chunk reads only its neighbors' edge elements, so a task can start
+     * iteration k as soon as its two neighbors have finished their edges of
+     * iteration k - 1, whatever the rest of the team is doing. A slow chunk
+     * therefore only holds back the chunks near it, and only gradually,
+     * rather than stalling every task at each barrier.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     */
+    public static void runParallelNeighborPhaser(final int iterations,
+            final double[] myNew, final double[] myVal, final int n,
+            final int tasks) {
+        final Phaser[] ph = createNeighborPhasers(tasks);
+
+        Thread[] threads = new Thread[tasks];
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> runNeighborChunk(i, iterations,
+                        myNew, myVal, n, tasks, ph));
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Creates the phasers for runNeighborChunk: one per task, each with only
+     * that task registered, so arriving never blocks.
+     *
+     * @param tasks The number of tasks sharing the problem
+     * @return One phaser per task
+     */
+    static Phaser[] createNeighborPhasers(final int tasks) {
+        final Phaser[] ph = new Phaser[tasks];
+        for (int i = 0; i < tasks; i++) {
+            ph[i] = new Phaser(1);
+        }
+        return ph;
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging with
+     * temporal blocking, advancing each chunk DEFAULT_TIME_BLOCK iterations
+     * per synchronization.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     */
+    public static void runParallelTemporalBlocking(final int iterations,
+            final double[] myNew, final double[] myVal, final int n,
+            final int tasks) {
+        runParallelTemporalBlocking(iterations, myNew, myVal, n, tasks,
+                DEFAULT_TIME_BLOCK);
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging with
+     * temporal blocking: each task advances its chunk several iterations at
+     * a time in private buffers, and the tasks synchronize only once per
+     * block of iterations rather than once per iteration.
+     *
+     * To advance a piece of the array s iterations without hearing from its
+     * neighbors, a task starts from the piece plus a halo of s elements on
+     * each side, and each iteration the region it can compute correctly
+     * shrinks by one element per side. The halo elements are computed
+     * redundantly, and the pieces are small enough to stay in cache across
+     * the s iterations, so the shared arrays are read and written once per
+     * block instead of once per iteration. Every element is computed by the
+     * same expression from the same inputs as in runSequential, so when this
+     * returns both arrays are bit-identical to what runSequential leaves in
+     * them.
+     *
+     * Blocks always run an odd number of iterations, so an even timeBlock
+     * is rounded down.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     * @param timeBlock Most iterations to run between synchronizations
+     */
+    public static void runParallelTemporalBlocking(final int iterations,
+            final double[] myNew, final double[] myVal, final int n,
+            final int tasks, final int timeBlock) {
+        if (timeBlock < 1) {
+            throw new IllegalArgumentException("Invalid time block: "
+                    + timeBlock);
+        }
+        Phaser ph = new Phaser(tasks);
+
+        Thread[] threads = new Thread[tasks];
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> runTemporalBlockingChunk(i,
+                        iterations, myNew, myVal, n, tasks, timeBlock, ph));
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A parallel implementation of one-dimensional iterative averaging that
+     * stops as soon as an iteration changes no element by more than
+     * tolerance, or after maxIterations iterations.
+     *
+     * Each task tracks the largest change in its chunk while it computes the
+     * chunk, and stores it before arriving at the barrier. The last task to
+     * arrive combines the per-chunk residuals in the phaser's onAdvance and
+     * terminates the phaser once the run is done, which every task sees
+     * when its arriveAndAwaitAdvance returns. Checking convergence thus
+     * takes no extra pass over the array and no extra synchronization. The
+     * values computed are those of runSequential with getIterations()
+     * iterations.
+     *
+     * @param maxIterations The most iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of threads/tasks to use to compute the solution
+     * @param tolerance Largest change of any element at which the solution
+     *        counts as converged
+     * @return The number of iterations run and the final residual
+     */
+    public static Convergence runParallelBarrierUntilConverged(
+            final int maxIterations, final double[] myNew,
+            final double[] myVal, final int n, final int tasks,
+            final double tolerance) {
+        if (maxIterations <= 0) {
+            return new Convergence(0, Double.POSITIVE_INFINITY);
+        }
+
+        final double[] residuals = new double[tasks];
+        final double[] residual = new double[1];
+        final int[] completed = new int[1];
+        Phaser ph = new Phaser(tasks) {
+            @Override
+            protected boolean onAdvance(final int phase,
+                    final int registeredParties) {
+                double max = 0.0;
+                for (double r : residuals) {
+                    max = Math.max(max, r);
+                }
+                residual[0] = max;
+                completed[0] = phase + 1;
+                return max <= tolerance || phase + 1 >= maxIterations
+                    || registeredParties == 0;
+            }
+        };
+
+        Thread[] threads = new Thread[tasks];
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> runConvergenceChunk(i, myNew,
+                        myVal, n, tasks, residuals, ph));
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        return new Convergence(completed[0], residual[0]);
+    }
+
+    /**
+     * The work of one task of runParallelBarrier: averages its chunk of the
+     * array for every iteration, waiting at the barrier after each one.
+     *
+     * @param i Index of this task, which picks its chunk
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of tasks sharing the problem
+     * @param ph Phaser with one party registered per task
+     */
+    static void runBarrierChunk(final int i, final int iterations,
+            final double[] myNew, final double[] myVal, final int n,
+            final int tasks, final Phaser ph) {
+        double[] threadPrivateMyVal = myVal;
+        double[] threadPrivateMyNew = myNew;
+
+        final int chunkSize = (n + tasks - 1) / tasks;
+        final int left = (i * chunkSize) + 1;
+        int right = (left + chunkSize) - 1;
+        if (right > n) right = n;
+
+        for (int iter = 0; iter < iterations; iter++) {
+            for (int j = left; j <= right; j++) {
+                threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
+                    + threadPrivateMyVal[j + 1]) / 2.0;
+            }
+            ph.arriveAndAwaitAdvance();
+
+            double[] temp = threadPrivateMyNew;
+            threadPrivateMyNew = threadPrivateMyVal;
+            threadPrivateMyVal = temp;
+        }
+    }
+
+    /**
+     * The work of one task of runParallelFuzzyBarrier: computes the two edges
+     * of its chunk first, arrives at the phaser, and overlaps the interior of
+     * the chunk with the other tasks' arrivals.
+     *
+     * @param local_i Index of this task, which picks its chunk
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *              iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of tasks sharing the problem
+     * @param ph Phaser with one party registered per task
+     */
+    static void runFuzzyBarrierChunk(final int local_i, final int iterations,
+            final double[] myNew, final double[] myVal, final int n,
+            final int tasks, final Phaser ph) {
+        // if we don't have the following two lines
+        // all thread can access myVal and myNew
+        // there will be a data race
+        // where all threads try to change these two variables
+        double[] thread_local_myVal = myVal;
+        double[] thread_local_myNew = myNew;
+
+        for (int k = 0; k < iterations; k++) {
+
+            final int chunk_size = (n-1)/tasks + 1;
+            final int left = local_i * chunk_size + 1;
+            final int right = Integer.min(left+chunk_size-1, n);
+
+            thread_local_myNew[left] = (thread_local_myVal[left-1]
+                                        + thread_local_myVal[left+1])/2.0;
+            thread_local_myNew[right] = (thread_local_myVal[right-1]
+                                        + thread_local_myVal[right+1])/2.0;
+
+            int cur_phase = ph.arrive(); // I, II, III
+            // int cur_phase = ph[local_i].arrive(); // IV
+
+            for (int j = left+1; j < right; j++)
+                thread_local_myNew[j] = (thread_local_myVal[j-1]
+                                        + thread_local_myVal[j+1])/2.0;
+
+            ph.awaitAdvance(cur_phase); // I, II, III
+            // if (local_i > 0) ph[local_i-1].awaitAdvance(cur_phase);
+            // if (local_i < tasks-1) ph[local_i+1].awaitAdvance(cur_phase); // IV
+
+            double temp[] = thread_local_myVal;
+            thread_local_myVal = thread_local_myNew;
+            thread_local_myNew = temp;
+        }
+    }
+
+    /**
+     * The work of one task of runParallelNeighborPhaser. Each iteration
+     * computes the two edges of the chunk, arrives at this task's own
+     * phaser, computes the interior, and then waits only for the left and
+     * right neighbors to have arrived for the same iteration.
+     *
+     * Arriving after the edges signals both that this chunk's edges are
+     * ready to be read and that this chunk has finished reading its
+     * neighbors' edges, which are the only elements it shares with them.
+     * Waiting for both neighbors before the next iteration thus orders every
+     * read of a shared element before the write that overwrites it. Chunks
+     * past the end of the array are empty and only arrive.
+     *
+     * @param i Index of this task, which picks its chunk
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of tasks sharing the problem
+     * @param ph One phaser per task, each with one party registered
+     */
+    static void runNeighborChunk(final int i, final int iterations,
+            final double[] myNew, final double[] myVal, final int n,
+            final int tasks, final Phaser[] ph) {
+        double[] threadPrivateMyVal = myVal;
+        double[] threadPrivateMyNew = myNew;
+
+        final int chunkSize = (n + tasks - 1) / tasks;
+        final int left = (i * chunkSize) + 1;
+        final int right = Math.min(left + chunkSize - 1, n);
+
+        for (int iter = 0; iter < iterations; iter++) {
+            if (left <= right) {
+                threadPrivateMyNew[left] = (threadPrivateMyVal[left - 1]
+                    + threadPrivateMyVal[left + 1]) / 2.0;
+                threadPrivateMyNew[right] = (threadPrivateMyVal[right - 1]
+                    + threadPrivateMyVal[right + 1]) / 2.0;
+            }
+
+            final int phase = ph[i].arrive();
+
+            for (int j = left + 1; j < right; j++) {
+                threadPrivateMyNew[j] = (threadPrivateMyVal[j - 1]
+                    + threadPrivateMyVal[j + 1]) / 2.0;
+            }
+
+            if (i > 0) {
+                ph[i - 1].awaitAdvance(phase);
+            }
+            if (i < tasks - 1) {
+                ph[i + 1].awaitAdvance(phase);
+            }
+
+            double[] temp = threadPrivateMyNew;
+            threadPrivateMyNew = threadPrivateMyVal;
+            threadPrivateMyVal = temp;
+        }
+    }
+
+    /**
+     * The work of one task of runParallelTemporalBlocking.
+     *
+     * In runSequential, iteration k (counting from 1) writes myNew when k is
+     * odd and myVal when k is even, and reads its boundary elements 0 and
+     * n + 1 from the array it reads. Each block here runs an odd number s of
+     * iterations, so the block after iteration t reads iteration t from one
+     * array and writes iteration t + s to the other, and no task writes an
+     * array another task is reading until the barrier that ends the block.
+     * Within a block the chunk is processed TIME_BLOCK_TILE elements at a
+     * time: the tile and its halo are copied into private buffers, advanced
+     * s iterations there with boundary elements from the array of matching
+     * parity, and the tile is written out.
+     *
+     * runSequential also leaves iteration t + s - 1 in the array iteration t
+     * came from. After the last block each task saves its chunk of that
+     * iteration and writes it back once the barrier shows that every task
+     * has finished reading.
+     *
+     * @param i Index of this task, which picks its chunk
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of tasks sharing the problem
+     * @param timeBlock Most iterations to run between synchronizations
+     * @param ph Phaser with one party registered per task
+     */
+    static void runTemporalBlockingChunk(final int i, final int iterations,
+            final double[] myNew, final double[] myVal, final int n,
+            final int tasks, final int timeBlock, final Phaser ph) {
+        final int chunkSize = (n + tasks - 1) / tasks;
+        final int left = (i * chunkSize) + 1;
+        final int right = Math.min(left + chunkSize - 1, n);
+        final int count = Math.max(0, right - left + 1);
+        // Round the block down to an odd number of iterations.
+        final int block = timeBlock - 1 + timeBlock % 2;
+        final int halo = Math.min(block, iterations);
+
+        double[] curr = new double[Math.min(count, TIME_BLOCK_TILE)
+            + 2 * halo];
+        double[] next = new double[curr.length];
+        double[] previous = null;
+
+        int t = 0;
+        while (t < iterations) {
+            int s = Math.min(block, iterations - t);
+            s -= 1 - s % 2;
+            final boolean last = t + s == iterations;
+            final double[] source = t % 2 == 0 ? myVal : myNew;
+            final double[] dest = source == myVal ? myNew : myVal;
+            if (last && s > 1 && count > 0) {
+                previous = new double[count];
+            }
+
+            for (int tl = left; tl <= right; tl += TIME_BLOCK_TILE) {
+                final int tr = Math.min(tl + TIME_BLOCK_TILE - 1, right);
+                // Private index p holds array element p + base.
+                final int base = tl - s;
+                final int lo = Math.max(0, tl - s);
+                final int hi = Math.min(n + 1, tr + s);
+                System.arraycopy(source, lo, curr, lo - base, hi - lo + 1);
+
+                for (int m = 1; m <= s; m++) {
+                    // Inputs of iteration t + m come from the array
+                    // iteration t + m - 1 wrote, including the boundaries.
+                    final double[] in = m % 2 == 1 ? source : dest;
+                    if (lo == 0) {
+                        curr[-base] = in[0];
+                    }
+                    if (hi == n + 1) {
+                        curr[n + 1 - base] = in[n + 1];
+                    }
+                    final int from = Math.max(1, tl - s + m) - base;
+                    final int to = Math.min(n, tr + s - m) - base;
+                    for (int p = from; p <= to; p++) {
+                        next[p] = (curr[p - 1] + curr[p + 1]) / 2.0;
+                    }
+
+                    double[] temp = next;
+                    next = curr;
+                    curr = temp;
+                }
+
+                System.arraycopy(curr, s, dest, tl, tr - tl + 1);
+                if (previous != null) {
+                    // next still holds iteration t + s - 1 over a region
+                    // one element wider than the tile on each side.
+                    System.arraycopy(next, s, previous, tl - left,
+                            tr - tl + 1);
+                }
+            }
+            ph.arriveAndAwaitAdvance();
+
+            if (previous != null) {
+                System.arraycopy(previous, 0, source, left, count);
+            }
+            t += s;
+        }
+    }
+
+    /**
+     * The work of one task of runParallelBarrierUntilConverged: averages its
+     * chunk and records the largest change in it, until the phaser is
+     * terminated.
+     *
+     * @param i Index of this task, which picks its chunk
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @param tasks The number of tasks sharing the problem
+     * @param residuals Largest change in each chunk during the current
+     *        iteration
+     * @param ph Phaser with one party registered per task, terminated by its
+     *        onAdvance when the run is done
+     */
+    static void runConvergenceChunk(final int i, final double[] myNew,
+            final double[] myVal, final int n, final int tasks,
+            final double[] residuals, final Phaser ph) {
+        double[] threadPrivateMyVal = myVal;
+        double[] threadPrivateMyNew = myNew;
+
+        final int chunkSize = (n + tasks - 1) / tasks;
+        final int left = (i * chunkSize) + 1;
+        final int right = Math.min(left + chunkSize - 1, n);
+
+        while (true) {
+            double max = 0.0;
+            for (int j = left; j <= right; j++) {
+                final double value = (threadPrivateMyVal[j - 1]
+                    + threadPrivateMyVal[j + 1]) / 2.0;
+                max = Math.max(max, Math.abs(value - threadPrivateMyVal[j]));
+                threadPrivateMyNew[j] = value;
+            }
+            residuals[i] = max;
+            ph.arriveAndAwaitAdvance();
+            if (ph.isTerminated()) {
+                return;
+            }
+
+            double[] temp = threadPrivateMyNew;
+            threadPrivateMyNew = threadPrivateMyVal;
+            threadPrivateMyVal = temp;
+        }
+    }
 }
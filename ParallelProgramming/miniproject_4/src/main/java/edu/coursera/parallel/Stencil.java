@@ -0,0 +1,160 @@
+package edu.coursera.parallel;
+
+/**
+ * A linear stencil on a 1D, 2D or 3D grid: the new value of a cell is the
+ * sum, over the points of the stencil, of a coefficient times the old value
+ * of the cell at an offset from it.
+ *
+ * The points are summed in the order they were given, so a stencil always
+ * produces the same bits for the same inputs however the grid is divided.
+ */
+public final class Stencil {
+    /**
+     * Number of dimensions of the grid this stencil applies to.
+     */
+    private final int dims;
+    /**
+     * Offset of each point of the stencil, one entry per dimension, x first.
+     */
+    private final int[][] offsets;
+    /**
+     * Coefficient of each point of the stencil.
+     */
+    private final double[] coefficients;
+
+    /**
+     * Constructor.
+     *
+     * @param setOffsets Offset of each point, one entry per dimension with x
+     *        first; every point must have the same number of dimensions,
+     *        from one to three
+     * @param setCoefficients Coefficient of each point
+     * @throws IllegalArgumentException If the stencil is empty, the counts
+     *         differ or the dimensions are invalid
+     */
+    public Stencil(final int[][] setOffsets, final double[] setCoefficients) {
+        if (setOffsets.length == 0
+                || setOffsets.length != setCoefficients.length) {
+            throw new IllegalArgumentException("Expected one coefficient for "
+                    + "each of at least one offset, got "
+                    + setOffsets.length + " offsets and "
+                    + setCoefficients.length + " coefficients");
+        }
+        this.dims = setOffsets[0].length;
+        if (dims < 1 || dims > 3) {
+            throw new IllegalArgumentException("Unsupported number of "
+                    + "dimensions: " + dims);
+        }
+        this.offsets = new int[setOffsets.length][];
+        for (int p = 0; p < setOffsets.length; p++) {
+            if (setOffsets[p].length != dims) {
+                throw new IllegalArgumentException("Offset " + p + " has "
+                        + setOffsets[p].length + " dimensions, expected "
+                        + dims);
+            }
+            this.offsets[p] = setOffsets[p].clone();
+        }
+        this.coefficients = setCoefficients.clone();
+    }
+
+    /**
+     * The stencil of OneDimAveragingPhaser: each cell becomes the average of
+     * its two neighbors.
+     *
+     * @return A 1D two-point averaging stencil
+     */
+    public static Stencil averaging1D() {
+        return new Stencil(new int[][] {{-1}, {1}}, new double[] {0.5, 0.5});
+    }
+
+    /**
+     * Jacobi relaxation in 2D: each cell becomes the average of its four
+     * edge neighbors.
+     *
+     * @return A 2D five-point Jacobi stencil
+     */
+    public static Stencil jacobi2D() {
+        return new Stencil(new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}},
+                new double[] {0.25, 0.25, 0.25, 0.25});
+    }
+
+    /**
+     * Jacobi relaxation in 3D: each cell becomes the average of its six face
+     * neighbors.
+     *
+     * @return A 3D seven-point Jacobi stencil
+     */
+    public static Stencil jacobi3D() {
+        final double c = 1.0 / 6.0;
+        return new Stencil(new int[][] {{-1, 0, 0}, {1, 0, 0}, {0, -1, 0},
+            {0, 1, 0}, {0, 0, -1}, {0, 0, 1}},
+            new double[] {c, c, c, c, c, c});
+    }
+
+    /**
+     * Get the number of dimensions of the grid this stencil applies to.
+     *
+     * @return Number of dimensions
+     */
+    public int getDims() {
+        return dims;
+    }
+
+    /**
+     * Get the number of points in this stencil.
+     *
+     * @return Number of points
+     */
+    public int getNPoints() {
+        return coefficients.length;
+    }
+
+    /**
+     * Get the offset of a point along one dimension.
+     *
+     * @param point Index of the point
+     * @param dim Dimension, 0 for x
+     * @return Offset of the point along that dimension
+     */
+    public int getOffset(final int point, final int dim) {
+        return offsets[point][dim];
+    }
+
+    /**
+     * Get the coefficient of a point.
+     *
+     * @param point Index of the point
+     * @return Coefficient of the point
+     */
+    public double getCoefficient(final int point) {
+        return coefficients[point];
+    }
+
+    /**
+     * Get how far this stencil reaches below a cell along one dimension.
+     *
+     * @param dim Dimension, 0 for x
+     * @return The largest negated negative offset, or 0
+     */
+    public int getReachBelow(final int dim) {
+        int reach = 0;
+        for (int[] offset : offsets) {
+            reach = Math.max(reach, -offset[dim]);
+        }
+        return reach;
+    }
+
+    /**
+     * Get how far this stencil reaches above a cell along one dimension.
+     *
+     * @param dim Dimension, 0 for x
+     * @return The largest positive offset, or 0
+     */
+    public int getReachAbove(final int dim) {
+        int reach = 0;
+        for (int[] offset : offsets) {
+            reach = Math.max(reach, offset[dim]);
+        }
+        return reach;
+    }
+}
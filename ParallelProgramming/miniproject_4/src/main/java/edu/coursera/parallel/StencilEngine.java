@@ -0,0 +1,467 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * Iterative relaxation of a Stencil over a 1D, 2D or 3D grid stored in a
+ * flat double array, generalizing OneDimAveragingPhaser.
+ *
+ * A grid of shape {nx, ny, nz} (with ny and nz omitted for fewer
+ * dimensions) is stored with x varying fastest: cell (x, y, z) is at index
+ * x + nx * (y + ny * z). Cells outside the grid are defined by a Boundary.
+ *
+ * As in OneDimAveragingPhaser.runParallelFuzzyBarrier, two arrays are
+ * swapped after every iteration and the tasks synchronize with a fuzzy
+ * barrier. The grid is split into one slab per task along its slowest
+ * dimension. Each iteration, a task first computes the layers at the edges
+ * of its slab, which are the only ones the other tasks read, then arrives
+ * at the phaser, computes the rest of its slab, and waits for the other
+ * tasks to arrive. Within a slab, cells are swept in blocks of the block
+ * shape so that the rows a block reads stay in cache while it is computed.
+ */
+public final class StencilEngine {
+    /**
+     * How cells outside the grid are defined.
+     */
+    public enum Boundary {
+        /**
+         * Every cell outside the grid has the boundary value.
+         */
+        CONSTANT,
+        /**
+         * The grid wraps around in every dimension.
+         */
+        PERIODIC,
+        /**
+         * A cell outside the grid has the value of the nearest cell inside
+         * it, giving a zero gradient across the boundary.
+         */
+        CLAMP
+    }
+
+    /**
+     * Default block shape, in cells along x, y and z.
+     */
+    static final int[] DEFAULT_BLOCK = {1024, 16, 16};
+
+    /**
+     * The stencil to apply.
+     */
+    private final Stencil stencil;
+    /**
+     * Number of dimensions of the grid.
+     */
+    private final int dims;
+    /**
+     * Extent of the grid along x, y and z, with 1 for missing dimensions.
+     */
+    private final int[] shape;
+    /**
+     * Extent of a block along x, y and z.
+     */
+    private final int[] block;
+    /**
+     * How cells outside the grid are defined.
+     */
+    private final Boundary boundary;
+    /**
+     * Value of cells outside the grid for Boundary.CONSTANT.
+     */
+    private final double boundaryValue;
+    /**
+     * Number of tasks.
+     */
+    private final int tasks;
+    /**
+     * Offset of each stencil point in the flat array.
+     */
+    private final int[] flatOffsets;
+    /**
+     * Coefficient of each stencil point.
+     */
+    private final double[] coefficients;
+    /**
+     * Offset of each stencil point along x, y and z.
+     */
+    private final int[][] pointOffsets;
+    /**
+     * Lowest coordinate along x, y and z whose stencil stays inside the
+     * grid.
+     */
+    private final int[] safeLo;
+    /**
+     * Highest coordinate along x, y and z whose stencil stays inside the
+     * grid.
+     */
+    private final int[] safeHi;
+
+    /**
+     * Constructor, using the default block shape.
+     *
+     * @param setStencil The stencil to apply
+     * @param setShape Extent of the grid along each dimension of the
+     *        stencil, x first
+     * @param setBoundary How cells outside the grid are defined
+     * @param setBoundaryValue Value of cells outside the grid for
+     *        Boundary.CONSTANT, otherwise ignored
+     * @param setTasks The number of threads/tasks to use
+     */
+    public StencilEngine(final Stencil setStencil, final int[] setShape,
+            final Boundary setBoundary, final double setBoundaryValue,
+            final int setTasks) {
+        this(setStencil, setShape, setBoundary, setBoundaryValue, setTasks,
+                DEFAULT_BLOCK);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param setStencil The stencil to apply
+     * @param setShape Extent of the grid along each dimension of the
+     *        stencil, x first
+     * @param setBoundary How cells outside the grid are defined
+     * @param setBoundaryValue Value of cells outside the grid for
+     *        Boundary.CONSTANT, otherwise ignored
+     * @param setTasks The number of threads/tasks to use
+     * @param setBlock Extent of a block along x, y and z; entries past the
+     *        number of dimensions are ignored
+     * @throws IllegalArgumentException If the shape does not match the
+     *         stencil or a count is not positive
+     */
+    public StencilEngine(final Stencil setStencil, final int[] setShape,
+            final Boundary setBoundary, final double setBoundaryValue,
+            final int setTasks, final int[] setBlock) {
+        this.stencil = setStencil;
+        this.dims = setStencil.getDims();
+        if (setShape.length != dims) {
+            throw new IllegalArgumentException("Grid has " + setShape.length
+                    + " dimensions but the stencil has " + dims);
+        }
+        if (setTasks < 1) {
+            throw new IllegalArgumentException("Need at least one task: "
+                    + setTasks);
+        }
+        this.shape = new int[] {1, 1, 1};
+        this.block = new int[] {1, 1, 1};
+        for (int d = 0; d < dims; d++) {
+            if (setShape[d] < 1 || setBlock[d] < 1) {
+                throw new IllegalArgumentException("Invalid extent along "
+                        + "dimension " + d + ": grid " + setShape[d]
+                        + ", block " + setBlock[d]);
+            }
+            shape[d] = setShape[d];
+            block[d] = setBlock[d];
+        }
+        // Fail now rather than index past the end if the grid is too large.
+        Math.multiplyExact(Math.multiplyExact(shape[0], shape[1]), shape[2]);
+        this.boundary = setBoundary;
+        this.boundaryValue = setBoundaryValue;
+        this.tasks = setTasks;
+
+        final int npoints = setStencil.getNPoints();
+        this.flatOffsets = new int[npoints];
+        this.coefficients = new double[npoints];
+        this.pointOffsets = new int[npoints][3];
+        for (int p = 0; p < npoints; p++) {
+            for (int d = 0; d < dims; d++) {
+                pointOffsets[p][d] = setStencil.getOffset(p, d);
+            }
+            flatOffsets[p] = pointOffsets[p][0] + shape[0]
+                * (pointOffsets[p][1] + shape[1] * pointOffsets[p][2]);
+            coefficients[p] = setStencil.getCoefficient(p);
+        }
+        this.safeLo = new int[3];
+        this.safeHi = new int[3];
+        for (int d = 0; d < 3; d++) {
+            safeLo[d] = d < dims ? setStencil.getReachBelow(d) : 0;
+            safeHi[d] = shape[d] - 1
+                - (d < dims ? setStencil.getReachAbove(d) : 0);
+        }
+    }
+
+    /**
+     * Get the number of cells in the grid.
+     *
+     * @return Number of cells
+     */
+    public int getSize() {
+        return shape[0] * shape[1] * shape[2];
+    }
+
+    /**
+     * Get the index in the flat array of a cell.
+     *
+     * @param x Coordinate along x
+     * @param y Coordinate along y, 0 for a 1D grid
+     * @param z Coordinate along z, 0 for a 1D or 2D grid
+     * @return Index of the cell
+     */
+    public int getIndex(final int x, final int y, final int z) {
+        return x + shape[0] * (y + shape[1] * z);
+    }
+
+    /**
+     * Sequentially applies the stencil iterations times.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew An array of getSize() cells that starts as the output
+     * @param myVal An array of getSize() cells holding the initial grid
+     * @return The array holding the grid after the last iteration: myNew if
+     *         iterations is odd, otherwise myVal
+     */
+    public double[] runSequential(final int iterations, final double[] myNew,
+            final double[] myVal) {
+        checkArrays(myNew, myVal);
+        double[] next = myNew;
+        double[] curr = myVal;
+
+        for (int iter = 0; iter < iterations; iter++) {
+            sweep(curr, next, 0, shape[dims - 1] - 1);
+            double[] tmp = curr;
+            curr = next;
+            next = tmp;
+        }
+        return curr;
+    }
+
+    /**
+     * Applies the stencil iterations times in parallel, using a fuzzy
+     * barrier between iterations. The result is bit-identical to
+     * runSequential.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew An array of getSize() cells that starts as the output
+     * @param myVal An array of getSize() cells holding the initial grid
+     * @return The array holding the grid after the last iteration: myNew if
+     *         iterations is odd, otherwise myVal
+     */
+    public double[] run(final int iterations, final double[] myNew,
+            final double[] myVal) {
+        checkArrays(myNew, myVal);
+        Phaser ph = new Phaser(tasks);
+
+        Thread[] threads = new Thread[tasks];
+        for (int ii = 0; ii < tasks; ii++) {
+            final int i = ii;
+
+            threads[ii] = new Thread(() -> runChunk(i, iterations, myNew,
+                        myVal, ph));
+            threads[ii].start();
+        }
+
+        for (int ii = 0; ii < tasks; ii++) {
+            try {
+                threads[ii].join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        return iterations % 2 == 1 ? myNew : myVal;
+    }
+
+    /**
+     * Checks that both arrays hold exactly the grid.
+     *
+     * @param myNew Output array
+     * @param myVal Input array
+     * @throws IllegalArgumentException If either has the wrong length
+     */
+    private void checkArrays(final double[] myNew, final double[] myVal) {
+        if (myNew.length != getSize() || myVal.length != getSize()) {
+            throw new IllegalArgumentException("Expected arrays of "
+                    + getSize() + " cells, got " + myNew.length + " and "
+                    + myVal.length);
+        }
+    }
+
+    /**
+     * The work of one task of run: sweeps the edge layers of its slab,
+     * arrives at the phaser, sweeps the remaining layers, and waits for the
+     * other tasks before the next iteration.
+     *
+     * Another task only reads the cells of this slab that are within the
+     * stencil's reach of the slab's ends, and only while computing its own
+     * edge layers, which it does before arriving. Waiting for every arrival
+     * therefore orders those reads before this task overwrites the cells,
+     * and orders this task's edge writes before the other tasks read them.
+     *
+     * @param i Index of this task, which picks its slab
+     * @param iterations The number of iterations to run
+     * @param myNew The array that starts as the output
+     * @param myVal The array holding the initial grid
+     * @param ph Phaser with one party registered per task
+     */
+    private void runChunk(final int i, final int iterations,
+            final double[] myNew, final double[] myVal, final Phaser ph) {
+        double[] threadPrivateMyVal = myVal;
+        double[] threadPrivateMyNew = myNew;
+
+        final int split = dims - 1;
+        final int layers = shape[split];
+        final int chunkSize = (layers + tasks - 1) / tasks;
+        final int lo = i * chunkSize;
+        final int hi = Math.min(lo + chunkSize, layers) - 1;
+        final int reach = Math.max(stencil.getReachBelow(split),
+                stencil.getReachAbove(split));
+        // Layers [lo, edgeLo] and [edgeHi, hi] are read by other tasks.
+        final int edgeLo = Math.min(hi, lo + reach - 1);
+        final int edgeHi = Math.max(edgeLo + 1, hi - reach + 1);
+
+        for (int iter = 0; iter < iterations; iter++) {
+            sweep(threadPrivateMyVal, threadPrivateMyNew, lo, edgeLo);
+            sweep(threadPrivateMyVal, threadPrivateMyNew, edgeHi, hi);
+
+            final int phase = ph.arrive();
+
+            sweep(threadPrivateMyVal, threadPrivateMyNew, edgeLo + 1,
+                    edgeHi - 1);
+
+            ph.awaitAdvance(phase);
+
+            double[] temp = threadPrivateMyNew;
+            threadPrivateMyNew = threadPrivateMyVal;
+            threadPrivateMyVal = temp;
+        }
+    }
+
+    /**
+     * Applies the stencil once to a range of layers along the slowest
+     * dimension, a block at a time.
+     *
+     * @param curr Grid before the iteration
+     * @param next Grid after the iteration
+     * @param first First layer to compute
+     * @param last Last layer to compute, which may be less than first
+     */
+    private void sweep(final double[] curr, final double[] next,
+            final int first, final int last) {
+        final int split = dims - 1;
+        final int[] lo = {0, 0, 0};
+        final int[] hi = {shape[0] - 1, shape[1] - 1, shape[2] - 1};
+        lo[split] = first;
+        hi[split] = last;
+
+        for (int bz = lo[2]; bz <= hi[2]; bz += block[2]) {
+            final int ez = Math.min(bz + block[2] - 1, hi[2]);
+            for (int by = lo[1]; by <= hi[1]; by += block[1]) {
+                final int ey = Math.min(by + block[1] - 1, hi[1]);
+                for (int bx = lo[0]; bx <= hi[0]; bx += block[0]) {
+                    final int ex = Math.min(bx + block[0] - 1, hi[0]);
+                    for (int z = bz; z <= ez; z++) {
+                        for (int y = by; y <= ey; y++) {
+                            sweepRow(curr, next, y, z, bx, ex);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the stencil once to part of a row along x. Cells whose
+     * stencil stays inside the grid take a fast path over flat offsets; the
+     * others go through the boundary.
+     *
+     * @param curr Grid before the iteration
+     * @param next Grid after the iteration
+     * @param y Coordinate of the row along y
+     * @param z Coordinate of the row along z
+     * @param first First x to compute
+     * @param last Last x to compute
+     */
+    private void sweepRow(final double[] curr, final double[] next,
+            final int y, final int z, final int first, final int last) {
+        int fastFirst = last + 1;
+        int fastLast = last;
+        if (y >= safeLo[1] && y <= safeHi[1] && z >= safeLo[2]
+                && z <= safeHi[2]) {
+            fastFirst = Math.max(first, safeLo[0]);
+            fastLast = Math.min(last, safeHi[0]);
+        }
+
+        if (fastFirst > fastLast) {
+            for (int x = first; x <= last; x++) {
+                next[getIndex(x, y, z)] = applyAtBoundary(curr, x, y, z);
+            }
+            return;
+        }
+
+        for (int x = first; x < fastFirst; x++) {
+            next[getIndex(x, y, z)] = applyAtBoundary(curr, x, y, z);
+        }
+
+        // One pass per point over the row, in point order, so every cell
+        // sums its points in the same order as applyAtBoundary.
+        final int from = getIndex(fastFirst, y, z);
+        final int to = getIndex(fastLast, y, z);
+        final int off0 = flatOffsets[0];
+        final double c0 = coefficients[0];
+        for (int j = from; j <= to; j++) {
+            next[j] = c0 * curr[j + off0];
+        }
+        for (int p = 1; p < flatOffsets.length; p++) {
+            final int off = flatOffsets[p];
+            final double c = coefficients[p];
+            for (int j = from; j <= to; j++) {
+                next[j] += c * curr[j + off];
+            }
+        }
+
+        for (int x = fastLast + 1; x <= last; x++) {
+            next[getIndex(x, y, z)] = applyAtBoundary(curr, x, y, z);
+        }
+    }
+
+    /**
+     * Applies the stencil to one cell, mapping every point that falls
+     * outside the grid through the boundary.
+     *
+     * @param curr Grid before the iteration
+     * @param x Coordinate of the cell along x
+     * @param y Coordinate of the cell along y
+     * @param z Coordinate of the cell along z
+     * @return New value of the cell
+     */
+    private double applyAtBoundary(final double[] curr, final int x,
+            final int y, final int z) {
+        double acc = 0.0;
+        for (int p = 0; p < coefficients.length; p++) {
+            final int px = x + pointOffsets[p][0];
+            final int py = y + pointOffsets[p][1];
+            final int pz = z + pointOffsets[p][2];
+            final double value;
+            if (px >= 0 && px < shape[0] && py >= 0 && py < shape[1]
+                    && pz >= 0 && pz < shape[2]) {
+                value = curr[getIndex(px, py, pz)];
+            } else if (boundary == Boundary.CONSTANT) {
+                value = boundaryValue;
+            } else {
+                value = curr[getIndex(mapOutside(px, 0), mapOutside(py, 1),
+                        mapOutside(pz, 2))];
+            }
+
+            if (p == 0) {
+                acc = coefficients[p] * value;
+            } else {
+                acc += coefficients[p] * value;
+            }
+        }
+        return acc;
+    }
+
+    /**
+     * Maps a coordinate that may be outside the grid to the cell inside it
+     * whose value it takes, for Boundary.PERIODIC and Boundary.CLAMP.
+     *
+     * @param coord Coordinate along the dimension
+     * @param dim Dimension, 0 for x
+     * @return Coordinate inside the grid
+     */
+    private int mapOutside(final int coord, final int dim) {
+        final int n = shape[dim];
+        if (boundary == Boundary.PERIODIC) {
+            return ((coord % n) + n) % n;
+        }
+        return Math.min(Math.max(coord, 0), n - 1);
+    }
+}
@@ -0,0 +1,329 @@
+package edu.coursera.parallel;
+
+import java.util.concurrent.Phaser;
+
+/**
+ * A reusable executor for one-dimensional iterative averaging that keeps a
+ * fixed team of worker threads alive between runs.
+ *
+ * OneDimAveragingPhaser.runParallelBarrier and runParallelFuzzyBarrier
+ * start a new thread per task on every call, which costs more than the
+ * averaging itself when n or iterations is small. This executor starts its
+ * workers once; between runs they are parked on a phaser, and each run
+ * hands them a job, wakes them, and waits for all of them to finish it.
+ * Within a run, every worker executes exactly the per-task code of
+ * OneDimAveragingPhaser (runBarrierChunk, runFuzzyBarrierChunk or
+ * runNeighborChunk) with fresh phasers, so results are the same as those
+ * methods'.
+ *
+ * Runs are serialized: concurrent callers take turns. Call close() to stop
+ * the workers.
+ */
+public final class StencilExecutor implements AutoCloseable {
+    /**
+     * Synchronization scheme used within a run.
+     */
+    public enum Mode {
+        /**
+         * All workers meet at a barrier after every iteration, as in
+         * runParallelBarrier.
+         */
+        BARRIER,
+        /**
+         * Workers arrive after the edges of their chunk and wait before the
+         * next iteration, as in runParallelFuzzyBarrier.
+         */
+        FUZZY_BARRIER,
+        /**
+         * Each worker waits only for the workers on either side of its
+         * chunk, as in runParallelNeighborPhaser.
+         */
+        NEIGHBOR
+    }
+
+    /**
+     * Number of worker threads.
+     */
+    private final int tasks;
+    /**
+     * The worker threads.
+     */
+    private final Thread[] workers;
+    /**
+     * Phaser the workers park on between runs. The caller and every worker
+     * are registered; its advancing releases the workers into a run.
+     */
+    private final Phaser start;
+    /**
+     * Phaser the caller waits on for a run to finish. The caller and every
+     * worker are registered.
+     */
+    private final Phaser done;
+    /**
+     * Run the workers should execute next, or null to make them exit.
+     * Published to the workers by the advance of start.
+     */
+    private Job job;
+    /**
+     * Whether close() has been called.
+     */
+    private boolean closed;
+
+    /**
+     * A single run handed to the workers.
+     */
+    private static final class Job {
+        /**
+         * Synchronization scheme.
+         */
+        private final Mode mode;
+        /**
+         * The number of iterations to run.
+         */
+        private final int iterations;
+        /**
+         * A double array that starts as the output array.
+         */
+        private final double[] myNew;
+        /**
+         * A double array that contains the initial input.
+         */
+        private final double[] myVal;
+        /**
+         * The size of this problem.
+         */
+        private final int n;
+        /**
+         * Phaser the workers synchronize on within the run.
+         */
+        private final Phaser ph;
+        /**
+         * One phaser per worker, used instead of ph in NEIGHBOR mode.
+         */
+        private final Phaser[] neighborPh;
+        /**
+         * First exception or error thrown by a worker, if any.
+         */
+        private volatile Throwable failure;
+
+        /**
+         * Constructor.
+         *
+         * @param setMode Synchronization scheme
+         * @param setIterations The number of iterations to run
+         * @param setMyNew A double array that starts as the output array
+         * @param setMyVal A double array that contains the initial input
+         * @param setN The size of this problem
+         * @param setPh Phaser with one party registered per worker
+         * @param setNeighborPh One phaser per worker, each with one party
+         *        registered
+         */
+        Job(final Mode setMode, final int setIterations,
+                final double[] setMyNew, final double[] setMyVal,
+                final int setN, final Phaser setPh,
+                final Phaser[] setNeighborPh) {
+            this.mode = setMode;
+            this.iterations = setIterations;
+            this.myNew = setMyNew;
+            this.myVal = setMyVal;
+            this.n = setN;
+            this.ph = setPh;
+            this.neighborPh = setNeighborPh;
+        }
+    }
+
+    /**
+     * Constructor, starting the workers.
+     *
+     * @param setTasks The number of worker threads
+     */
+    public StencilExecutor(final int setTasks) {
+        if (setTasks < 1) {
+            throw new IllegalArgumentException("Need at least one worker: "
+                    + setTasks);
+        }
+        this.tasks = setTasks;
+        this.start = new Phaser(setTasks + 1);
+        this.done = new Phaser(setTasks + 1);
+        this.workers = new Thread[setTasks];
+        for (int ii = 0; ii < setTasks; ii++) {
+            final int i = ii;
+            workers[ii] = new Thread(() -> workerLoop(i),
+                    "StencilExecutor-" + ii);
+            workers[ii].setDaemon(true);
+            workers[ii].start();
+        }
+    }
+
+    /**
+     * Get the number of worker threads.
+     *
+     * @return Number of workers
+     */
+    public int getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Body of each worker: wait for a job, run this worker's chunk of it,
+     * report completion, and repeat until there are no more jobs.
+     *
+     * @param i Index of this worker, which picks its chunk
+     */
+    private void workerLoop(final int i) {
+        while (true) {
+            start.arriveAndAwaitAdvance();
+            final Job j = job;
+            if (j == null) {
+                done.arriveAndDeregister();
+                return;
+            }
+
+            try {
+                runChunk(i, j);
+            } catch (Throwable e) {
+                if (j.failure == null) {
+                    j.failure = e;
+                }
+                // Release the other workers rather than leave them waiting
+                // at a barrier this worker will never reach.
+                j.ph.forceTermination();
+                for (Phaser p : j.neighborPh) {
+                    p.forceTermination();
+                }
+            } finally {
+                done.arrive();
+            }
+        }
+    }
+
+    /**
+     * Runs this worker's chunk of a job.
+     *
+     * @param i Index of this worker, which picks its chunk
+     * @param j Job to run
+     */
+    private void runChunk(final int i, final Job j) {
+        if (j.mode == Mode.BARRIER) {
+            OneDimAveragingPhaser.runBarrierChunk(i, j.iterations, j.myNew,
+                    j.myVal, j.n, tasks, j.ph);
+        } else if (j.mode == Mode.FUZZY_BARRIER) {
+            OneDimAveragingPhaser.runFuzzyBarrierChunk(i, j.iterations,
+                    j.myNew, j.myVal, j.n, tasks, j.ph);
+        } else {
+            OneDimAveragingPhaser.runNeighborChunk(i, j.iterations, j.myNew,
+                    j.myVal, j.n, tasks, j.neighborPh);
+        }
+    }
+
+    /**
+     * Runs one-dimensional iterative averaging on the workers, with the
+     * synchronization of runParallelBarrier.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     */
+    public void runBarrier(final int iterations, final double[] myNew,
+            final double[] myVal, final int n) {
+        run(Mode.BARRIER, iterations, myNew, myVal, n);
+    }
+
+    /**
+     * Runs one-dimensional iterative averaging on the workers, with the
+     * synchronization of runParallelFuzzyBarrier.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem, large enough to give every worker
+     *        a chunk
+     */
+    public void runFuzzyBarrier(final int iterations, final double[] myNew,
+            final double[] myVal, final int n) {
+        run(Mode.FUZZY_BARRIER, iterations, myNew, myVal, n);
+    }
+
+    /**
+     * Runs one-dimensional iterative averaging on the workers, with the
+     * synchronization of runParallelNeighborPhaser.
+     *
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     */
+    public void runNeighbor(final int iterations, final double[] myNew,
+            final double[] myVal, final int n) {
+        run(Mode.NEIGHBOR, iterations, myNew, myVal, n);
+    }
+
+    /**
+     * Runs one-dimensional iterative averaging on the workers and waits for
+     * it to finish.
+     *
+     * @param mode Synchronization scheme
+     * @param iterations The number of iterations to run
+     * @param myNew A double array that starts as the output array
+     * @param myVal A double array that contains the initial input to the
+     *        iterative averaging problem
+     * @param n The size of this problem
+     * @throws IllegalStateException If the executor has been closed
+     * @throws IllegalArgumentException If mode is FUZZY_BARRIER and n is too
+     *         small to give every worker a chunk
+     */
+    public synchronized void run(final Mode mode, final int iterations,
+            final double[] myNew, final double[] myVal, final int n) {
+        if (closed) {
+            throw new IllegalStateException("Executor is closed");
+        }
+        if (mode == Mode.FUZZY_BARRIER
+                && (tasks - 1) * ((n - 1) / tasks + 1) >= n) {
+            throw new IllegalArgumentException("Problem size " + n
+                    + " leaves some of the " + tasks + " workers without a"
+                    + " chunk");
+        }
+
+        final Job j = new Job(mode, iterations, myNew, myVal, n,
+                new Phaser(tasks),
+                mode == Mode.NEIGHBOR
+                    ? OneDimAveragingPhaser.createNeighborPhasers(tasks)
+                    : new Phaser[0]);
+        job = j;
+        start.arriveAndAwaitAdvance();
+        done.arriveAndAwaitAdvance();
+        if (j.failure instanceof RuntimeException) {
+            throw (RuntimeException) j.failure;
+        } else if (j.failure instanceof Error) {
+            throw (Error) j.failure;
+        } else if (j.failure != null) {
+            throw new IllegalStateException("Worker failed", j.failure);
+        }
+    }
+
+    /**
+     * Stops the workers and waits for them to exit. Further runs throw
+     * IllegalStateException. If interrupted while waiting, stops waiting
+     * and leaves the interrupt status set; the workers still exit.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        job = null;
+        start.arriveAndAwaitAdvance();
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
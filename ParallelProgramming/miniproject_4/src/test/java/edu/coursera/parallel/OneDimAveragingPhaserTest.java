@@ -144,4 +144,314 @@ public class OneDimAveragingPhaserTest extends TestCase {
                 "ran %fx faster than the barrier implementation", speedup);
         System.out.println(successMsg);
     }
+
+    /**
+     * Test that a persistent executor matches the sequential version across many short runs in both modes, and
+     * that it is faster than starting new threads on every run.
+     */
+    public void testStencilExecutor() {
+        final int ntasks = Math.max(2, getNCores());
+        final int N = 1000;
+        final int runs = 2000;
+        final Random rand = new Random(23);
+
+        try (StencilExecutor executor = new StencilExecutor(ntasks)) {
+            for (int r = 0; r < 50; r++) {
+                final int iterations = 1 + rand.nextInt(20);
+                final double[] myNewRef = createArray(N, 8);
+                final double[] myValRef = createArray(N, 8);
+                final double[] myNew = createArray(N, 8);
+                final double[] myVal = createArray(N, 8);
+                runSequential(iterations, myNewRef, myValRef, N);
+                if (r % 2 == 0) {
+                    executor.runBarrier(iterations, myNew, myVal, N);
+                } else {
+                    executor.runFuzzyBarrier(iterations, myNew, myVal, N);
+                }
+                checkResult(myNewRef, myNew);
+                checkResult(myValRef, myVal);
+            }
+
+            // A run whose workers fail rethrows the failure and leaves the executor usable.
+            try {
+                executor.runBarrier(10, null, createArray(N, 8), N);
+                fail("Expected the workers' NullPointerException to be rethrown");
+            } catch (NullPointerException e) {
+                // expected
+            }
+
+            final double[] myNew = createArray(N, 8);
+            final double[] myVal = createArray(N, 8);
+            final long threadsStartTime = System.nanoTime();
+            for (int r = 0; r < runs; r++) {
+                runParallelBarrier(10, myNew, myVal, N, ntasks);
+            }
+            final long threadsEndTime = System.nanoTime();
+
+            final long executorStartTime = System.nanoTime();
+            for (int r = 0; r < runs; r++) {
+                executor.runBarrier(10, myNew, myVal, N);
+            }
+            final long executorEndTime = System.nanoTime();
+
+            final double speedup = (double)(threadsEndTime - threadsStartTime)
+                    / (double)(executorEndTime - executorStartTime);
+            final double expected = 1.5;
+            final String errMsg = String.format("It was expected that the persistent executor would run %fx " +
+                    "faster than starting threads per run, but it only achieved %fx speedup", expected, speedup);
+            assertTrue(errMsg, speedup >= expected);
+        }
+    }
+
+    /**
+     * Test that neighbor-only synchronization matches the sequential version, including chunk counts that leave
+     * trailing tasks without work, both with threads per call and on a persistent executor.
+     */
+    public void testNeighborPhaser() {
+        final int[] sizes = {1, 2, 7, 100, 1001, 100000};
+        final int[] taskCounts = {1, 2, 3, 8};
+        final int[] iterationCounts = {0, 1, 2, 37, 200};
+
+        for (int N : sizes) {
+            for (int ntasks : taskCounts) {
+                for (int iterations : iterationCounts) {
+                    final double[] myNewRef = createArray(N, 8);
+                    final double[] myValRef = createArray(N, 8);
+                    final double[] myNew = createArray(N, 8);
+                    final double[] myVal = createArray(N, 8);
+                    runSequential(iterations, myNewRef, myValRef, N);
+                    OneDimAveragingPhaser.runParallelNeighborPhaser(iterations, myNew, myVal, N, ntasks);
+                    checkResult(myNewRef, myNew);
+                    checkResult(myValRef, myVal);
+                }
+            }
+        }
+
+        final int ntasks = Math.max(2, getNCores());
+        try (StencilExecutor executor = new StencilExecutor(ntasks)) {
+            for (int iterations : iterationCounts) {
+                final int N = 1001;
+                final double[] myNewRef = createArray(N, 8);
+                final double[] myValRef = createArray(N, 8);
+                final double[] myNew = createArray(N, 8);
+                final double[] myVal = createArray(N, 8);
+                runSequential(iterations, myNewRef, myValRef, N);
+                executor.runNeighbor(iterations, myNew, myVal, N);
+                checkResult(myNewRef, myNew);
+                checkResult(myValRef, myVal);
+            }
+        }
+    }
+
+    /**
+     * Test that temporal blocking leaves both arrays bit-identical to the sequential version for any number of
+     * iterations, time block and task count, including inputs whose two arrays have different boundary elements.
+     */
+    public void testTemporalBlocking() {
+        final int[] sizes = {1, 5, 100, 1001, 30000};
+        final int[] taskCounts = {1, 2, 3, 7};
+        final int[] timeBlocks = {1, 2, 5, 16, 64};
+        final int[] iterationCounts = {0, 1, 2, 3, 16, 17, 100};
+        final Random rand = new Random(19);
+
+        for (int N : sizes) {
+            final double[] initialNew = new double[N + 2];
+            final double[] initialVal = new double[N + 2];
+            for (int i = 0; i < N + 2; i++) {
+                initialNew[i] = rand.nextDouble();
+                initialVal[i] = rand.nextDouble();
+            }
+
+            for (int ntasks : taskCounts) {
+                for (int timeBlock : timeBlocks) {
+                    for (int iterations : iterationCounts) {
+                        final double[] myNewRef = initialNew.clone();
+                        final double[] myValRef = initialVal.clone();
+                        final double[] myNew = initialNew.clone();
+                        final double[] myVal = initialVal.clone();
+                        runSequential(iterations, myNewRef, myValRef, N);
+                        OneDimAveragingPhaser.runParallelTemporalBlocking(iterations, myNew, myVal, N, ntasks,
+                                timeBlock);
+                        checkResult(myNewRef, myNew);
+                        checkResult(myValRef, myVal);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that the stencil engine with the 1D averaging stencil reproduces runSequential, whose arrays carry the
+     * boundary as an extra element at each end.
+     */
+    public void testStencilEngine1D() {
+        final int N = 10000;
+        final Random rand = new Random(7);
+        final double[] initial = new double[N];
+        for (int i = 0; i < N; i++) {
+            initial[i] = rand.nextDouble();
+        }
+
+        for (int iterations : new int[] {0, 1, 2, 51}) {
+            final double[] myNewRef = new double[N + 2];
+            final double[] myValRef = new double[N + 2];
+            System.arraycopy(initial, 0, myValRef, 1, N);
+            runSequential(iterations, myNewRef, myValRef, N);
+            final double[] ref = iterations % 2 == 1 ? myNewRef : myValRef;
+
+            for (int ntasks : new int[] {1, 3, 8}) {
+                final StencilEngine engine = new StencilEngine(Stencil.averaging1D(), new int[] {N},
+                        StencilEngine.Boundary.CONSTANT, 0.0, ntasks, new int[] {300});
+                final double[] result = engine.run(iterations, new double[N], initial.clone());
+                for (int i = 0; i < N; i++) {
+                    assertEquals("Mismatch on output at element " + i, ref[i + 1], result[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Naive 2D Jacobi relaxation, summing the neighbors in the order of Stencil.jacobi2D.
+     */
+    private static double[] naiveJacobi2D(final int iterations, final double[] initial, final int nx, final int ny,
+            final StencilEngine.Boundary boundary, final double boundaryValue) {
+        double[] curr = initial.clone();
+        double[] next = new double[curr.length];
+        final int[][] neighbors = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+        for (int iter = 0; iter < iterations; iter++) {
+            for (int y = 0; y < ny; y++) {
+                for (int x = 0; x < nx; x++) {
+                    double acc = 0.0;
+                    for (int p = 0; p < neighbors.length; p++) {
+                        int px = x + neighbors[p][0];
+                        int py = y + neighbors[p][1];
+                        double value;
+                        if (px >= 0 && px < nx && py >= 0 && py < ny) {
+                            value = curr[px + nx * py];
+                        } else if (boundary == StencilEngine.Boundary.CONSTANT) {
+                            value = boundaryValue;
+                        } else if (boundary == StencilEngine.Boundary.PERIODIC) {
+                            value = curr[(px + nx) % nx + nx * ((py + ny) % ny)];
+                        } else {
+                            value = curr[Math.min(Math.max(px, 0), nx - 1) + nx * Math.min(Math.max(py, 0), ny - 1)];
+                        }
+                        acc = p == 0 ? 0.25 * value : acc + 0.25 * value;
+                    }
+                    next[x + nx * y] = acc;
+                }
+            }
+            double[] tmp = curr;
+            curr = next;
+            next = tmp;
+        }
+        return curr;
+    }
+
+    /**
+     * Test 2D and 3D relaxations with every boundary against a naive version and against the sequential engine,
+     * across task counts and block shapes.
+     */
+    public void testStencilEngineMultiDim() {
+        final Random rand = new Random(11);
+        final int nx = 97;
+        final int ny = 61;
+        final double[] initial2D = new double[nx * ny];
+        for (int i = 0; i < initial2D.length; i++) {
+            initial2D[i] = rand.nextDouble();
+        }
+
+        for (StencilEngine.Boundary boundary : StencilEngine.Boundary.values()) {
+            for (int iterations : new int[] {0, 1, 10, 25}) {
+                final double[] ref = naiveJacobi2D(iterations, initial2D, nx, ny, boundary, 2.0);
+                for (int ntasks : new int[] {1, 2, 5, 70}) {
+                    for (int[] block : new int[][] {{1024, 16}, {8, 3}, {1, 1}}) {
+                        final StencilEngine engine = new StencilEngine(Stencil.jacobi2D(), new int[] {nx, ny},
+                                boundary, 2.0, ntasks, block);
+                        checkResult(ref, engine.run(iterations, new double[nx * ny], initial2D.clone()));
+                    }
+                }
+            }
+        }
+
+        final int[] shape3D = {20, 13, 17};
+        final double[] initial3D = new double[shape3D[0] * shape3D[1] * shape3D[2]];
+        for (int i = 0; i < initial3D.length; i++) {
+            initial3D[i] = rand.nextDouble();
+        }
+        // A wider, lopsided stencil exercises reaches larger than one cell.
+        final Stencil wide = new Stencil(new int[][] {{0, 0, 0}, {-2, 0, 0}, {1, 0, 0}, {0, 3, 0}, {0, -1, 0},
+            {0, 0, -2}, {0, 0, 2}, {1, 1, 1}}, new double[] {0.3, 0.1, 0.1, 0.1, 0.1, 0.1, 0.05, 0.15});
+        for (Stencil stencil : new Stencil[] {Stencil.jacobi3D(), wide}) {
+            for (StencilEngine.Boundary boundary : StencilEngine.Boundary.values()) {
+                final StencilEngine seq = new StencilEngine(stencil, shape3D, boundary, -1.0, 1);
+                final double[] ref = seq.runSequential(7, new double[initial3D.length], initial3D.clone());
+                for (int ntasks : new int[] {2, 4, 17, 40}) {
+                    final StencilEngine engine = new StencilEngine(stencil, shape3D, boundary, -1.0, ntasks,
+                            new int[] {8, 4, 2});
+                    checkResult(ref, engine.run(7, new double[initial3D.length], initial3D.clone()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Largest absolute difference between two arrays over elements 1 to N.
+     */
+    private static double maxChange(final double[] a, final double[] b, final int N) {
+        double max = 0.0;
+        for (int j = 1; j <= N; j++) {
+            max = Math.max(max, Math.abs(a[j] - b[j]));
+        }
+        return max;
+    }
+
+    /**
+     * Test that the convergence-driven variant stops at the first iteration whose residual meets the tolerance,
+     * reports that residual, and leaves the same values as runSequential with that many iterations.
+     */
+    public void testConvergence() {
+        final int N = 50;
+        final double tolerance = 1e-6;
+        final int maxIterations = 100000;
+
+        for (int ntasks : new int[] {1, 3, 8, 64}) {
+            final double[] myNew = createArray(N, 8);
+            final double[] myVal = createArray(N, 8);
+            final OneDimAveragingPhaser.Convergence result = OneDimAveragingPhaser.runParallelBarrierUntilConverged(
+                    maxIterations, myNew, myVal, N, ntasks, tolerance);
+            final int iterations = result.getIterations();
+            assertTrue("Expected to converge early, ran " + iterations, iterations > 1 && iterations < maxIterations);
+            assertTrue("Residual " + result.getResidual() + " above tolerance", result.getResidual() <= tolerance);
+
+            final double[] myNewRef = createArray(N, 8);
+            final double[] myValRef = createArray(N, 8);
+            runSequential(iterations, myNewRef, myValRef, N);
+            checkResult(myNewRef, myNew);
+            checkResult(myValRef, myVal);
+            // After the loop the two arrays hold the last two iterates.
+            assertEquals(maxChange(myNewRef, myValRef, N), result.getResidual());
+
+            final double[] myNewPrev = createArray(N, 8);
+            final double[] myValPrev = createArray(N, 8);
+            runSequential(iterations - 1, myNewPrev, myValPrev, N);
+            assertTrue("Should already have converged one iteration earlier",
+                    maxChange(myNewPrev, myValPrev, N) > tolerance);
+        }
+
+        // An unreachable tolerance runs every iteration.
+        final double[] myNew = createArray(N, 8);
+        final double[] myVal = createArray(N, 8);
+        final OneDimAveragingPhaser.Convergence capped = OneDimAveragingPhaser.runParallelBarrierUntilConverged(
+                37, myNew, myVal, N, 4, 0.0);
+        assertEquals(37, capped.getIterations());
+        final double[] myNewRef = createArray(N, 8);
+        final double[] myValRef = createArray(N, 8);
+        runSequential(37, myNewRef, myValRef, N);
+        checkResult(myNewRef, myNew);
+        checkResult(myValRef, myVal);
+        assertEquals(maxChange(myNewRef, myValRef, N), capped.getResidual());
+
+        assertEquals(0, OneDimAveragingPhaser.runParallelBarrierUntilConverged(0, myNew, myVal, N, 4, 1.0)
+                .getIterations());
+    }
 }